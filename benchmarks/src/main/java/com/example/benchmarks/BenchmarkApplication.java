@@ -0,0 +1,78 @@
+package com.example.benchmarks;
+
+import com.example.orchestrator.saga.OrderSagas;
+import com.example.saga.common.InboxDeduplicator;
+import com.example.saga.common.OutboxRelay;
+import com.example.saga.common.bus.KafkaEventPublisher;
+import com.example.saga.common.shard.ShardRouter;
+import com.example.saga.common.shard.ShardTemplate;
+import com.example.saga.common.shard.ShardingConfig;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Contexto Spring mínimo para os benchmarks: H2 em memória no modo PostgreSQL (as queries nativas do
+ * outbox/inbox usam sintaxe do Postgres) e um {@link MockProducer} no lugar do broker, que confirma
+ * cada envio imediatamente. Assim o que se mede é o custo do código e do banco, não da rede.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration(exclude = KafkaAutoConfiguration.class)
+@EntityScan(basePackages = {"com.example.orchestrator.saga", "com.example.saga.common.domain"})
+@EnableJpaRepositories(basePackages = {"com.example.orchestrator.saga", "com.example.saga.common.repo"})
+@Import({OutboxRelay.class, KafkaEventPublisher.class, InboxDeduplicator.class, ShardRouter.class, ShardTemplate.class, ShardingConfig.class,
+        OrderSagas.class})
+public class BenchmarkApplication {
+
+    @Bean
+    public MockProducer<String, byte[]> mockProducer() {
+        return new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer()) {
+            @Override
+            public void close(Duration timeout) {
+                // KafkaTemplate closes the producer after every send; the mock is shared by all of them
+            }
+        };
+    }
+
+    @Bean
+    public KafkaTemplate<String, byte[]> kafkaTemplate(MockProducer<String, byte[]> mockProducer) {
+        ProducerFactory<String, byte[]> producerFactory = () -> mockProducer;
+        return new KafkaTemplate<>(producerFactory);
+    }
+
+    public static ConfigurableApplicationContext start(String name, String... extraArgs) {
+        // passed as arguments so that they win over the orchestrator's application.yml on the classpath
+        List<String> args = new ArrayList<>(Arrays.asList("--spring.config.name=benchmarks",
+                "--spring.datasource.url=" + h2Url(name),
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.properties.hibernate.jdbc.batch_size=50",
+                "--spring.jpa.properties.hibernate.order_inserts=true",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN"));
+        args.addAll(Arrays.asList(extraArgs));
+        return new SpringApplicationBuilder(BenchmarkApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(new String[0]));
+    }
+
+    public static String h2Url(String name) {
+        return "jdbc:h2:mem:" + name + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    }
+}
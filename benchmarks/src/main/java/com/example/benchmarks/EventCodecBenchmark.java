@@ -0,0 +1,87 @@
+package com.example.benchmarks;
+
+import com.example.saga.common.event.EventCodecs;
+import com.example.saga.common.event.PaymentRequested;
+import com.example.saga.common.event.SagaEvent;
+import com.example.saga.common.event.SagaEventType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Payload de payment_requested: como os listeners faziam (concatenação de strings e um ObjectMapper novo
+ * com árvore JsonNode por mensagem) contra os codecs JSON e binário de {@code common}.
+ * Rodar com {@code -prof gc} para ver a alocação por operação.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventCodecBenchmark {
+    private UUID sagaId;
+    private PaymentRequested event;
+    private String legacyJson;
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup
+    public void setup() {
+        sagaId = UUID.randomUUID();
+        event = new PaymentRequested(sagaId, 123456L);
+        legacyJson = "{\"sagaId\":\"" + sagaId + "\",\"orderId\":" + 123456L + "}";
+        json = EventCodecs.JSON.encode(event);
+        binary = EventCodecs.BINARY.encode(event);
+    }
+
+    @Benchmark
+    public String legacyFormat() {
+        return "{\"sagaId\":\"" + event.getSagaId() + "\",\"orderId\":" + event.getOrderId() + "}";
+    }
+
+    @Benchmark
+    public UUID legacyParse() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode node = mapper.readTree(legacyJson);
+        return UUID.fromString(node.get("sagaId").asText());
+    }
+
+    @Benchmark
+    public byte[] jsonEncode() {
+        return EventCodecs.JSON.encode(event);
+    }
+
+    @Benchmark
+    public SagaEvent jsonDecode() {
+        return EventCodecs.JSON.decode(SagaEventType.PAYMENT_REQUESTED, json);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return EventCodecs.BINARY.encode(event);
+    }
+
+    @Benchmark
+    public SagaEvent binaryDecode() {
+        return EventCodecs.BINARY.decode(SagaEventType.PAYMENT_REQUESTED, binary);
+    }
+
+    @Benchmark
+    public byte[] legacyStringToBytes() {
+        return legacyJson.getBytes(StandardCharsets.UTF_8);
+    }
+}
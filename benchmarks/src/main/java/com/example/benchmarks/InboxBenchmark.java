@@ -0,0 +1,89 @@
+package com.example.benchmarks;
+
+import com.example.saga.common.InboxDeduplicator;
+import com.example.saga.common.domain.InboxMessage;
+import com.example.saga.common.repo.InboxRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deduplicação do inbox por mensagem: existsById + save (como os consumidores faziam) contra o
+ * insert-if-absent do {@link InboxDeduplicator}, para mensagens novas e para reentregas
+ * (que o cache LRU resolve sem ir ao banco).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InboxBenchmark {
+    private ConfigurableApplicationContext context;
+    private InboxRepository inboxRepository;
+    private InboxDeduplicator inboxDeduplicator;
+    private TransactionTemplate tx;
+    private String duplicateId;
+
+    @Setup
+    public void setup() {
+        context = BenchmarkApplication.start("inbox");
+        inboxRepository = context.getBean(InboxRepository.class);
+        inboxDeduplicator = context.getBean(InboxDeduplicator.class);
+        tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        duplicateId = UUID.randomUUID().toString();
+        tx.executeWithoutResult(s -> inboxDeduplicator.markReceived(duplicateId, "bench"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Boolean existsThenSave() {
+        String messageId = UUID.randomUUID().toString();
+        return tx.execute(s -> {
+            if (inboxRepository.existsById(messageId)) {
+                return false;
+            }
+            InboxMessage im = new InboxMessage();
+            im.setMessageId(messageId);
+            im.setType("bench");
+            inboxRepository.save(im);
+            return true;
+        });
+    }
+
+    @Benchmark
+    public Boolean insertIfAbsent() {
+        String messageId = UUID.randomUUID().toString();
+        return tx.execute(s -> inboxRepository.insertIfAbsent(messageId, Instant.now(), "bench") == 1);
+    }
+
+    @Benchmark
+    public Boolean deduplicatorNew() {
+        String messageId = UUID.randomUUID().toString();
+        return tx.execute(s -> inboxDeduplicator.markReceived(messageId, "bench"));
+    }
+
+    @Benchmark
+    public Boolean deduplicatorRedelivery() {
+        return tx.execute(s -> inboxDeduplicator.markReceived(duplicateId, "bench"));
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.benchmarks;
+
+import com.example.orchestrator.saga.OrderSaga;
+import com.example.orchestrator.saga.OrderSagaRepository;
+import com.example.orchestrator.saga.OrderSagas;
+import com.example.orchestrator.saga.SagaStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Passos do orquestrador sobre {@code order_saga}: criar uma saga, carregar e atualizar por id
+ * (payment_completed) e buscar por pedido, com {@code sagas} linhas já existentes na tabela.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderSagaBenchmark {
+
+    @Param({"10000"})
+    public int sagas;
+
+    private ConfigurableApplicationContext context;
+    private OrderSagaRepository orderSagaRepository;
+    private OrderSagas orderSagas;
+    private TransactionTemplate tx;
+    private List<UUID> sagaIds;
+
+    @Setup
+    public void setup() {
+        context = BenchmarkApplication.start("saga");
+        orderSagaRepository = context.getBean(OrderSagaRepository.class);
+        orderSagas = context.getBean(OrderSagas.class);
+        tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        sagaIds = new ArrayList<>(sagas);
+        List<OrderSaga> rows = new ArrayList<>(sagas);
+        for (int i = 0; i < sagas; i++) {
+            OrderSaga saga = new OrderSaga();
+            saga.setOrderId((long) i);
+            saga.setStatus(SagaStatus.PAYMENT_REQUESTED);
+            saga.setCurrentStep("PAYMENT_REQUESTED");
+            rows.add(saga);
+            sagaIds.add(saga.getSagaId());
+        }
+        tx.executeWithoutResult(s -> orderSagaRepository.saveAll(rows));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public UUID create() {
+        OrderSaga saga = new OrderSaga();
+        saga.setOrderId(ThreadLocalRandom.current().nextLong(sagas, Long.MAX_VALUE));
+        saga.setStatus(SagaStatus.PAYMENT_REQUESTED);
+        saga.setCurrentStep("PAYMENT_REQUESTED");
+        tx.executeWithoutResult(s -> orderSagaRepository.save(saga));
+        return saga.getSagaId();
+    }
+
+    @Benchmark
+    public OrderSaga loadAndUpdate() {
+        UUID sagaId = sagaIds.get(ThreadLocalRandom.current().nextInt(sagas));
+        return tx.execute(s -> {
+            OrderSaga saga = orderSagaRepository.findById(sagaId).orElseThrow();
+            saga.setStatus(SagaStatus.PAYMENT_COMPLETED);
+            saga.setCurrentStep("PAYMENT_COMPLETED");
+            saga.setUpdatedAt(Instant.now());
+            return orderSagaRepository.save(saga);
+        });
+    }
+
+    @Benchmark
+    public OrderSaga findByOrderId() {
+        long orderId = ThreadLocalRandom.current().nextInt(sagas);
+        return orderSagas.findByOrderId(orderId);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.benchmarks;
+
+import com.example.saga.common.OutboxRelay;
+import com.example.saga.common.domain.OutboxMessage;
+import com.example.saga.common.event.EventCodecs;
+import com.example.saga.common.event.PaymentRequested;
+import com.example.saga.common.repo.OutboxRepository;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publicação de um backlog de {@code backlog} mensagens do outbox: o laço antigo do {@code pollOutbox}
+ * (um send().get() e um save por linha, tudo em uma transação) contra o {@link OutboxRelay}.
+ * O producer é um {@link MockProducer}, então a diferença medida é o custo de banco e de coordenação.
+ * Com {@code -prof gc} o relay aloca o mesmo por mensagem em qualquer tamanho de backlog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OutboxRelayBenchmark {
+    private static final String TYPE = "payment_requested";
+
+    @Param({"100", "1000", "10000"})
+    public int backlog;
+
+    private ConfigurableApplicationContext context;
+    private OutboxRepository outboxRepository;
+    private OutboxRelay outboxRelay;
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+    private MockProducer<String, byte[]> mockProducer;
+    private TransactionTemplate tx;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        context = BenchmarkApplication.start("outbox");
+        outboxRepository = context.getBean(OutboxRepository.class);
+        outboxRelay = context.getBean(OutboxRelay.class);
+        kafkaTemplate = context.getBean(KafkaTemplate.class);
+        mockProducer = context.getBean(MockProducer.class);
+        tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @Setup(Level.Invocation)
+    public void fillBacklog() {
+        mockProducer.clear();
+        List<OutboxMessage> rows = new ArrayList<>(backlog);
+        for (int i = 0; i < backlog; i++) {
+            UUID sagaId = UUID.randomUUID();
+            OutboxMessage m = new OutboxMessage();
+            m.setAggregateType("saga");
+            m.setAggregateId(sagaId.toString());
+            m.setType(TYPE);
+            m.setPayload(EventCodecs.JSON.encode(new PaymentRequested(sagaId, (long) i)));
+            rows.add(m);
+        }
+        tx.executeWithoutResult(s -> outboxRepository.saveAll(rows));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int legacyPollLoop() {
+        return tx.execute(s -> {
+            List<OutboxMessage> pending = outboxRepository.findByTypeAndPublishedFalseOrderByCreatedAtAsc(TYPE);
+            for (OutboxMessage m : pending) {
+                try {
+                    kafkaTemplate.send(m.getType(), UUID.randomUUID().toString(), m.getPayload()).get();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                m.setPublished(true);
+                outboxRepository.save(m);
+            }
+            return pending.size();
+        });
+    }
+
+    @Benchmark
+    public int batchedRelay() {
+        return outboxRelay.relay(TYPE);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.benchmarks;
+
+import com.example.orchestrator.saga.OrderSaga;
+import com.example.orchestrator.saga.OrderSagaRepository;
+import com.example.orchestrator.saga.SagaStatus;
+import com.example.saga.common.repo.InboxRepository;
+import com.example.saga.common.shard.ShardContext;
+import com.example.saga.common.shard.ShardRouter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vazão de escrita do orquestrador com o store dividido em {@code shards} bancos H2 em memória: cada
+ * operação é a transação de um {@code OrderCreated} (inbox + saga nova) no shard do pedido, com várias
+ * threads concorrendo. Com um shard é o contexto dos outros benchmarks, sem {@code saga.sharding.urls}.
+ * <p>
+ * H2 roda no mesmo processo, então o ganho aqui vem de dividir locks e índices, não de mais discos;
+ * contra Postgres reais a escala deve ser maior.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class ShardedWriteBenchmark {
+
+    @Param({"1", "2", "4"})
+    public int shards;
+
+    private ConfigurableApplicationContext context;
+    private OrderSagaRepository orderSagaRepository;
+    private InboxRepository inboxRepository;
+    private ShardRouter shardRouter;
+    private TransactionTemplate tx;
+
+    @Setup
+    public void setup() {
+        if (shards == 1) {
+            context = BenchmarkApplication.start("sharded");
+        } else {
+            List<String> urls = new ArrayList<>(shards);
+            for (int i = 0; i < shards; i++) {
+                urls.add(BenchmarkApplication.h2Url("sharded" + i));
+            }
+            context = BenchmarkApplication.start("sharded", "--saga.sharding.urls=" + String.join(",", urls),
+                    "--saga.sharding.pool-size=8");
+        }
+        orderSagaRepository = context.getBean(OrderSagaRepository.class);
+        inboxRepository = context.getBean(InboxRepository.class);
+        shardRouter = context.getBean(ShardRouter.class);
+        tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public UUID startSaga() {
+        long orderId = ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+        int shard = shardRouter.shardOf(orderId);
+        return ShardContext.call(shard, () -> tx.execute(s -> {
+            inboxRepository.insertIfAbsent(UUID.randomUUID().toString(), Instant.now(), "order_created");
+            OrderSaga saga = new OrderSaga();
+            saga.setSagaId(shardRouter.newSagaId(shard));
+            saga.setOrderId(orderId);
+            saga.setStatus(SagaStatus.PAYMENT_REQUESTED);
+            saga.setCurrentStep("PAYMENT_REQUESTED");
+            orderSagaRepository.save(saga);
+            return saga.getSagaId();
+        }));
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.saga.common;
+
+import com.example.saga.common.repo.InboxRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deduplicação do inbox em uma única ida ao banco ({@code INSERT ... ON CONFLICT DO NOTHING}), com um
+ * cache LRU limitado na frente que rejeita ids vistos recentemente sem tocar no banco.
+ * <p>
+ * Um id só entra no cache depois do commit da transação do consumidor; se ela fizer rollback a
+ * reentrega tem que ser processada de novo.
+ * <p>
+ * Consumidores em lote usam {@link #filterNew}, que deduplica o lote inteiro com um único INSERT.
+ * <p>
+ * Os contadores são expostos como {@code saga.inbox.cache.hits}, {@code saga.inbox.cache.misses},
+ * {@code saga.inbox.duplicates} e {@code saga.inbox.cache.size}.
+ */
+@Component
+public class InboxDeduplicator implements MeterBinder {
+    private static final String INSERT_BATCH = "insert into inbox (message_id, received_at, type) " +
+            "select unnest(cast(? as varchar[])), ?, ? on conflict do nothing returning message_id";
+
+    private final InboxRepository inboxRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<String, Boolean> recent;
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private volatile Boolean postgres;
+
+    public InboxDeduplicator(InboxRepository inboxRepository,
+                             JdbcTemplate jdbcTemplate,
+                             @Value("${saga.inbox.cache-size:100000}") int cacheSize) {
+        this.inboxRepository = inboxRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.recent = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * Registra o recebimento da mensagem. Retorna {@code true} se ela é nova e deve ser processada,
+     * {@code false} se é uma reentrega. Precisa rodar dentro da transação do consumidor.
+     */
+    public boolean markReceived(String messageId, String type) {
+        if (recent.containsKey(messageId)) {
+            cacheHits.incrementAndGet();
+            duplicates.incrementAndGet();
+            return false;
+        }
+        cacheMisses.incrementAndGet();
+        if (inboxRepository.insertIfAbsent(messageId, Instant.now(), type) == 0) {
+            duplicates.incrementAndGet();
+            recent.put(messageId, Boolean.TRUE);
+            return false;
+        }
+        rememberAfterCommit(messageId);
+        return true;
+    }
+
+    /**
+     * Versão em lote de {@link #markReceived(String, String)}: retorna os ids que são novos.
+     */
+    public Set<String> markReceived(Collection<String> messageIds, String type) {
+        List<String> candidates = new ArrayList<>(messageIds.size());
+        for (String messageId : messageIds) {
+            if (recent.containsKey(messageId)) {
+                cacheHits.incrementAndGet();
+                duplicates.incrementAndGet();
+            } else {
+                cacheMisses.incrementAndGet();
+                candidates.add(messageId);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Set<String> inserted = isPostgres() ? insertBatch(candidates, type) : insertEach(candidates, type);
+
+        for (String messageId : candidates) {
+            if (!inserted.contains(messageId)) {
+                duplicates.incrementAndGet();
+                recent.put(messageId, Boolean.TRUE);
+            }
+        }
+        rememberAfterCommit(inserted);
+        return inserted;
+    }
+
+    private Set<String> insertBatch(List<String> candidates, String type) {
+        Timestamp now = Timestamp.from(Instant.now());
+        return new HashSet<>(jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(INSERT_BATCH);
+            ps.setArray(1, con.createArrayOf("varchar", candidates.toArray()));
+            ps.setTimestamp(2, now);
+            ps.setString(3, type);
+            return ps;
+        }, (rs, rowNum) -> rs.getString(1)));
+    }
+
+    // other databases (H2 in the load test) have no INSERT ... RETURNING; one statement per id
+    private Set<String> insertEach(List<String> candidates, String type) {
+        Instant now = Instant.now();
+        Set<String> inserted = new HashSet<>();
+        for (String messageId : candidates) {
+            if (inboxRepository.insertIfAbsent(messageId, now, type) == 1) {
+                inserted.add(messageId);
+            }
+        }
+        return inserted;
+    }
+
+    private boolean isPostgres() {
+        if (postgres == null) {
+            postgres = "PostgreSQL".equals(jdbcTemplate.execute(
+                    (ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName()));
+        }
+        return postgres;
+    }
+
+    /**
+     * Retorna os registros do lote que devem ser processados: uma única ocorrência por id de mensagem
+     * (reentregas dentro do próprio lote são descartadas) e apenas ids ainda não vistos pelo inbox.
+     */
+    public <V> List<ConsumerRecord<String, V>> filterNew(List<ConsumerRecord<String, V>> records, String type) {
+        Map<String, ConsumerRecord<String, V>> byId = new LinkedHashMap<>();
+        for (ConsumerRecord<String, V> record : records) {
+            byId.putIfAbsent(messageId(record), record);
+        }
+        Set<String> fresh = markReceived(byId.keySet(), type);
+        List<ConsumerRecord<String, V>> result = new ArrayList<>(fresh.size());
+        byId.forEach((messageId, record) -> {
+            if (fresh.contains(messageId)) {
+                result.add(record);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Id da mensagem vindo do header {@link SagaHeaders#MESSAGE_ID}; registros antigos, publicados antes
+     * do header existir, usavam a própria chave como id.
+     */
+    public static String messageId(ConsumerRecord<String, ?> record) {
+        Header header = record.headers().lastHeader(SagaHeaders.MESSAGE_ID);
+        return header != null ? new String(header.value(), StandardCharsets.UTF_8) : record.key();
+    }
+
+    private void rememberAfterCommit(String messageId) {
+        rememberAfterCommit(Collections.singleton(messageId));
+    }
+
+    private void rememberAfterCommit(Collection<String> messageIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            messageIds.forEach(id -> recent.put(id, Boolean.TRUE));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                messageIds.forEach(id -> recent.put(id, Boolean.TRUE));
+            }
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("saga.inbox.cache.hits", this, InboxDeduplicator::getCacheHits)
+                .description("Redeliveries rejected by the in-memory cache")
+                .register(registry);
+        FunctionCounter.builder("saga.inbox.cache.misses", this, InboxDeduplicator::getCacheMisses)
+                .description("Message ids that had to be checked against the inbox table")
+                .register(registry);
+        FunctionCounter.builder("saga.inbox.duplicates", this, InboxDeduplicator::getDuplicates)
+                .description("Redeliveries dropped, from the cache or the inbox table")
+                .register(registry);
+        Gauge.builder("saga.inbox.cache.size", this, InboxDeduplicator::getCacheSize)
+                .register(registry);
+    }
+
+    public long getCacheHits() { return cacheHits.get(); }
+    public long getCacheMisses() { return cacheMisses.get(); }
+    public long getDuplicates() { return duplicates.get(); }
+    public int getCacheSize() { return recent.size(); }
+}
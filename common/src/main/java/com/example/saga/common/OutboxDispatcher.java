@@ -0,0 +1,157 @@
+package com.example.saga.common;
+
+import com.example.saga.common.shard.ShardContext;
+import com.example.saga.common.shard.ShardRouter;
+import com.example.saga.common.threads.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispara o {@link OutboxRelay} assim que uma transação que gravou no outbox faz commit
+ * (ver {@link com.example.saga.common.domain.OutboxCommitListener}), em vez de esperar o próximo poll.
+ * O poll agendado de cada serviço continua existindo como rede de segurança e é espaçado
+ * exponencialmente enquanto não encontra nada para publicar; uma passada que falhou no envio não conta
+ * como ociosa, e o tick seguinte tenta de novo.
+ * <p>
+ * Cada tipo só tem um relay rodando por vez nesta JVM em cada shard (ver {@link ShardRouter}); sinais
+ * recebidos durante uma execução são agrupados em uma nova passada.
+ */
+@Component
+public class OutboxDispatcher implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    private final OutboxRelay outboxRelay;
+    private final boolean wakeupEnabled;
+    private final int maxBackoffShift;
+    private final int shards;
+    private final Map<String, Lane[]> lanes = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    public OutboxDispatcher(OutboxRelay outboxRelay,
+                            VirtualThreads virtualThreads,
+                            ShardRouter shardRouter,
+                            @Value("${saga.outbox.wakeup-enabled:true}") boolean wakeupEnabled,
+                            @Value("${saga.outbox.idle-backoff-max-shift:5}") int maxBackoffShift) {
+        this.outboxRelay = outboxRelay;
+        this.shards = shardRouter.count();
+        this.executor = Executors.newCachedThreadPool(virtualThreads.factory("outbox-dispatch"));
+        this.wakeupEnabled = wakeupEnabled;
+        this.maxBackoffShift = maxBackoffShift;
+    }
+
+    /**
+     * Poll de segurança, chamado pelo {@code @Scheduled} do serviço. Registra o tipo como publicado
+     * por esta instância e pula ticks enquanto o tipo estiver ocioso.
+     */
+    public void poll(String type) {
+        for (Lane lane : lanes.computeIfAbsent(type, this::newLanes)) {
+            lane.poll();
+        }
+    }
+
+    /**
+     * Acorda o relay do tipo no shard em que a mensagem foi gravada. Tipos que esta instância não publica
+     * são ignorados.
+     */
+    public void signal(String type, int shard) {
+        if (!wakeupEnabled) {
+            return;
+        }
+        Lane[] typeLanes = lanes.get(type);
+        if (typeLanes != null) {
+            typeLanes[shard].trigger();
+        }
+    }
+
+    /**
+     * Tipos publicados por esta instância, isto é, que já passaram por {@link #poll}.
+     */
+    public Set<String> types() {
+        return lanes.keySet();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private Lane[] newLanes(String type) {
+        Lane[] typeLanes = new Lane[shards];
+        for (int shard = 0; shard < shards; shard++) {
+            typeLanes[shard] = new Lane(type, shard);
+        }
+        return typeLanes;
+    }
+
+    private class Lane {
+        private final String type;
+        private final int shard;
+        private final AtomicBoolean running = new AtomicBoolean();
+        private final AtomicBoolean dirty = new AtomicBoolean();
+        private final AtomicInteger skipsLeft = new AtomicInteger();
+        private volatile int idleShift;
+
+        Lane(String type, int shard) {
+            this.type = type;
+            this.shard = shard;
+        }
+
+        void poll() {
+            if (skipsLeft.get() > 0) {
+                skipsLeft.decrementAndGet();
+                return;
+            }
+            trigger();
+        }
+
+        void trigger() {
+            dirty.set(true);
+            if (running.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                while (dirty.getAndSet(false)) {
+                    record(ShardContext.call(shard, () -> outboxRelay.pass(type)));
+                }
+            } catch (Exception e) {
+                logger.warn("Outbox relay for type {} on shard {} failed, will be retried by the poller", type, shard, e);
+                resetBackoff();
+            } finally {
+                running.set(false);
+                // a signal may have arrived between the last check and releasing the flag
+                if (dirty.get() && running.compareAndSet(false, true)) {
+                    executor.execute(this::drain);
+                }
+            }
+        }
+
+        private void record(OutboxRelay.Pass pass) {
+            // a failed send leaves rows pending: the next tick retries them instead of backing off
+            if (pass.published > 0 || pass.failed) {
+                resetBackoff();
+            } else {
+                idleShift = Math.min(idleShift + 1, maxBackoffShift);
+                skipsLeft.set((1 << idleShift) - 1);
+            }
+        }
+
+        private void resetBackoff() {
+            idleShift = 0;
+            skipsLeft.set(0);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.saga.common;
+
+import com.example.saga.common.repo.OutboxRepository;
+import com.example.saga.common.shard.ShardContext;
+import com.example.saga.common.shard.ShardRouter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publica o gauge {@code saga.outbox.lag}: idade, em segundos, da mensagem pendente mais antiga de cada
+ * tipo que esta instância publica, considerando todos os shards. Zero quando o outbox do tipo está vazio.
+ */
+@Component
+public class OutboxLagMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(OutboxLagMonitor.class);
+
+    private final OutboxRepository outboxRepository;
+    private final OutboxDispatcher outboxDispatcher;
+    private final ShardRouter shardRouter;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AtomicLong> lagMillis = new ConcurrentHashMap<>();
+
+    public OutboxLagMonitor(OutboxRepository outboxRepository,
+                            OutboxDispatcher outboxDispatcher,
+                            ShardRouter shardRouter,
+                            MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.outboxDispatcher = outboxDispatcher;
+        this.shardRouter = shardRouter;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Scheduled(fixedDelayString = "${saga.metrics.outbox-lag-interval-ms:5000}")
+    public void sample() {
+        Instant now = Instant.now();
+        for (String type : outboxDispatcher.types()) {
+            try {
+                Instant oldest = null;
+                for (int shard = 0; shard < shardRouter.count(); shard++) {
+                    Instant candidate = ShardContext.call(shard, () -> outboxRepository.findOldestPendingCreatedAt(type));
+                    if (candidate != null && (oldest == null || candidate.isBefore(oldest))) {
+                        oldest = candidate;
+                    }
+                }
+                long lag = oldest == null ? 0 : Math.max(0, Duration.between(oldest, now).toMillis());
+                gauge(type).set(lag);
+            } catch (RuntimeException e) {
+                logger.warn("Could not sample outbox lag for type {}", type, e);
+            }
+        }
+    }
+
+    private AtomicLong gauge(String type) {
+        return lagMillis.computeIfAbsent(type, t -> {
+            AtomicLong value = new AtomicLong();
+            Gauge.builder("saga.outbox.lag", value, v -> v.get() / 1000.0)
+                    .tag("type", t)
+                    .baseUnit("seconds")
+                    .description("Age of the oldest unpublished outbox message")
+                    .register(meterRegistry);
+            return value;
+        });
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.saga.common;
+
+import com.example.saga.common.domain.OutboxMessage;
+import com.example.saga.common.event.EventCodec;
+import com.example.saga.common.event.EventCodecs;
+import com.example.saga.common.event.SagaEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Formato do payload das linhas do outbox. O evento é codificado uma vez, na gravação, já no formato de
+ * transmissão ({@code saga.events.content-type}) e guardado inline em {@code payload_data} (bytea) junto
+ * com o seu content type; o relay só lê os bytes e os entrega ao producer.
+ * <p>
+ * Com {@code saga.outbox.compress-above-bytes} os payloads maiores que o limite são gravados com gzip e
+ * descompactados pelo relay antes do envio: a compressão no Kafka é a do producer
+ * ({@code compression.type}), por lote, e os consumidores não mudam. Desligado por padrão: os eventos da
+ * saga têm poucas centenas de bytes e o Postgres já comprime valores acima de ~2 KB (TOAST).
+ */
+@Component
+public class OutboxPayloads {
+    public static final String GZIP = "gzip";
+
+    private final EventCodec codec;
+    private final int compressAboveBytes;
+
+    public OutboxPayloads(@Value("${saga.events.content-type:application/json}") String contentType,
+                          @Value("${saga.outbox.compress-above-bytes:0}") int compressAboveBytes) {
+        this.codec = EventCodecs.forContentType(contentType);
+        this.compressAboveBytes = compressAboveBytes;
+    }
+
+    /**
+     * Codifica {@code event} no payload de {@code m}.
+     */
+    public void write(OutboxMessage m, SagaEvent event) {
+        byte[] payload = codec.encode(event);
+        m.setContentType(codec.contentType());
+        if (compressAboveBytes > 0 && payload.length > compressAboveBytes) {
+            m.setPayload(gzip(payload));
+            m.setPayloadEncoding(GZIP);
+        } else {
+            m.setPayload(payload);
+            m.setPayloadEncoding(null);
+        }
+    }
+
+    /**
+     * Os bytes a enviar: o payload gravado, descompactado se preciso.
+     */
+    public static byte[] read(OutboxMessage m) {
+        return GZIP.equals(m.getPayloadEncoding()) ? gunzip(m.getPayload()) : m.getPayload();
+    }
+
+    /**
+     * Content type do payload; linhas migradas do formato antigo são JSON.
+     */
+    public static String contentType(OutboxMessage m) {
+        return m.getContentType() != null ? m.getContentType() : EventCodecs.JSON.contentType();
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] data) {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return gzip.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
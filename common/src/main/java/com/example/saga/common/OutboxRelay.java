@@ -0,0 +1,330 @@
+package com.example.saga.common;
+
+import com.example.saga.common.bus.EventPublisher;
+import com.example.saga.common.domain.OutboxMessage;
+import com.example.saga.common.repo.OutboxRepository;
+import com.example.saga.common.shard.ShardContext;
+import com.example.saga.common.trace.SagaTracer;
+import com.example.saga.common.trace.TraceContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publica as mensagens pendentes do outbox em lotes: todos os envios do lote são disparados de forma
+ * assíncrona (limitados por {@code saga.outbox.max-in-flight}), os acks são aguardados juntos e os ids
+ * confirmados são marcados como publicados com um único UPDATE em uma transação curta.
+ * Nenhuma conexão com o banco fica presa enquanto se espera pelo broker.
+ * <p>
+ * Com {@code saga.outbox.lease-enabled=true} cada instância reserva uma fatia das linhas pendentes
+ * ({@code FOR UPDATE SKIP LOCKED} + dono e validade do lease) antes de publicá-las, permitindo rodar
+ * várias réplicas do mesmo serviço. Leases de uma instância que morreu expiram e são reassumidos.
+ * <p>
+ * Métricas por tipo: {@code saga.outbox.relay.batch.size}, {@code saga.outbox.publish.latency}
+ * (envio até o ack do broker), {@code saga.outbox.published}, {@code saga.outbox.publish.failures} e
+ * {@code saga.outbox.unreadable} (linhas sem payload, puladas).
+ */
+@Component
+public class OutboxRelay {
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxRepository outboxRepository;
+    private final EventPublisher publisher;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final long sendTimeoutMs;
+    private final boolean leaseEnabled;
+    private final long leaseMs;
+    private final String instanceId;
+    private final MeterRegistry meterRegistry;
+    private final SagaTracer tracer;
+
+    public OutboxRelay(OutboxRepository outboxRepository,
+                       EventPublisher publisher,
+                       PlatformTransactionManager transactionManager,
+                       ObjectProvider<MeterRegistry> meterRegistry,
+                       ObjectProvider<SagaTracer> tracer,
+                       @Value("${saga.outbox.batch-size:500}") int batchSize,
+                       @Value("${saga.outbox.max-in-flight:100}") int maxInFlight,
+                       @Value("${saga.outbox.send-timeout-ms:10000}") long sendTimeoutMs,
+                       @Value("${saga.outbox.lease-enabled:false}") boolean leaseEnabled,
+                       @Value("${saga.outbox.lease-ms:60000}") long leaseMs,
+                       @Value("${saga.outbox.instance-id:}") String instanceId) {
+        this.outboxRepository = outboxRepository;
+        this.publisher = publisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.leaseEnabled = leaseEnabled;
+        this.leaseMs = leaseMs;
+        this.instanceId = instanceId.isBlank() ? defaultInstanceId() : instanceId;
+        this.meterRegistry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+        this.tracer = tracer.getIfAvailable();
+        if (leaseEnabled && leaseMs <= sendTimeoutMs) {
+            logger.warn("saga.outbox.lease-ms ({}) should be larger than saga.outbox.send-timeout-ms ({})", leaseMs, sendTimeoutMs);
+        }
+    }
+
+    /**
+     * Esvazia as mensagens pendentes do tipo informado, lote a lote, e retorna quantas foram publicadas.
+     * Para no primeiro lote incompleto ou com falha de envio; o restante fica para o próximo poll.
+     * <p>
+     * Um backlog grande (ex.: depois de o broker ficar fora) é percorrido por keyset em
+     * {@code (created_at, id)}: só um lote fica em memória, cada lote é marcado em sua própria transação e o
+     * próximo só é lido depois dos acks do anterior, então a leitura nunca passa à frente do producer.
+     */
+    public int relay(String type) {
+        return pass(type).published;
+    }
+
+    /**
+     * Uma passada de {@link #relay}, dizendo também se ela parou por falha de envio. O
+     * {@link OutboxDispatcher} usa isso para não confundir um broker fora com um tipo sem pendências.
+     */
+    Pass pass(String type) {
+        int total = 0;
+        boolean failed = false;
+        int batches = 0;
+        OutboxMessage last = null;
+        while (true) {
+            OutboxMessage after = last;
+            List<OutboxMessage> pending = transactionTemplate.execute(status -> nextBatch(type, after));
+            if (pending == null || pending.isEmpty()) {
+                break;
+            }
+            logger.debug("{} pending OutboxMessage of type {} to process", pending.size(), type);
+            DistributionSummary.builder("saga.outbox.relay.batch.size")
+                    .tag("type", type)
+                    .register(meterRegistry)
+                    .record(pending.size());
+
+            List<OutboxMessage> readable = withPayload(pending);
+            int published = readable.isEmpty() ? 0 : publishBatch(readable);
+            total += published;
+            batches++;
+            if (published < readable.size()) {
+                failed = true;
+                break;
+            }
+            if (pending.size() < batchSize) {
+                break;
+            }
+            last = pending.get(pending.size() - 1);
+        }
+        if (batches > 1) {
+            logger.info("Outbox backlog of type {} drained: {} messages in {} batches", type, total, batches);
+        }
+        return new Pass(total, failed);
+    }
+
+    /**
+     * Publica de novo mensagens já gravadas, publicadas ou não (replay de um intervalo do outbox). O id de
+     * mensagem é o mesmo do envio original, então o que o consumidor já processou é descartado pelo inbox.
+     * Retorna quantas o broker confirmou.
+     */
+    public int republish(List<OutboxMessage> messages) {
+        Map<String, List<OutboxMessage>> byType = new LinkedHashMap<>();
+        for (OutboxMessage m : messages) {
+            byType.computeIfAbsent(m.getType(), t -> new ArrayList<>()).add(m);
+        }
+        int published = 0;
+        for (List<OutboxMessage> batch : byType.values()) {
+            List<OutboxMessage> readable = withPayload(batch);
+            if (!readable.isEmpty()) {
+                published += publishBatch(readable);
+            }
+        }
+        return published;
+    }
+
+    /**
+     * Sem lease, lê a página seguinte a {@code after}. Linhas que fazem commit depois com um
+     * {@code created_at} anterior ao cursor ficam para o próximo relay, que recomeça do início.
+     */
+    private List<OutboxMessage> nextBatch(String type, OutboxMessage after) {
+        if (!leaseEnabled) {
+            PageRequest page = PageRequest.of(0, batchSize);
+            return after == null
+                    ? outboxRepository.findByTypeAndPublishedFalseOrderByCreatedAtAscIdAsc(type, page)
+                    : outboxRepository.findPendingAfter(type, after.getCreatedAt(), after.getId(), page);
+        }
+        // truncated so the value read back from the database compares equal
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        Instant expiresAt = now.plusMillis(leaseMs);
+        if (outboxRepository.claim(type, instanceId, now, expiresAt, batchSize) == 0) {
+            return Collections.emptyList();
+        }
+        return outboxRepository.findByLeaseOwnerAndLeaseExpiresAtAndPublishedFalseOrderByCreatedAtAscIdAsc(instanceId, expiresAt);
+    }
+
+    /**
+     * Linhas sem {@code payload_data} foram gravadas por uma versão antiga na coluna {@code payload}, e só o
+     * {@link com.example.saga.common.retention.OutboxPayloadMigrator} as move, e só no Postgres. Ficam de
+     * fora do envio, com um erro no log e em {@code saga.outbox.unreadable}, para não prender as linhas que
+     * vêm depois delas; continuam pendentes, então também aparecem em {@code saga.outbox.lag}.
+     */
+    private List<OutboxMessage> withPayload(List<OutboxMessage> batch) {
+        List<OutboxMessage> readable = new ArrayList<>(batch.size());
+        for (OutboxMessage m : batch) {
+            if (m.getPayload() != null) {
+                readable.add(m);
+                continue;
+            }
+            Counter.builder("saga.outbox.unreadable")
+                    .tag("type", m.getType())
+                    .register(meterRegistry)
+                    .increment();
+            logger.error("Outbox message {} of type {} has no payload_data (written before the inline payload), skipped",
+                    m.getId(), m.getType());
+        }
+        return readable;
+    }
+
+    private int publishBatch(List<OutboxMessage> batch) {
+        String type = batch.get(0).getType();
+        Timer latency = Timer.builder("saga.outbox.publish.latency")
+                .tag("type", type)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Counter failures = Counter.builder("saga.outbox.publish.failures")
+                .tag("type", type)
+                .register(meterRegistry);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        List<Long> acked = Collections.synchronizedList(new ArrayList<>(batch.size()));
+        List<CompletableFuture<?>> sends = new ArrayList<>(batch.size());
+
+        try {
+            for (OutboxMessage m : batch) {
+                inFlight.acquire();
+                long start = System.nanoTime();
+                // sampled rows: the time spent in the outbox, then the send; the record carries the send span
+                TraceContext written = tracer == null ? null : TraceContext.parse(m.getTraceParent());
+                TraceContext waited = written == null ? null : written.child();
+                TraceContext published = waited == null ? null : waited.child();
+                long sentAt = published == null ? 0 : SagaTracer.nowMicros();
+                CompletableFuture<?> send;
+                try {
+                    send = publisher.send(toRecord(m, published));
+                } catch (RuntimeException e) {
+                    inFlight.release();
+                    failures.increment();
+                    logger.warn("Failed to publish outbox message {}, will be picked by poller later", m.getId(), e);
+                    break;
+                }
+                sends.add(send.whenComplete((result, ex) -> {
+                    inFlight.release();
+                    if (ex == null) {
+                        latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        acked.add(m.getId());
+                        if (published != null) {
+                            String key = recordKey(m);
+                            tracer.export(waited, written, "outbox.wait", key, SagaTracer.micros(m.getCreatedAt()), sentAt);
+                            tracer.export(published, waited, "kafka.publish", key, sentAt, SagaTracer.nowMicros());
+                        }
+                    } else {
+                        failures.increment();
+                        logger.warn("Failed to publish outbox message {}, will be picked by poller later", m.getId(), ex);
+                    }
+                }));
+            }
+            CompletableFuture.allOf(sends.toArray(CompletableFuture<?>[]::new)).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // individual failures were already logged; the acked ids are still marked below
+        } catch (TimeoutException e) {
+            logger.warn("Timed out after {} ms waiting for {} outbox sends", sendTimeoutMs, sends.size());
+        }
+
+        List<Long> ids;
+        synchronized (acked) {
+            ids = new ArrayList<>(acked);
+        }
+        if (!ids.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> outboxRepository.markPublished(ids));
+            logger.debug("{} OutboxMessage of type {} published", ids.size(), type);
+            Counter.builder("saga.outbox.published")
+                    .tag("type", type)
+                    .register(meterRegistry)
+                    .increment(ids.size());
+        }
+        return ids.size();
+    }
+
+    private ProducerRecord<String, byte[]> toRecord(OutboxMessage m, TraceContext trace) {
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(m.getType(), recordKey(m), OutboxPayloads.read(m));
+        record.headers().add(SagaHeaders.MESSAGE_ID, messageId(m).getBytes(StandardCharsets.UTF_8));
+        record.headers().add(SagaHeaders.EVENT_TYPE, m.getType().getBytes(StandardCharsets.UTF_8));
+        record.headers().add(SagaHeaders.CONTENT_TYPE, OutboxPayloads.contentType(m).getBytes(StandardCharsets.UTF_8));
+        if (trace != null) {
+            record.headers().add(SagaHeaders.TRACEPARENT, trace.traceparent().getBytes(StandardCharsets.UTF_8));
+        }
+        return record;
+    }
+
+    private static String recordKey(OutboxMessage m) {
+        return m.getMessageKey() != null ? m.getMessageKey() : m.getAggregateId();
+    }
+
+    private static String defaultInstanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * Id estável por linha do outbox, para que um reenvio (ex.: ack recebido mas UPDATE perdido) seja
+     * descartado pelo inbox do consumidor em vez de ser processado de novo.
+     * <p>
+     * O id da linha só é único na sua tabela: o banco do order-service e cada shard têm a sua sequence, e
+     * o shard 0 começa do 1 como o order-service. Por isso entram também o tipo de agregado, que identifica
+     * o serviço que gravou a linha, e o shard.
+     */
+    static String messageId(OutboxMessage m) {
+        String name = "outbox:" + m.getAggregateType() + ":" + ShardContext.current() + ":" + m.getId();
+        return UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    static final class Pass {
+        final int published;
+        final boolean failed;
+
+        Pass(int published, boolean failed) {
+            this.published = published;
+            this.failed = failed;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.saga.common;
+
+/**
+ * Headers Kafka usados entre os serviços da saga.
+ */
+public final class SagaHeaders {
+    /**
+     * Id estável da mensagem do outbox, usado pelo inbox do consumidor para deduplicação.
+     * A chave do registro fica livre para o id do agregado (pedido/saga), que define a partição.
+     */
+    public static final String MESSAGE_ID = "saga_message_id";
+
+    /**
+     * Formato do payload (ver {@link com.example.saga.common.event.EventCodecs}); ausente significa JSON.
+     */
+    public static final String CONTENT_TYPE = "saga_content_type";
+
+    /**
+     * Nome do {@link com.example.saga.common.event.SagaEventType}; ausente significa o nome do tópico.
+     */
+    public static final String EVENT_TYPE = "saga_event_type";
+
+    /**
+     * Contexto de trace W3C do span que publicou o registro; só presente em sagas amostradas
+     * (ver {@link com.example.saga.common.trace.SagaTracer}).
+     */
+    public static final String TRACEPARENT = "traceparent";
+
+    /**
+     * Tópico de onde veio um registro em retry ou dead letter (ver
+     * {@link com.example.saga.common.retry.RetryTopics}).
+     */
+    public static final String ORIGINAL_TOPIC = "saga_original_topic";
+
+    /**
+     * Quantas vezes o registro já falhou no consumidor.
+     */
+    public static final String ATTEMPT = "saga_attempt";
+
+    /**
+     * Instante (epoch ms) a partir do qual um registro em um tópico de retry volta ao tópico original.
+     */
+    public static final String RETRY_AT = "saga_retry_at";
+
+    /**
+     * Última falha do registro, como {@code Classe: mensagem}.
+     */
+    public static final String ERROR = "saga_error";
+
+    private SagaHeaders() {
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.saga.common.bus;
+
+import com.example.saga.common.event.SagaEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanExpressionContext;
+import org.springframework.beans.factory.config.BeanExpressionResolver;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Assina no {@link InMemoryEventBus} cada método {@code @KafkaListener} do contexto, com os mesmos tópicos
+ * (placeholders e expressões {@code #{...}} resolvidos como o Spring Kafka faz). Só listeners em lote
+ * que recebem {@code List<ConsumerRecord<String, SagaEvent>>} são suportados, que é o que os serviços usam.
+ */
+public class BusListenerRegistrar implements SmartLifecycle {
+
+    private final ConfigurableListableBeanFactory beanFactory;
+    private final InMemoryEventBus bus;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final int lanes;
+    private final int capacity;
+    private final int batchSize;
+    private final List<InMemoryEventBus.Subscription> subscriptions = new ArrayList<>();
+    private volatile boolean running;
+
+    public BusListenerRegistrar(ConfigurableListableBeanFactory beanFactory,
+                                InMemoryEventBus bus,
+                                ObjectProvider<MeterRegistry> meterRegistry,
+                                int lanes,
+                                int capacity,
+                                int batchSize) {
+        this.beanFactory = beanFactory;
+        this.bus = bus;
+        this.meterRegistry = meterRegistry;
+        this.lanes = lanes;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public synchronized void start() {
+        for (String name : beanFactory.getBeanDefinitionNames()) {
+            Class<?> type = beanFactory.getType(name, false);
+            if (type == null) {
+                continue;
+            }
+            Map<Method, KafkaListener> listeners = MethodIntrospector.selectMethods(ClassUtils.getUserClass(type),
+                    (MethodIntrospector.MetadataLookup<KafkaListener>) m -> AnnotatedElementUtils.findMergedAnnotation(m, KafkaListener.class));
+            if (listeners.isEmpty()) {
+                continue;
+            }
+            Object bean = beanFactory.getBean(name);
+            listeners.forEach((method, listener) -> subscribe(name, bean, method, listener));
+        }
+        running = true;
+    }
+
+    private void subscribe(String beanName, Object bean, Method method, KafkaListener listener) {
+        if (method.getParameterCount() != 1 || !List.class.isAssignableFrom(method.getParameterTypes()[0])) {
+            throw new IllegalStateException("Only batch listeners taking List<ConsumerRecord> can run on the in-memory bus: " + method);
+        }
+        Method invocable = AopUtils.selectInvocableMethod(method, bean.getClass());
+        ReflectionUtils.makeAccessible(invocable);
+        Consumer<List<ConsumerRecord<String, SagaEvent>>> handler = records -> ReflectionUtils.invokeMethod(invocable, bean, records);
+
+        String name = resolve(listener.groupId()) + "." + beanName + "." + method.getName();
+        InMemoryEventBus.Subscription subscription = bus.subscribe(name, topics(listener), handler, lanes, capacity, batchSize);
+        subscriptions.add(subscription);
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            Gauge.builder("saga.bus.queued", subscription, InMemoryEventBus.Subscription::queued)
+                    .description("Records waiting in the in-memory bus for this listener")
+                    .tag("listener", name)
+                    .register(registry);
+        }
+    }
+
+    private Set<String> topics(KafkaListener listener) {
+        Set<String> topics = new LinkedHashSet<>();
+        for (String topic : listener.topics()) {
+            Object value = evaluate(topic);
+            if (value instanceof String[]) {
+                topics.addAll(Arrays.asList((String[]) value));
+            } else if (value instanceof Collection) {
+                ((Collection<?>) value).forEach(t -> topics.add(t.toString()));
+            } else if (value != null) {
+                topics.add(value.toString());
+            }
+        }
+        if (topics.isEmpty()) {
+            throw new IllegalStateException("Only listeners with explicit topics can run on the in-memory bus: " + listener);
+        }
+        return topics;
+    }
+
+    private String resolve(String value) {
+        Object resolved = evaluate(value);
+        return resolved == null ? "" : resolved.toString();
+    }
+
+    private Object evaluate(String value) {
+        String resolved = beanFactory.resolveEmbeddedValue(value);
+        BeanExpressionResolver resolver = beanFactory.getBeanExpressionResolver();
+        if (resolver == null) {
+            return resolved;
+        }
+        return resolver.evaluate(resolved, new BeanExpressionContext(beanFactory, null));
+    }
+
+    @Override
+    public synchronized void stop() {
+        // whatever is still queued fails back to the outbox of the sender
+        subscriptions.forEach(InMemoryEventBus.Subscription::cancel);
+        subscriptions.clear();
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.saga.common.bus;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Envio dos registros já codificados pelo {@link com.example.saga.common.OutboxRelay} e pelos tópicos de
+ * retry. O future completa quando o registro está seguro no transporte: confirmado pelo broker com
+ * Kafka ({@link KafkaEventPublisher}), processado pelos consumidores com o barramento em memória
+ * ({@link InMemoryEventBus}). Só então a linha do outbox é marcada como publicada.
+ */
+public interface EventPublisher {
+
+    CompletableFuture<?> send(ProducerRecord<String, byte[]> record);
+}
@@ -0,0 +1,335 @@
+package com.example.saga.common.bus;
+
+import com.example.saga.common.InboxDeduplicator;
+import com.example.saga.common.event.SagaEvent;
+import com.example.saga.common.event.SagaEventDeserializer;
+import com.example.saga.common.retry.RetryTopics;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.record.TimestampType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Barramento de eventos em memória que substitui o Kafka quando todos os serviços rodam na mesma JVM
+ * ({@code saga.transport=memory}, ver {@link MemoryTransportConfig}). É um só por JVM, compartilhado
+ * pelos contextos Spring de cada serviço.
+ * <p>
+ * Cada assinatura (um {@code @KafkaListener}) tem {@code lanes} {@link RingBuffer}s pré-alocados, cada um
+ * com uma thread consumidora que entrega lotes ao listener; a lane é escolhida pela chave do registro,
+ * então a ordem por saga é mantida como nas partições do Kafka. A thread consumidora gira um pouco antes
+ * de estacionar, e o produtor só a acorda se ela estacionou, então um salto entre serviços custa
+ * microssegundos.
+ * <p>
+ * A durabilidade continua com o outbox/inbox: o envio só é confirmado depois que todos os assinantes
+ * processaram (e fizeram commit de) o registro, então uma linha do outbox só é marcada como publicada
+ * quando o efeito já está gravado. Sem assinante, com a fila cheia ou se o listener falha, o envio falha
+ * e o poller do outbox tenta de novo. Os tópicos de retry viram um agendamento em memória e o dead letter
+ * fica em uma lista limitada ({@link #deadLetters}), de onde o re-drive o tira; esses dois se perdem se o
+ * processo cair.
+ */
+public final class InMemoryEventBus implements EventPublisher {
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryEventBus.class);
+    private static final InMemoryEventBus SHARED = new InMemoryEventBus();
+    private static final int MAX_DEAD_LETTERS = 1000;
+    private static final int SPINS = 1000;
+
+    private final Map<String, List<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final Deque<ConsumerRecord<String, byte[]>> deadLetters = new ArrayDeque<>();
+    private final AtomicLong offsets = new AtomicLong();
+    private final ScheduledExecutorService retries = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "bus-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private InMemoryEventBus() {
+    }
+
+    public static InMemoryEventBus shared() {
+        return SHARED;
+    }
+
+    @Override
+    public CompletableFuture<?> send(ProducerRecord<String, byte[]> record) {
+        String topic = record.topic();
+        if (topic.contains(RetryTopics.RETRY_SUFFIX)) {
+            scheduleRetry(record);
+            return CompletableFuture.completedFuture(null);
+        }
+        if (topic.endsWith(RetryTopics.DEAD_LETTER_SUFFIX)) {
+            synchronized (deadLetters) {
+                if (deadLetters.size() == MAX_DEAD_LETTERS) {
+                    deadLetters.removeFirst();
+                }
+                deadLetters.addLast(toConsumerRecord(record, record.value(), 0, offsets.incrementAndGet()));
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+        List<Subscription> subscribers = subscriptions.get(topic);
+        if (subscribers == null || subscribers.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No subscriber for " + topic));
+        }
+        Delivery delivery = new Delivery(record, subscribers.size(), offsets.incrementAndGet());
+        for (Subscription subscription : subscribers) {
+            if (!subscription.offer(delivery)) {
+                // the subscribers that took it get it again when the outbox retries; the inbox drops it
+                delivery.fail(new IllegalStateException("Bus buffer of " + subscription.name + " is full"));
+            }
+        }
+        return delivery.future;
+    }
+
+    /**
+     * Assina {@code topics}: o {@code handler} recebe lotes de até {@code batchSize} registros e cada lote
+     * só é confirmado se ele retornar sem exceção.
+     */
+    public Subscription subscribe(String name, Collection<String> topics, Consumer<List<ConsumerRecord<String, SagaEvent>>> handler,
+                                  int lanes, int capacity, int batchSize) {
+        Subscription subscription = new Subscription(name, topics, handler, lanes, capacity, batchSize);
+        for (String topic : topics) {
+            subscriptions.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(subscription);
+        }
+        subscription.start();
+        logger.info("Bus subscription {} on {}", name, topics);
+        return subscription;
+    }
+
+    /**
+     * Até {@code limit} dead letters de {@code deadLetterTopic}, do mais antigo para o mais novo.
+     */
+    public List<ConsumerRecord<String, byte[]>> deadLetters(String deadLetterTopic, int limit) {
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        synchronized (deadLetters) {
+            for (ConsumerRecord<String, byte[]> record : deadLetters) {
+                if (records.size() == limit) {
+                    break;
+                }
+                if (record.topic().equals(deadLetterTopic)) {
+                    records.add(record);
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Tira da lista dead letters já re-enviados, lidos de {@link #deadLetters}.
+     */
+    public void removeDeadLetters(Collection<ConsumerRecord<String, byte[]>> records) {
+        synchronized (deadLetters) {
+            deadLetters.removeAll(records);
+        }
+    }
+
+    private void scheduleRetry(ProducerRecord<String, byte[]> record) {
+        long delay = Math.max(0, RetryTopics.retryAt(toConsumerRecord(record, record.value(), 0, 0)) - System.currentTimeMillis());
+        retries.schedule(() -> redeliver(record), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void redeliver(ProducerRecord<String, byte[]> record) {
+        ProducerRecord<String, byte[]> back = RetryTopics.backToOriginal(toConsumerRecord(record, record.value(), 0, 0), false);
+        send(back).whenComplete((ok, ex) -> {
+            if (ex != null) {
+                logger.debug("Retry of {} not delivered, trying again in 1s: {}", back.topic(), ex.getMessage());
+                retries.schedule(() -> redeliver(record), 1, TimeUnit.SECONDS);
+            }
+        });
+    }
+
+    private static <V> ConsumerRecord<String, V> toConsumerRecord(ProducerRecord<String, byte[]> record, V value, int lane, long offset) {
+        long timestamp = record.timestamp() != null ? record.timestamp() : System.currentTimeMillis();
+        return new ConsumerRecord<>(record.topic(), lane, offset, timestamp, TimestampType.CREATE_TIME,
+                -1, record.value() == null ? -1 : record.value().length, record.key(), value, record.headers(), Optional.empty());
+    }
+
+    private static final class Delivery {
+        private final ProducerRecord<String, byte[]> record;
+        private final AtomicInteger pending;
+        private final long offset;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Delivery(ProducerRecord<String, byte[]> record, int subscribers, long offset) {
+            // the tracer reads the send time from the record timestamp, as with Kafka
+            this.record = record.timestamp() != null ? record : new ProducerRecord<>(record.topic(), record.partition(),
+                    System.currentTimeMillis(), record.key(), record.value(), record.headers());
+            this.pending = new AtomicInteger(subscribers);
+            this.offset = offset;
+        }
+
+        void ack() {
+            if (pending.decrementAndGet() == 0) {
+                future.complete(null);
+            }
+        }
+
+        void fail(Throwable cause) {
+            future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * Uma assinatura ativa; {@link #cancel()} para as threads e falha o que ainda estava na fila.
+     */
+    public final class Subscription {
+        private final String name;
+        private final Collection<String> topics;
+        private final Consumer<List<ConsumerRecord<String, SagaEvent>>> handler;
+        private final int batchSize;
+        private final Lane[] lanes;
+
+        Subscription(String name, Collection<String> topics, Consumer<List<ConsumerRecord<String, SagaEvent>>> handler,
+                     int lanes, int capacity, int batchSize) {
+            this.name = name;
+            this.topics = topics;
+            this.handler = handler;
+            this.batchSize = batchSize;
+            this.lanes = new Lane[lanes];
+            for (int i = 0; i < lanes; i++) {
+                this.lanes[i] = new Lane(i, capacity);
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Registros esperando nas filas desta assinatura.
+         */
+        public int queued() {
+            int queued = 0;
+            for (Lane lane : lanes) {
+                queued += lane.ring.size();
+            }
+            return queued;
+        }
+
+        public void cancel() {
+            for (String topic : topics) {
+                List<Subscription> subscribers = subscriptions.get(topic);
+                if (subscribers != null) {
+                    subscribers.remove(this);
+                }
+            }
+            for (Lane lane : lanes) {
+                lane.stop();
+            }
+        }
+
+        void start() {
+            for (Lane lane : lanes) {
+                lane.thread.start();
+            }
+        }
+
+        boolean offer(Delivery delivery) {
+            String key = delivery.record.key();
+            Lane lane = lanes[key == null ? 0 : (key.hashCode() & Integer.MAX_VALUE) % lanes.length];
+            if (!lane.ring.offer(delivery)) {
+                return false;
+            }
+            if (lane.parked) {
+                LockSupport.unpark(lane.thread);
+            }
+            return true;
+        }
+
+        private final class Lane implements Runnable {
+            private final int index;
+            private final RingBuffer<Delivery> ring;
+            private final Thread thread;
+            private final SagaEventDeserializer deserializer = new SagaEventDeserializer();
+            private volatile boolean running = true;
+            private volatile boolean parked;
+
+            Lane(int index, int capacity) {
+                this.index = index;
+                this.ring = new RingBuffer<>(capacity);
+                this.thread = new Thread(this, "bus-" + name + "-" + index);
+                this.thread.setDaemon(true);
+            }
+
+            @Override
+            public void run() {
+                List<Delivery> deliveries = new ArrayList<>(batchSize);
+                List<ConsumerRecord<String, SagaEvent>> records = new ArrayList<>(batchSize);
+                while (running) {
+                    if (ring.drainTo(deliveries, batchSize) == 0) {
+                        idle();
+                        continue;
+                    }
+                    for (Delivery delivery : deliveries) {
+                        records.add(toConsumerRecord(delivery.record, decode(delivery.record), index, delivery.offset));
+                    }
+                    try {
+                        handler.accept(records);
+                        deliveries.forEach(Delivery::ack);
+                    } catch (RuntimeException e) {
+                        logger.warn("Bus subscriber {} failed a batch of {}, the outbox will send it again", name, records.size(), e);
+                        deliveries.forEach(d -> d.fail(e));
+                    }
+                    deliveries.clear();
+                    records.clear();
+                }
+                List<Delivery> left = new ArrayList<>();
+                ring.drainTo(left, Integer.MAX_VALUE);
+                left.forEach(d -> d.fail(new IllegalStateException("Bus subscriber " + name + " stopped")));
+            }
+
+            private SagaEvent decode(ProducerRecord<String, byte[]> record) {
+                try {
+                    return deserializer.deserialize(record.topic(), record.headers(), record.value());
+                } catch (RuntimeException e) {
+                    // like the ErrorHandlingDeserializer: the listener sees a null value and dead-letters it
+                    logger.warn("Unreadable {} messageId={} on the bus", record.topic(),
+                            InboxDeduplicator.messageId(toConsumerRecord(record, null, index, 0)), e);
+                    return null;
+                }
+            }
+
+            private void idle() {
+                for (int i = 0; i < SPINS; i++) {
+                    if (!ring.isEmpty()) {
+                        return;
+                    }
+                    Thread.onSpinWait();
+                }
+                parked = true;
+                // a producer that offered before the flag was set did not unpark us
+                if (ring.isEmpty() && running) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                }
+                parked = false;
+            }
+
+            void stop() {
+                running = false;
+                LockSupport.unpark(thread);
+                try {
+                    thread.join(TimeUnit.SECONDS.toMillis(5));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
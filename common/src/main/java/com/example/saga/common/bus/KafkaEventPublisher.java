@@ -0,0 +1,26 @@
+package com.example.saga.common.bus;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Transporte padrão ({@code saga.transport=kafka}).
+ */
+@Component
+@ConditionalOnProperty(name = "saga.transport", havingValue = "kafka", matchIfMissing = true)
+public class KafkaEventPublisher implements EventPublisher {
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+
+    public KafkaEventPublisher(KafkaTemplate<String, byte[]> kafkaTemplate) {
+        this.kafkaTemplate = kafkaTemplate;
+    }
+
+    @Override
+    public CompletableFuture<?> send(ProducerRecord<String, byte[]> record) {
+        return kafkaTemplate.send(record).completable();
+    }
+}
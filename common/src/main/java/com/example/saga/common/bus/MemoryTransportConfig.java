@@ -0,0 +1,56 @@
+package com.example.saga.common.bus;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.AbstractKafkaListenerContainerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+
+/**
+ * Troca o Kafka pelo {@link InMemoryEventBus} ({@code saga.transport=memory}), para quando todos os
+ * serviços sobem na mesma JVM (módulo {@code monolith}, ou o load test). Os listeners continuam os mesmos
+ * métodos {@code @KafkaListener}, só que alimentados pelo barramento ({@link BusListenerRegistrar}); os
+ * containers do Kafka não são iniciados e nenhum tópico é criado.
+ */
+@Configuration
+@ConditionalOnProperty(name = "saga.transport", havingValue = "memory")
+public class MemoryTransportConfig {
+
+    @Bean
+    public EventPublisher inMemoryEventPublisher() {
+        return InMemoryEventBus.shared();
+    }
+
+    @Bean
+    public BusListenerRegistrar busListenerRegistrar(ConfigurableListableBeanFactory beanFactory,
+                                                     ObjectProvider<MeterRegistry> meterRegistry,
+                                                     @Value("${saga.bus.lanes:4}") int lanes,
+                                                     @Value("${saga.bus.capacity:8192}") int capacity,
+                                                     @Value("${saga.bus.batch-size:500}") int batchSize) {
+        return new BusListenerRegistrar(beanFactory, InMemoryEventBus.shared(), meterRegistry, lanes, capacity, batchSize);
+    }
+
+    /**
+     * Os containers e o admin do Kafka continuam sendo criados pelas configurações de cada serviço, mas
+     * não se conectam a nenhum broker.
+     */
+    @Bean
+    public static BeanPostProcessor kafkaContainersOff() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof AbstractKafkaListenerContainerFactory) {
+                    ((AbstractKafkaListenerContainerFactory<?, ?, ?>) bean).setAutoStartup(false);
+                } else if (bean instanceof KafkaAdmin) {
+                    ((KafkaAdmin) bean).setAutoCreate(false);
+                }
+                return bean;
+            }
+        };
+    }
+}
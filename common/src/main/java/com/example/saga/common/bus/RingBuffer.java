@@ -0,0 +1,86 @@
+package com.example.saga.common.bus;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fila circular limitada, alocada de uma vez, com vários produtores e um único consumidor. Cada posição
+ * tem um número de sequência que diz se ela está livre para o produtor da volta atual ou pronta para o
+ * consumidor, então nenhum lado usa lock e nada é alocado por elemento.
+ */
+class RingBuffer<E> {
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // written only by the consumer thread; volatile for size()
+    private volatile long head;
+
+    RingBuffer(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.slots = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Enfileira sem esperar; {@code false} se a fila está cheia.
+     */
+    boolean offer(E element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long available = sequences.get(index) - position;
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = element;
+                    // publishes the slot to the consumer
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (available < 0) {
+                return false;
+            }
+            // another producer claimed the slot first
+        }
+    }
+
+    /**
+     * Move para {@code into} até {@code max} elementos, na ordem de chegada. Só pode ser chamado pela
+     * thread consumidora.
+     */
+    @SuppressWarnings("unchecked")
+    int drainTo(List<E> into, int max) {
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            into.add((E) slots[index]);
+            slots[index] = null;
+            // frees the slot for the producers of the next lap
+            sequences.set(index, head + mask + 1);
+            head++;
+            drained++;
+        }
+        return drained;
+    }
+
+    boolean isEmpty() {
+        return sequences.get((int) (head & mask)) != head + 1;
+    }
+
+    /**
+     * Aproximado quando lido fora da thread consumidora.
+     */
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+}
@@ -7,7 +7,7 @@ import javax.persistence.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "inbox")
+@Table(name = "inbox", indexes = @Index(name = "inbox_received_at_idx", columnList = "receivedAt"))
 @Getter
 @Setter
 public class InboxMessage {
@@ -0,0 +1,58 @@
+package com.example.saga.common.domain;
+
+import com.example.saga.common.OutboxDispatcher;
+import com.example.saga.common.shard.ShardContext;
+import com.example.saga.common.trace.TraceContext;
+import com.example.saga.common.trace.TraceScope;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PrePersist;
+
+/**
+ * Avisa o {@link OutboxDispatcher} depois do commit da transação que gravou a mensagem,
+ * para que ela seja publicada imediatamente. Instanciado pelo Hibernate através do container
+ * de beans do Spring.
+ * <p>
+ * Também grava na mensagem o span corrente da sua chave no {@link TraceScope}, se houver.
+ */
+public class OutboxCommitListener {
+    private final ObjectProvider<OutboxDispatcher> dispatcher;
+
+    public OutboxCommitListener(ObjectProvider<OutboxDispatcher> dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    @PrePersist
+    public void beforePersist(OutboxMessage m) {
+        if (m.getTraceParent() == null) {
+            TraceContext trace = TraceScope.get(m.getMessageKey() != null ? m.getMessageKey() : m.getAggregateId());
+            if (trace != null) {
+                m.setTraceParent(trace.traceparent());
+            }
+        }
+    }
+
+    @PostPersist
+    public void afterPersist(OutboxMessage m) {
+        OutboxDispatcher d = dispatcher.getIfAvailable();
+        if (d == null) {
+            return;
+        }
+        String type = m.getType();
+        // the transaction, and therefore the row, is on the shard current at persist time
+        int shard = ShardContext.current();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            d.signal(type, shard);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                d.signal(type, shard);
+            }
+        });
+    }
+}
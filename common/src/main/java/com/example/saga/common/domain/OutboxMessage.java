@@ -8,17 +8,33 @@ import java.time.Instant;
 
 @Entity
 @Table(name = "outbox")
+@EntityListeners(OutboxCommitListener.class)
 @Getter
 @Setter
 public class OutboxMessage {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_seq")
+    @SequenceGenerator(name = "outbox_seq", sequenceName = "outbox_seq", allocationSize = 50)
     private Long id;
     private String aggregateType;
     private String aggregateId;
     private String type;
-    @Lob
-    private String payload;
+    // Kafka record key; falls back to aggregateId. Events of the same saga must share it to stay ordered.
+    private String messageKey;
+    // the event already in its wire format, sent as is by the relay (see OutboxPayloads); inline bytea,
+    // not a large object. The old @Lob column "payload" is moved here by OutboxPayloadMigrator
+    @Column(name = "payload_data", columnDefinition = "bytea")
+    private byte[] payload;
+    @Column(length = 64)
+    private String contentType;
+    // gzip when the payload was compressed on write, null otherwise
+    @Column(length = 16)
+    private String payloadEncoding;
     private boolean published = false;
     private Instant createdAt = Instant.now();
+    private String leaseOwner;
+    private Instant leaseExpiresAt;
+    // W3C traceparent of the span that wrote the row; only set for sampled sagas
+    @Column(length = 55)
+    private String traceParent;
 }
@@ -0,0 +1,15 @@
+package com.example.saga.common.event;
+
+/**
+ * Formato de serialização dos eventos. As implementações são thread-safe e sem estado por mensagem.
+ */
+public interface EventCodec {
+    /**
+     * Valor do header {@link com.example.saga.common.SagaHeaders#CONTENT_TYPE} que identifica o formato.
+     */
+    String contentType();
+
+    byte[] encode(SagaEvent event);
+
+    SagaEvent decode(SagaEventType type, byte[] data);
+}
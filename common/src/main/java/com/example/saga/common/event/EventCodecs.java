@@ -0,0 +1,25 @@
+package com.example.saga.common.event;
+
+/**
+ * Instâncias compartilhadas dos codecs e seleção pelo header de content type.
+ */
+public final class EventCodecs {
+    public static final JsonEventCodec JSON = new JsonEventCodec();
+    public static final BinaryEventCodec BINARY = new BinaryEventCodec();
+
+    private EventCodecs() {
+    }
+
+    /**
+     * Codec para o content type informado; ausente (registros antigos) significa JSON.
+     */
+    public static EventCodec forContentType(String contentType) {
+        if (contentType == null || JsonEventCodec.CONTENT_TYPE.equals(contentType)) {
+            return JSON;
+        }
+        if (BinaryEventCodec.CONTENT_TYPE.equals(contentType)) {
+            return BINARY;
+        }
+        throw new IllegalArgumentException("Unsupported event content type: " + contentType);
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.saga.common.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.UUID;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryFailed implements SagaEvent, SagaScoped {
+    private UUID sagaId;
+    private Long orderId;
+
+    @Override
+    public SagaEventType eventType() {
+        return SagaEventType.INVENTORY_FAILED;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.saga.common.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * JSON compatível com os payloads publicados até aqui ({@code {"orderId":1,"amount":10.0}} etc.).
+ * Um único {@link ObjectMapper} compartilhado, com leitores e escritores pré-construídos por tipo, em vez
+ * de um mapper novo e uma árvore {@code JsonNode} por mensagem. Campos desconhecidos são ignorados para
+ * que produtores mais novos possam adicionar campos.
+ */
+public class JsonEventCodec implements EventCodec {
+    public static final String CONTENT_TYPE = "application/json";
+
+    private final Map<SagaEventType, ObjectReader> readers = new EnumMap<>(SagaEventType.class);
+    private final Map<SagaEventType, ObjectWriter> writers = new EnumMap<>(SagaEventType.class);
+
+    public JsonEventCodec() {
+        ObjectMapper mapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        for (SagaEventType t : SagaEventType.values()) {
+            readers.put(t, mapper.readerFor(t.getEventClass()));
+            writers.put(t, mapper.writerFor(t.getEventClass()));
+        }
+    }
+
+    @Override
+    public String contentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public byte[] encode(SagaEvent event) {
+        try {
+            return writers.get(event.eventType()).writeValueAsBytes(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not encode " + event.eventType(), e);
+        }
+    }
+
+    /**
+     * Usado para gravar o payload no outbox, que é uma coluna texto.
+     */
+    public String encodeToString(SagaEvent event) {
+        try {
+            return writers.get(event.eventType()).writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not encode " + event.eventType(), e);
+        }
+    }
+
+    @Override
+    public SagaEvent decode(SagaEventType type, byte[] data) {
+        try {
+            return readers.get(type).readValue(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not decode " + type, e);
+        }
+    }
+
+    public SagaEvent decode(SagaEventType type, String data) {
+        try {
+            return readers.get(type).readValue(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not decode " + type, e);
+        }
+    }
+}
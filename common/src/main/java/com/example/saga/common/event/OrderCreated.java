@@ -0,0 +1,20 @@
+package com.example.saga.common.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderCreated implements SagaEvent {
+    private Long orderId;
+    private Double amount;
+
+    @Override
+    public SagaEventType eventType() {
+        return SagaEventType.ORDER_CREATED;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.saga.common.event;
+
+/**
+ * Evento trocado entre os serviços da saga. O tipo do evento é também o tipo da mensagem no outbox
+ * e o nome do tópico Kafka.
+ */
+public interface SagaEvent {
+    SagaEventType eventType();
+}
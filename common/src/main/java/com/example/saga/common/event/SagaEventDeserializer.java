@@ -0,0 +1,36 @@
+package com.example.saga.common.event;
+
+import com.example.saga.common.SagaHeaders;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Deserializer Kafka para {@link SagaEvent}. O codec é escolhido pelo header
+ * {@link SagaHeaders#CONTENT_TYPE} e o tipo do evento pelo header {@link SagaHeaders#EVENT_TYPE};
+ * registros sem headers (publicados antes deles existirem) são JSON e o tópico indica o tipo.
+ */
+public class SagaEventDeserializer implements Deserializer<SagaEvent> {
+
+    @Override
+    public SagaEvent deserialize(String topic, byte[] data) {
+        return data == null ? null : EventCodecs.JSON.decode(SagaEventType.fromName(topic), data);
+    }
+
+    @Override
+    public SagaEvent deserialize(String topic, Headers headers, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        String eventType = header(headers, SagaHeaders.EVENT_TYPE);
+        SagaEventType type = SagaEventType.fromName(eventType != null ? eventType : topic);
+        return EventCodecs.forContentType(header(headers, SagaHeaders.CONTENT_TYPE)).decode(type, data);
+    }
+
+    private static String header(Headers headers, String name) {
+        Header h = headers.lastHeader(name);
+        return h == null ? null : new String(h.value(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.saga.common.event;
+
+import com.example.saga.common.SagaHeaders;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Serializer Kafka para {@link SagaEvent}. O formato vem de {@code saga.events.content-type} nas
+ * propriedades do producer (JSON por padrão) e é anunciado nos headers junto com o tipo do evento.
+ */
+public class SagaEventSerializer implements Serializer<SagaEvent> {
+    public static final String CONTENT_TYPE_CONFIG = "saga.events.content-type";
+
+    private EventCodec codec = EventCodecs.JSON;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        Object contentType = configs.get(CONTENT_TYPE_CONFIG);
+        if (contentType != null) {
+            codec = EventCodecs.forContentType(contentType.toString());
+        }
+    }
+
+    @Override
+    public byte[] serialize(String topic, SagaEvent data) {
+        return data == null ? null : codec.encode(data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, SagaEvent data) {
+        if (data == null) {
+            return null;
+        }
+        headers.remove(SagaHeaders.CONTENT_TYPE);
+        headers.add(SagaHeaders.CONTENT_TYPE, codec.contentType().getBytes(StandardCharsets.UTF_8));
+        headers.remove(SagaHeaders.EVENT_TYPE);
+        headers.add(SagaHeaders.EVENT_TYPE, data.eventType().getName().getBytes(StandardCharsets.UTF_8));
+        return codec.encode(data);
+    }
+}
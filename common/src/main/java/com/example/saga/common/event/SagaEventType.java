@@ -0,0 +1,61 @@
+package com.example.saga.common.event;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registro dos eventos conhecidos: nome (tipo do outbox / tópico), tag usada no formato binário e classe.
+ * Tags nunca devem ser reaproveitadas; eventos novos recebem a próxima tag livre.
+ */
+public enum SagaEventType {
+    ORDER_CREATED("order_created", 1, OrderCreated.class),
+    PAYMENT_REQUESTED("payment_requested", 2, PaymentRequested.class),
+    PAYMENT_COMPLETED("payment_completed", 3, PaymentCompleted.class),
+    PAYMENT_FAILED("payment_failed", 4, PaymentFailed.class),
+    PAYMENT_REFUND_REQUESTED("payment_refund_requested", 5, PaymentRefundRequested.class),
+    INVENTORY_REQUESTED("inventory_requested", 6, InventoryRequested.class),
+    INVENTORY_RESERVED("inventory_reserved", 7, InventoryReserved.class),
+    INVENTORY_FAILED("inventory_failed", 8, InventoryFailed.class),
+    INVENTORY_RELEASE_REQUESTED("inventory_release_requested", 9, InventoryReleaseRequested.class),
+    SAGA_STATUS_CHANGED("saga_status_changed", 10, SagaStatusChanged.class);
+
+    private static final Map<String, SagaEventType> BY_NAME = new HashMap<>();
+    private static final SagaEventType[] BY_TAG = new SagaEventType[128];
+
+    static {
+        for (SagaEventType t : values()) {
+            BY_NAME.put(t.name, t);
+            BY_TAG[t.tag] = t;
+        }
+    }
+
+    private final String name;
+    private final byte tag;
+    private final Class<? extends SagaEvent> eventClass;
+
+    SagaEventType(String name, int tag, Class<? extends SagaEvent> eventClass) {
+        this.name = name;
+        this.tag = (byte) tag;
+        this.eventClass = eventClass;
+    }
+
+    public String getName() { return name; }
+    public byte getTag() { return tag; }
+    public Class<? extends SagaEvent> getEventClass() { return eventClass; }
+
+    public static SagaEventType fromName(String name) {
+        SagaEventType t = BY_NAME.get(name);
+        if (t == null) {
+            throw new IllegalArgumentException("Unknown event type: " + name);
+        }
+        return t;
+    }
+
+    public static SagaEventType fromTag(byte tag) {
+        SagaEventType t = tag >= 0 ? BY_TAG[tag] : null;
+        if (t == null) {
+            throw new IllegalArgumentException("Unknown event tag: " + tag);
+        }
+        return t;
+    }
+}
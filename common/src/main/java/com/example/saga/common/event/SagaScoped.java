@@ -0,0 +1,10 @@
+package com.example.saga.common.event;
+
+import java.util.UUID;
+
+/**
+ * Evento que pertence a uma saga já criada e carrega o id dela.
+ */
+public interface SagaScoped {
+    UUID getSagaId();
+}
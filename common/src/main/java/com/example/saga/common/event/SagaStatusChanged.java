@@ -0,0 +1,29 @@
+package com.example.saga.common.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.UUID;
+
+/**
+ * Publicado pelo orquestrador a cada mudança de status de uma saga, para alimentar read models.
+ * {@code version} é a versão da saga após a mudança e serve para descartar atualizações fora de ordem.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SagaStatusChanged implements SagaEvent, SagaScoped {
+    private UUID sagaId;
+    private Long orderId;
+    private String status;
+    private Boolean finished;
+    private Long version;
+
+    @Override
+    public SagaEventType eventType() {
+        return SagaEventType.SAGA_STATUS_CHANGED;
+    }
+}
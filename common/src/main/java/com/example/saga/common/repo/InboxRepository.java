@@ -2,7 +2,25 @@ package com.example.saga.common.repo;
 
 import com.example.saga.common.domain.InboxMessage;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
 
 public interface InboxRepository extends JpaRepository<InboxMessage, String> {
-}
 
+    /**
+     * Grava a chave se ela ainda não existir; retorna 1 para mensagem nova e 0 para duplicata.
+     */
+    @Modifying
+    @Query(value = "insert into inbox (message_id, received_at, type) values (:messageId, :receivedAt, :type) " +
+            "on conflict do nothing", nativeQuery = true)
+    int insertIfAbsent(@Param("messageId") String messageId, @Param("receivedAt") Instant receivedAt,
+                       @Param("type") String type);
+
+    @Modifying
+    @Query(value = "delete from inbox where message_id in (select message_id from inbox " +
+            "where received_at < :cutoff limit :limit)", nativeQuery = true)
+    int deleteReceivedBefore(@Param("cutoff") Instant cutoff, @Param("limit") int limit);
+}
@@ -1,11 +1,54 @@
 package com.example.saga.common.repo;
 
 import com.example.saga.common.domain.OutboxMessage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 public interface OutboxRepository extends JpaRepository<OutboxMessage, Long> {
     List<OutboxMessage> findByTypeAndPublishedFalseOrderByCreatedAtAsc(String aggregateType);
-}
 
+    List<OutboxMessage> findByTypeAndPublishedFalseOrderByCreatedAtAscIdAsc(String type, Pageable pageable);
+
+    /**
+     * Próxima página de pendentes depois de {@code (createdAt, id)} (keyset). Ao contrário de reler a
+     * primeira página a cada lote, não percorre de novo as entradas de índice das linhas recém-publicadas,
+     * que no Postgres continuam lá até o vacuum.
+     */
+    @Query("select m from OutboxMessage m where m.type = :type and m.published = false and m.createdAt >= :createdAt " +
+            "and (m.createdAt > :createdAt or m.id > :id) order by m.createdAt, m.id")
+    List<OutboxMessage> findPendingAfter(@Param("type") String type, @Param("createdAt") Instant createdAt,
+                                         @Param("id") Long id, Pageable pageable);
+
+    List<OutboxMessage> findByLeaseOwnerAndLeaseExpiresAtAndPublishedFalseOrderByCreatedAtAscIdAsc(String leaseOwner, Instant leaseExpiresAt);
+
+    @Query("select min(m.createdAt) from OutboxMessage m where m.type = :type and m.published = false")
+    Instant findOldestPendingCreatedAt(@Param("type") String type);
+
+    /**
+     * Reserva até {@code limit} linhas pendentes (sem lease ou com lease expirado) para {@code owner}.
+     * O SKIP LOCKED faz com que instâncias concorrentes peguem fatias disjuntas em vez de esperar umas pelas outras.
+     */
+    @Modifying
+    @Query(value = "update outbox set lease_owner = :owner, lease_expires_at = :expiresAt " +
+            "where id in (select id from outbox where type = :type and published = false " +
+            "and (lease_expires_at is null or lease_expires_at < :now) " +
+            "order by created_at, id limit :limit for update skip locked)", nativeQuery = true)
+    int claim(@Param("type") String type, @Param("owner") String owner, @Param("now") Instant now,
+              @Param("expiresAt") Instant expiresAt, @Param("limit") int limit);
+
+    @Modifying
+    @Query("update OutboxMessage m set m.published = true, m.leaseOwner = null, m.leaseExpiresAt = null where m.id in :ids")
+    int markPublished(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "delete from outbox where id in (select id from outbox " +
+            "where published = true and created_at < :cutoff limit :limit)", nativeQuery = true)
+    int deletePublishedBefore(@Param("cutoff") Instant cutoff, @Param("limit") int limit);
+}
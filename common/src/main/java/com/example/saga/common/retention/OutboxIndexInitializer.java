@@ -0,0 +1,50 @@
+package com.example.saga.common.retention;
+
+import com.example.saga.common.shard.ShardTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cria os índices parciais do outbox que o JPA não consegue declarar: um para a consulta de pendentes
+ * do relay (que assim só percorre as linhas não publicadas) e outro para a limpeza das publicadas.
+ * Só roda no Postgres; {@code CONCURRENTLY} evita bloquear escritas em tabelas grandes.
+ */
+@Component
+public class OutboxIndexInitializer {
+    private static final Logger logger = LoggerFactory.getLogger(OutboxIndexInitializer.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardTemplate shardTemplate;
+
+    public OutboxIndexInitializer(JdbcTemplate jdbcTemplate, ShardTemplate shardTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardTemplate = shardTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        shardTemplate.forEachShard(this::createIndexes);
+    }
+
+    private void createIndexes(int shard) {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equals(product)) {
+            return;
+        }
+        try {
+            // (created_at, id) is the keyset the relay pages by; replaces the older (type, created_at) index
+            jdbcTemplate.execute("create index concurrently if not exists outbox_pending_keyset_idx " +
+                    "on outbox (type, created_at, id) where published = false");
+            jdbcTemplate.execute("drop index concurrently if exists outbox_pending_idx");
+            jdbcTemplate.execute("create index concurrently if not exists outbox_published_idx " +
+                    "on outbox (created_at) where published = true");
+        } catch (Exception e) {
+            logger.warn("Could not create outbox partial indexes on shard {}", shard, e);
+        }
+    }
+}
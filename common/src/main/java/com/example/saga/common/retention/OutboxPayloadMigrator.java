@@ -0,0 +1,110 @@
+package com.example.saga.common.retention;
+
+import com.example.saga.common.event.EventCodecs;
+import com.example.saga.common.shard.ShardTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Migra o payload das linhas antigas do outbox, gravado pelo {@code @Lob String} em um large object do
+ * Postgres (a coluna {@code payload} guarda só o oid), para a coluna inline {@code payload_data}, e
+ * apaga os large objects, que a limpeza do outbox deixaria órfãos. Roda antes dos relays e listeners
+ * começarem, em blocos de {@code saga.outbox.migration-batch-size}, e não faz nada quando não há
+ * linhas antigas. Só no Postgres; a coluna {@code payload} vazia pode ser removida depois que nenhuma
+ * instância antiga estiver rodando.
+ */
+@Component
+public class OutboxPayloadMigrator implements SmartInitializingSingleton {
+    private static final Logger logger = LoggerFactory.getLogger(OutboxPayloadMigrator.class);
+    private static final String LEGACY_COLUMN_TYPE = "select data_type from information_schema.columns " +
+            "where table_schema = current_schema() and table_name = 'outbox' and column_name = 'payload'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardTemplate shardTemplate;
+    private final int batchSize;
+
+    public OutboxPayloadMigrator(JdbcTemplate jdbcTemplate,
+                                 ShardTemplate shardTemplate,
+                                 @Value("${saga.outbox.migration-batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardTemplate = shardTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        shardTemplate.forEachShard(this::migrate);
+    }
+
+    private void migrate(int shard) {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equals(product)) {
+            return;
+        }
+        List<String> type = jdbcTemplate.queryForList(LEGACY_COLUMN_TYPE, String.class);
+        if (type.isEmpty()) {
+            return;
+        }
+        boolean oidColumn = "oid".equals(type.get(0));
+        String sql = migrationSql(oidColumn);
+        long moved = 0;
+        try {
+            Long missing = jdbcTemplate.queryForObject("select count(*) from outbox where payload is not null and not "
+                    + largeObjectExists(oidColumn), Long.class);
+            if (missing != null && missing > 0) {
+                logger.error("{} outbox rows on shard {} point to a large object that no longer exists; left in the payload "
+                        + "column, the relay skips them (saga.outbox.unreadable)", missing, shard);
+            }
+            while (true) {
+                Long rows = jdbcTemplate.queryForObject(sql, (rs, i) -> rs.getLong(1), batchSize);
+                if (rows == null || rows == 0) {
+                    break;
+                }
+                moved += rows;
+                logger.info("{} outbox payloads moved inline on shard {}", moved, shard);
+            }
+        } catch (DataAccessException e) {
+            // the relay skips the rows left behind; the next start continues from there
+            logger.warn("Could not move the outbox payloads inline on shard {} after {} rows", shard, moved, e);
+        }
+    }
+
+    /**
+     * Um bloco por execução, cada um em sua transação (autocommit). Hibernate 5 mapeia {@code @Lob String}
+     * como {@code text} guardando o oid; um texto que não é número já é o próprio JSON. Linhas cujo large
+     * object já foi apagado (ex.: por um {@code vacuumlo}) ficam de fora: {@code lo_get} falharia o bloco
+     * inteiro, e o mesmo bloco seria escolhido de novo a cada início.
+     */
+    private static String migrationSql(boolean oidColumn) {
+        String legacy = oidColumn ? "m.payload" : "case when m.payload ~ '^[0-9]+$' then cast(m.payload as oid) end";
+        String data = oidColumn ? "lo_get(m.payload)"
+                : "case when m.payload ~ '^[0-9]+$' then lo_get(cast(m.payload as oid)) else convert_to(m.payload, 'UTF8') end";
+        return "with moved as (" +
+                "select id, payload from outbox where payload is not null and " + largeObjectExists(oidColumn) +
+                " order by id limit ? for update skip locked" +
+                "), copied as (" +
+                "update outbox o set payload_data = " + data + ", " +
+                "content_type = coalesce(o.content_type, '" + EventCodecs.JSON.contentType() + "'), payload = null " +
+                "from moved m where o.id = m.id returning " + legacy + " as lo" +
+                ") " +
+                // the second column only makes the large objects go away with the rows that pointed to them
+                "select count(*), count(case when lo is not null then lo_unlink(lo) end) from copied";
+    }
+
+    /**
+     * Condição sobre {@code outbox.payload}: o payload não é um large object, ou o large object existe.
+     */
+    private static String largeObjectExists(boolean oidColumn) {
+        String exists = "exists (select 1 from pg_largeobject_metadata lo where lo.oid = %s)";
+        return oidColumn ? String.format(exists, "outbox.payload")
+                : "case when outbox.payload ~ '^[0-9]+$' then " + String.format(exists, "cast(outbox.payload as oid)") + " else true end";
+    }
+}
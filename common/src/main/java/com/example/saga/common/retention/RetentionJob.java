@@ -0,0 +1,96 @@
+package com.example.saga.common.retention;
+
+import com.example.saga.common.repo.InboxRepository;
+import com.example.saga.common.repo.OutboxRepository;
+import com.example.saga.common.shard.ShardTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.IntSupplier;
+
+/**
+ * Remove do outbox as mensagens já publicadas e do inbox as chaves de deduplicação mais antigas que a
+ * janela de reentrega, em lotes limitados (uma transação curta por lote), para que as tabelas quentes
+ * não cresçam para sempre.
+ * <p>
+ * Como os serviços compartilham o mesmo banco, basta habilitar em um deles ({@code saga.retention.enabled}).
+ * Com sharding cada shard é limpo em sequência.
+ */
+@Component
+@ConditionalOnProperty(name = "saga.retention.enabled", havingValue = "true")
+public class RetentionJob {
+    private static final Logger logger = LoggerFactory.getLogger(RetentionJob.class);
+
+    private final OutboxRepository outboxRepository;
+    private final InboxRepository inboxRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardTemplate shardTemplate;
+    private final Duration outboxRetention;
+    private final Duration inboxRetention;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+
+    public RetentionJob(OutboxRepository outboxRepository,
+                        InboxRepository inboxRepository,
+                        PlatformTransactionManager transactionManager,
+                        ShardTemplate shardTemplate,
+                        @Value("${saga.retention.outbox:P1D}") Duration outboxRetention,
+                        @Value("${saga.retention.inbox:P7D}") Duration inboxRetention,
+                        @Value("${saga.retention.batch-size:5000}") int batchSize,
+                        @Value("${saga.retention.max-batches-per-run:100}") int maxBatchesPerRun) {
+        this.outboxRepository = outboxRepository;
+        this.inboxRepository = inboxRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardTemplate = shardTemplate;
+        this.outboxRetention = outboxRetention;
+        this.inboxRetention = inboxRetention;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+    }
+
+    @Scheduled(fixedDelayString = "${saga.retention.interval-ms:60000}")
+    public void purge() {
+        Instant now = Instant.now();
+        Instant outboxCutoff = now.minus(outboxRetention);
+        Instant inboxCutoff = now.minus(inboxRetention);
+
+        shardTemplate.forEachShard(shard -> {
+            int outbox = deleteInBatches(() -> outboxRepository.deletePublishedBefore(outboxCutoff, batchSize));
+            int inbox = deleteInBatches(() -> inboxRepository.deleteReceivedBefore(inboxCutoff, batchSize));
+            if (outbox > 0 || inbox > 0) {
+                logger.info("Retention removed {} published OutboxMessage and {} InboxMessage on shard {}", outbox, inbox, shard);
+            }
+        });
+    }
+
+    /**
+     * Executa {@code batch} (que deve apagar no máximo {@code batchSize} linhas) em transações separadas
+     * até sobrar menos que um lote ou atingir {@code maxBatchesPerRun}.
+     */
+    public static int deleteInBatches(TransactionTemplate transactionTemplate, IntSupplier batch, int batchSize, int maxBatches) {
+        int total = 0;
+        for (int i = 0; i < maxBatches; i++) {
+            Integer deleted = transactionTemplate.execute(status -> batch.getAsInt());
+            if (deleted == null || deleted == 0) {
+                break;
+            }
+            total += deleted;
+            if (deleted < batchSize) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    private int deleteInBatches(IntSupplier batch) {
+        return deleteInBatches(transactionTemplate, batch, batchSize, maxBatchesPerRun);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.saga.common.retention;
+
+import com.example.saga.common.shard.ShardTemplate;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Alinha as sequences das entidades ({@code outbox_seq}, {@code orders_seq}, {@code payments_seq}, ...)
+ * com os ids já gravados. Em um banco criado quando os ids ainda eram {@code IDENTITY} a sequence que o
+ * {@code ddl-auto} acabou de criar começa do 1, e os primeiros inserts colidiriam com as linhas antigas.
+ * Roda antes dos relays e listeners começarem: uma sequence atrás do maior id da sua tabela é levada até
+ * ele com {@code setval}, as demais não mudam. Só no Postgres, em cada shard.
+ */
+@Component
+public class SequenceAligner implements SmartInitializingSingleton {
+    private static final Logger logger = LoggerFactory.getLogger(SequenceAligner.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardTemplate shardTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public SequenceAligner(JdbcTemplate jdbcTemplate, ShardTemplate shardTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardTemplate = shardTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        List<String> statements = alignStatements();
+        if (!statements.isEmpty()) {
+            shardTemplate.forEachShard(shard -> align(shard, statements));
+        }
+    }
+
+    private void align(int shard, List<String> statements) {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equals(product)) {
+            return;
+        }
+        for (String sql : statements) {
+            try {
+                List<Long> moved = jdbcTemplate.queryForList(sql, Long.class);
+                if (!moved.isEmpty()) {
+                    logger.info("Sequence aligned with the existing ids on shard {}: {}", shard, sql);
+                }
+            } catch (DataAccessException e) {
+                // a table this service does not own may not exist yet; its owner aligns it
+                logger.warn("Could not align sequence on shard {}: {}", shard, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Um {@code setval} por entidade com id de sequence, que só devolve linha quando a sequence andou. Com o
+     * otimizador pooled o próximo bloco começa logo depois do valor da sequence, então basta levá-la ao
+     * maior id.
+     */
+    private List<String> alignStatements() {
+        List<String> statements = new ArrayList<>();
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        for (EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values()) {
+            if (!(persister.getIdentifierGenerator() instanceof SequenceStyleGenerator) || !(persister instanceof AbstractEntityPersister)) {
+                continue;
+            }
+            String sequence = ((SequenceStyleGenerator) persister.getIdentifierGenerator()).getDatabaseStructure().getPhysicalName().render();
+            AbstractEntityPersister entity = (AbstractEntityPersister) persister;
+            String table = entity.getTableName();
+            String id = entity.getIdentifierColumnNames()[0];
+            statements.add("select setval('" + sequence + "', t.max_id) from (select max(" + id + ") as max_id from " + table + ") t " +
+                    "where t.max_id >= (select last_value from " + sequence + ")");
+        }
+        return statements;
+    }
+}
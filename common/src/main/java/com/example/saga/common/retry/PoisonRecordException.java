@@ -0,0 +1,12 @@
+package com.example.saga.common.retry;
+
+/**
+ * Registro que nunca vai ser processado, não importa quantas vezes seja tentado (payload de outro tipo,
+ * sem o id da saga...). Vai direto para o dead letter, sem passar pelos tópicos de retry.
+ */
+public class PoisonRecordException extends RuntimeException {
+
+    public PoisonRecordException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.saga.common.retry;
+
+import com.example.saga.common.event.SagaEventType;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchMessageListener;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Devolve os registros dos tópicos de retry ao tópico original quando vence o backoff de cada um. Um
+ * container por tentativa: todos os registros de um tópico de retry esperam o mesmo tempo, então cada
+ * partição está em ordem de vencimento e o consumidor só espera o primeiro da fila, sem afetar os tópicos
+ * principais nem as outras tentativas.
+ * <p>
+ * O relay não sabe nada do conteúdo dos registros; qualquer serviço pode devolver os de qualquer tópico,
+ * então todos usam o mesmo grupo ({@code saga-retry}) e dividem as partições.
+ */
+@Component
+// with the in-memory bus the retry delays are scheduled by the bus itself
+@ConditionalOnExpression("${saga.retry.relay-enabled:true} and '${saga.transport:kafka}' == 'kafka'")
+public class RetryTopicRelay implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(RetryTopicRelay.class);
+    private static final String GROUP_ID = "saga-retry";
+
+    private final RetryTopics retryTopics;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final ConsumerFactory<String, byte[]> consumerFactory;
+    private final long sendTimeoutMs;
+    private final List<ConcurrentMessageListenerContainer<String, byte[]>> containers = new ArrayList<>();
+    private volatile boolean running;
+
+    public RetryTopicRelay(RetryTopics retryTopics,
+                           KafkaTemplate<String, byte[]> kafkaTemplate,
+                           KafkaProperties kafkaProperties,
+                           @Value("${saga.outbox.send-timeout-ms:10000}") long sendTimeoutMs) {
+        this.retryTopics = retryTopics;
+        this.kafkaTemplate = kafkaTemplate;
+        this.sendTimeoutMs = sendTimeoutMs;
+        Map<String, Object> props = kafkaProperties.buildConsumerProperties();
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, GROUP_ID);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        // records are forwarded untouched, whatever their format
+        this.consumerFactory = new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), new ByteArrayDeserializer());
+
+        Object maxPollInterval = props.getOrDefault(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, 300000);
+        long longestBackoff = retryTopics.backoffMs(retryTopics.getAttempts());
+        if (longestBackoff >= Long.parseLong(maxPollInterval.toString())) {
+            logger.warn("saga.retry backoff of {} ms exceeds max.poll.interval.ms ({}); retry consumers will be evicted from the group",
+                    longestBackoff, maxPollInterval);
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        for (int attempt = 1; attempt <= retryTopics.getAttempts(); attempt++) {
+            int a = attempt;
+            String[] topics = Arrays.stream(SagaEventType.values())
+                    .map(t -> RetryTopics.retryTopic(t.getName(), a))
+                    .toArray(String[]::new);
+            ContainerProperties properties = new ContainerProperties(topics);
+            properties.setMessageListener((BatchMessageListener<String, byte[]>) this::forward);
+            ConcurrentMessageListenerContainer<String, byte[]> container = new ConcurrentMessageListenerContainer<>(consumerFactory, properties);
+            container.setBeanName("saga-retry-" + attempt);
+            // a failed send is retried until the broker is back; dropping the batch would lose the records
+            container.setCommonErrorHandler(new DefaultErrorHandler(new FixedBackOff(1000, FixedBackOff.UNLIMITED_ATTEMPTS)));
+            container.start();
+            containers.add(container);
+        }
+        logger.info("Retry relay started for {} attempts", retryTopics.getAttempts());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        containers.forEach(ConcurrentMessageListenerContainer::stop);
+        containers.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void forward(List<ConsumerRecord<String, byte[]>> records) {
+        List<CompletableFuture<?>> sends = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            waitUntil(RetryTopics.retryAt(record));
+            sends.add(kafkaTemplate.send(RetryTopics.backToOriginal(record, false)).completable());
+        }
+        RetryTopics.await(sends, sendTimeoutMs);
+        logger.debug("{} records returned from retry topics", records.size());
+    }
+
+    private void waitUntil(long epochMillis) {
+        long wait;
+        while ((wait = epochMillis - System.currentTimeMillis()) > 0) {
+            if (!running) {
+                // the batch is redelivered after the restart, nothing is lost
+                throw new IllegalStateException("Retry relay stopping");
+            }
+            try {
+                Thread.sleep(Math.min(wait, 100));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a retry", e);
+            }
+        }
+    }
+}
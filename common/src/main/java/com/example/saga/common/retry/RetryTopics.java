@@ -0,0 +1,269 @@
+package com.example.saga.common.retry;
+
+import com.example.saga.common.InboxDeduplicator;
+import com.example.saga.common.SagaHeaders;
+import com.example.saga.common.bus.EventPublisher;
+import com.example.saga.common.event.EventCodecs;
+import com.example.saga.common.event.SagaEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.kafka.listener.ListenerUtils;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Retry sem bloqueio para os listeners em lote. Um registro que não pode ser processado sai do caminho
+ * do tópico principal em vez de segurar a partição:
+ * <pre>
+ * payment_requested → payment_requested-retry-1 → ... → payment_requested-retry-N → payment_requested-dlt
+ * </pre>
+ * A tentativa {@code n} espera {@code saga.retry.initial-backoff-ms * saga.retry.multiplier^(n-1)} no
+ * tópico {@code -retry-n} e o {@link RetryTopicRelay} a devolve ao tópico original, com o mesmo id de
+ * mensagem; esgotadas as {@code saga.retry.attempts} tentativas o registro vai para o {@code -dlt}.
+ * Payloads ilegíveis e {@link PoisonRecordException} vão direto para o dead letter.
+ * <p>
+ * Quando um lote falha ele é reprocessado registro a registro, então só os registros ruins são desviados
+ * e o resto do lote faz commit normalmente. Falhas transitórias do banco (conexão, lock, conflito de
+ * versão) não são culpa do registro: o lote falha e é reentregue no próprio tópico, como antes.
+ * <p>
+ * O registro desviado volta ao tópico principal atrás dos que chegaram depois dele, então a ordem por
+ * saga não é garantida para ele; os consumidores já toleram reentregas e eventos fora de ordem.
+ */
+@Component
+public class RetryTopics {
+    public static final String RETRY_SUFFIX = "-retry-";
+    public static final String DEAD_LETTER_SUFFIX = "-dlt";
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryTopics.class);
+    private static final LogAccessor logAccessor = new LogAccessor(RetryTopics.class);
+    private static final Set<String> RETRY_HEADERS = new HashSet<>(Arrays.asList(
+            SagaHeaders.ORIGINAL_TOPIC, SagaHeaders.ATTEMPT, SagaHeaders.RETRY_AT, SagaHeaders.ERROR));
+
+    private final EventPublisher publisher;
+    private final MeterRegistry meterRegistry;
+    private final int attempts;
+    private final long initialBackoffMs;
+    private final double multiplier;
+    private final long sendTimeoutMs;
+
+    public RetryTopics(EventPublisher publisher,
+                       ObjectProvider<MeterRegistry> meterRegistry,
+                       @Value("${saga.retry.attempts:3}") int attempts,
+                       @Value("${saga.retry.initial-backoff-ms:1000}") long initialBackoffMs,
+                       @Value("${saga.retry.multiplier:5}") double multiplier,
+                       @Value("${saga.outbox.send-timeout-ms:10000}") long sendTimeoutMs) {
+        this.publisher = publisher;
+        this.meterRegistry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+        this.attempts = attempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.multiplier = multiplier;
+        this.sendTimeoutMs = sendTimeoutMs;
+    }
+
+    public static String retryTopic(String topic, int attempt) {
+        return topic + RETRY_SUFFIX + attempt;
+    }
+
+    public static String deadLetterTopic(String topic) {
+        return topic + DEAD_LETTER_SUFFIX;
+    }
+
+    /**
+     * Os tópicos de retry e o dead letter de {@code topic}, para serem criados junto com ele.
+     */
+    public List<String> topicsFor(String topic) {
+        List<String> topics = new ArrayList<>(attempts + 1);
+        for (int attempt = 1; attempt <= attempts; attempt++) {
+            topics.add(retryTopic(topic, attempt));
+        }
+        topics.add(deadLetterTopic(topic));
+        return topics;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public long backoffMs(int attempt) {
+        return (long) (initialBackoffMs * Math.pow(multiplier, attempt - 1));
+    }
+
+    /**
+     * Processa o lote com {@code work} (que abre suas próprias transações) e desvia para retry ou dead
+     * letter os registros que falharem. Só retorna depois que os registros desviados foram aceitos pelo
+     * broker, então o commit do offset nunca os perde.
+     */
+    public void process(List<ConsumerRecord<String, SagaEvent>> records, Consumer<List<ConsumerRecord<String, SagaEvent>>> work) {
+        List<ConsumerRecord<String, SagaEvent>> readable = new ArrayList<>(records.size());
+        List<ProducerRecord<String, byte[]>> diverted = new ArrayList<>();
+        for (ConsumerRecord<String, SagaEvent> record : records) {
+            // a null value means the payload could not be deserialized
+            if (record.value() == null) {
+                diverted.add(divert(record, new PoisonRecordException("Unreadable payload")));
+            } else {
+                readable.add(record);
+            }
+        }
+        if (!readable.isEmpty()) {
+            try {
+                work.accept(readable);
+            } catch (RuntimeException e) {
+                if (isTransient(e)) {
+                    throw e;
+                }
+                if (readable.size() == 1) {
+                    diverted.add(divert(readable.get(0), e));
+                } else {
+                    logger.warn("Batch of {} records failed, processing them one at a time: {}", readable.size(), e.toString());
+                    // records that made it in the failed batch (another shard) are dropped by the inbox
+                    for (ConsumerRecord<String, SagaEvent> record : readable) {
+                        try {
+                            work.accept(Collections.singletonList(record));
+                        } catch (RuntimeException recordFailure) {
+                            if (isTransient(recordFailure)) {
+                                throw recordFailure;
+                            }
+                            diverted.add(divert(record, recordFailure));
+                        }
+                    }
+                }
+            }
+        }
+        if (!diverted.isEmpty()) {
+            List<CompletableFuture<?>> sends = new ArrayList<>(diverted.size());
+            diverted.forEach(r -> sends.add(publisher.send(r)));
+            await(sends, sendTimeoutMs);
+        }
+    }
+
+    private ProducerRecord<String, byte[]> divert(ConsumerRecord<String, SagaEvent> record, RuntimeException failure) {
+        String original = originalTopic(record);
+        int attempt = attempt(record) + 1;
+        boolean dead = failure instanceof PoisonRecordException || attempt > attempts;
+        String topic = dead ? deadLetterTopic(original) : retryTopic(original, attempt);
+
+        byte[] payload;
+        if (record.value() != null) {
+            // re-encoded as JSON, the format the outbox stores
+            payload = EventCodecs.JSON.encode(record.value());
+        } else {
+            DeserializationException unreadable = ListenerUtils.getExceptionFromHeader(record,
+                    SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER, logAccessor);
+            payload = unreadable != null ? unreadable.getData() : null;
+        }
+        ProducerRecord<String, byte[]> diverted = new ProducerRecord<>(topic, record.key(), payload);
+        for (Header header : record.headers()) {
+            String name = header.key();
+            boolean reencoded = record.value() != null && SagaHeaders.CONTENT_TYPE.equals(name);
+            if (!RETRY_HEADERS.contains(name) && !reencoded && !name.startsWith(SerializationUtils.DESERIALIZER_EXCEPTION_HEADER_PREFIX)) {
+                diverted.headers().add(header);
+            }
+        }
+        if (record.value() != null) {
+            diverted.headers().add(SagaHeaders.CONTENT_TYPE, EventCodecs.JSON.contentType().getBytes(StandardCharsets.UTF_8));
+        }
+        Headers headers = diverted.headers();
+        headers.add(SagaHeaders.ORIGINAL_TOPIC, original.getBytes(StandardCharsets.UTF_8));
+        headers.add(SagaHeaders.ATTEMPT, String.valueOf(attempt).getBytes(StandardCharsets.UTF_8));
+        String error = failure.getClass().getSimpleName() + ": " + failure.getMessage();
+        headers.add(SagaHeaders.ERROR, error.getBytes(StandardCharsets.UTF_8));
+        if (dead) {
+            logger.error("Dead-lettering {} messageId={} after {} attempts: {}", original, InboxDeduplicator.messageId(record), attempt, error);
+        } else {
+            long retryAt = System.currentTimeMillis() + backoffMs(attempt);
+            headers.add(SagaHeaders.RETRY_AT, String.valueOf(retryAt).getBytes(StandardCharsets.UTF_8));
+            logger.warn("Retrying {} messageId={} in {} ms (attempt {}): {}", original, InboxDeduplicator.messageId(record),
+                    backoffMs(attempt), attempt, error);
+        }
+        meterRegistry.counter("saga.retry.records", "topic", original, "outcome", dead ? "dead_letter" : "retry").increment();
+        return diverted;
+    }
+
+    /**
+     * O registro de um tópico de retry ou dead letter pronto para voltar ao tópico original. Com
+     * {@code resetAttempts} (re-drive manual do dead letter) a contagem de tentativas recomeça.
+     */
+    public static ProducerRecord<String, byte[]> backToOriginal(ConsumerRecord<String, byte[]> record, boolean resetAttempts) {
+        ProducerRecord<String, byte[]> back = new ProducerRecord<>(originalTopic(record), record.key(), record.value());
+        for (Header header : record.headers()) {
+            String name = header.key();
+            if (!SagaHeaders.RETRY_AT.equals(name) && !(resetAttempts && RETRY_HEADERS.contains(name))) {
+                back.headers().add(header);
+            }
+        }
+        return back;
+    }
+
+    public static String originalTopic(ConsumerRecord<String, ?> record) {
+        String original = header(record, SagaHeaders.ORIGINAL_TOPIC);
+        return original != null ? original : record.topic();
+    }
+
+    public static int attempt(ConsumerRecord<String, ?> record) {
+        String attempt = header(record, SagaHeaders.ATTEMPT);
+        return attempt != null ? Integer.parseInt(attempt) : 0;
+    }
+
+    public static long retryAt(ConsumerRecord<String, ?> record) {
+        String retryAt = header(record, SagaHeaders.RETRY_AT);
+        return retryAt != null ? Long.parseLong(retryAt) : 0;
+    }
+
+    public static String header(ConsumerRecord<String, ?> record, String name) {
+        Header header = record.headers().lastHeader(name);
+        return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Espera os acks dos envios; se algum falhar o lote inteiro falha e é reentregue (o inbox descarta o
+     * que já tinha sido processado).
+     */
+    public static void await(List<CompletableFuture<?>> sends, long timeoutMs) {
+        try {
+            CompletableFuture.allOf(sends.toArray(CompletableFuture<?>[]::new)).get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KafkaException("Interrupted while waiting for retry sends", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new KafkaException("Failed to send " + sends.size() + " records to retry topics", e);
+        }
+    }
+
+    private static boolean isTransient(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof TransientDataAccessException || t instanceof RecoverableDataAccessException
+                    || t instanceof DataAccessResourceFailureException || t instanceof CannotCreateTransactionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.saga.common.shard;
+
+import java.util.function.Supplier;
+
+/**
+ * Shard da thread atual, lido pelo {@link ShardRoutingDataSource} quando uma conexão é aberta. Precisa ser
+ * definido antes de a transação começar: dentro dela a conexão já está presa ao shard em que foi aberta.
+ * Sem shard definido vale o shard 0.
+ */
+public final class ShardContext {
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static int current() {
+        Integer shard = CURRENT.get();
+        return shard == null ? 0 : shard;
+    }
+
+    public static <T> T call(int shard, Supplier<T> work) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public static void run(int shard, Runnable work) {
+        call(shard, () -> {
+            work.run();
+            return null;
+        });
+    }
+}
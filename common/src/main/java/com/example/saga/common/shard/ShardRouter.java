@@ -0,0 +1,76 @@
+package com.example.saga.common.shard;
+
+import com.example.saga.common.event.OrderCreated;
+import com.example.saga.common.event.SagaEvent;
+import com.example.saga.common.event.SagaScoped;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Decide em que shard ficam os dados de uma saga. Tudo de um pedido fica no mesmo shard: o
+ * {@code OrderCreated} é roteado por um hash do {@code orderId}, e a saga criada a partir dele recebe um id
+ * que carrega esse shard nos 16 bits finais ({@link #newSagaId}), de modo que os eventos seguintes, que só
+ * têm o {@code sagaId}, chegam ao mesmo shard sem consulta. Ids aleatórios comuns caem em um shard
+ * qualquer pelos mesmos bits, o que funciona como hash.
+ * <p>
+ * Com {@code saga.sharding.urls} vazio há um único shard e nada muda.
+ */
+@Component
+public class ShardRouter {
+    public static final int MAX_SHARDS = 1 << 16;
+    private static final long SHARD_BITS = MAX_SHARDS - 1;
+
+    private final int count;
+
+    public ShardRouter(@Value("${saga.sharding.urls:}") List<String> urls) {
+        if (urls.size() > MAX_SHARDS) {
+            throw new IllegalArgumentException("At most " + MAX_SHARDS + " shards are supported");
+        }
+        this.count = Math.max(1, urls.size());
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int shardOf(Long orderId) {
+        if (orderId == null || count == 1) {
+            return 0;
+        }
+        // sequence ids are consecutive, so mix them before taking the remainder
+        long h = orderId * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(h ^ (h >>> 32), (long) count);
+    }
+
+    public int shardOf(UUID sagaId) {
+        if (sagaId == null || count == 1) {
+            return 0;
+        }
+        return (int) ((sagaId.getLeastSignificantBits() & SHARD_BITS) % count);
+    }
+
+    /**
+     * Shard de um evento recebido; eventos ilegíveis ({@code null}) vão para o shard 0, onde o listener
+     * os descarta.
+     */
+    public int shardOf(SagaEvent event) {
+        if (event instanceof SagaScoped) {
+            return shardOf(((SagaScoped) event).getSagaId());
+        }
+        if (event instanceof OrderCreated) {
+            return shardOf(((OrderCreated) event).getOrderId());
+        }
+        return 0;
+    }
+
+    /**
+     * Id aleatório para uma saga nova cujos dados ficam em {@code shard}.
+     */
+    public UUID newSagaId(int shard) {
+        UUID random = UUID.randomUUID();
+        return new UUID(random.getMostSignificantBits(), (random.getLeastSignificantBits() & ~SHARD_BITS) | shard);
+    }
+}
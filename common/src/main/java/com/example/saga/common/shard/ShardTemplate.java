@@ -0,0 +1,52 @@
+package com.example.saga.common.shard;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Executa trabalho nos shards. Um lote que mistura shards é dividido e cada parte roda em sua própria
+ * transação no shard dela; se uma parte falha as anteriores já fizeram commit, e a reentrega do lote é
+ * absorvida pelo inbox de cada shard. Com um único shard é exatamente uma transação, como antes.
+ */
+@Component
+public class ShardTemplate {
+    private final ShardRouter router;
+    private final TransactionTemplate transactionTemplate;
+
+    public ShardTemplate(ShardRouter router, PlatformTransactionManager transactionManager) {
+        this.router = router;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public <T> void inTransactionPerShard(List<T> items, ToIntFunction<T> shardOf, Consumer<List<T>> work) {
+        if (router.count() == 1) {
+            transactionTemplate.executeWithoutResult(status -> work.accept(items));
+            return;
+        }
+        Map<Integer, List<T>> byShard = new LinkedHashMap<>();
+        for (T item : items) {
+            byShard.computeIfAbsent(shardOf.applyAsInt(item), s -> new ArrayList<>()).add(item);
+        }
+        byShard.forEach((shard, part) ->
+                ShardContext.run(shard, () -> transactionTemplate.executeWithoutResult(status -> work.accept(part))));
+    }
+
+    /**
+     * Roda {@code work} uma vez em cada shard, sem transação.
+     */
+    public void forEachShard(IntConsumer work) {
+        for (int shard = 0; shard < router.count(); shard++) {
+            int s = shard;
+            ShardContext.run(s, () -> work.accept(s));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.saga.common.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.model.relational.Namespace;
+import org.hibernate.boot.model.relational.Sequence;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.hbm2ddl.SchemaUpdate;
+import org.hibernate.tool.schema.TargetType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Com {@code saga.sharding.urls} (uma URL JDBC por shard, o shard 0 primeiro) o {@code DataSource} da
+ * aplicação passa a ser um {@link ShardRoutingDataSource}. Usuário, senha e driver vêm de
+ * {@code spring.datasource}; cada shard tem seu pool de {@code saga.sharding.pool-size} conexões.
+ * <p>
+ * O Hibernate só cria o schema no shard 0; os demais recebem o mesmo {@code ddl-auto} no startup. As
+ * sequences de cada shard começam em {@code shard << 40}, porque o otimizador do Hibernate distribui blocos
+ * de ids em memória sem saber de que shard eles vieram.
+ */
+@Configuration
+@ConditionalOnProperty(name = "saga.sharding.urls")
+public class ShardingConfig {
+    private static final Logger logger = LoggerFactory.getLogger(ShardingConfig.class);
+    private static final int SEQUENCE_SHIFT = 40;
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties,
+                                 @Value("${saga.sharding.urls}") List<String> urls,
+                                 @Value("${saga.sharding.pool-size:10}") int poolSize) {
+        List<DataSource> shards = new ArrayList<>(urls.size());
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource shard = properties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(urls.get(i).trim())
+                    .build();
+            shard.setPoolName("shard-" + i);
+            shard.setMaximumPoolSize(poolSize);
+            shards.add(shard);
+            targets.put(i, shard);
+        }
+        ShardRoutingDataSource routing = new ShardRoutingDataSource(shards);
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(shards.get(0));
+        routing.afterPropertiesSet();
+        return routing;
+    }
+
+    @Bean
+    public ShardSchema shardSchema() {
+        return new ShardSchema();
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer shardSchemaIntegrator(ShardSchema shardSchema) {
+        return properties -> properties.put("hibernate.integrator_provider",
+                (IntegratorProvider) () -> Collections.singletonList(shardSchema));
+    }
+
+    @Bean
+    public SmartInitializingSingleton shardSchemaUpdate(ShardSchema shardSchema, ShardRouter router, DataSource dataSource,
+                                                        @Value("${spring.jpa.hibernate.ddl-auto:none}") String ddlAuto) {
+        // runs before the listener containers start
+        return () -> {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            for (int shard = 1; shard < router.count(); shard++) {
+                int s = shard;
+                ShardContext.run(s, () -> {
+                    if (!"none".equals(ddlAuto) && !"validate".equals(ddlAuto)) {
+                        shardSchema.update();
+                    }
+                    shardSchema.alignSequences(jdbcTemplate, (long) s << SEQUENCE_SHIFT);
+                });
+                logger.info("Schema of shard {} ready", s);
+            }
+        };
+    }
+
+    /**
+     * Guarda o modelo do Hibernate para replicar o schema nos outros shards.
+     */
+    static class ShardSchema implements Integrator {
+        private Metadata metadata;
+        private SessionFactoryServiceRegistry serviceRegistry;
+
+        @Override
+        public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+                              SessionFactoryServiceRegistry serviceRegistry) {
+            this.metadata = metadata;
+            this.serviceRegistry = serviceRegistry;
+        }
+
+        @Override
+        public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        }
+
+        void update() {
+            new SchemaUpdate().execute(EnumSet.of(TargetType.DATABASE), metadata, serviceRegistry);
+        }
+
+        void alignSequences(JdbcTemplate jdbcTemplate, long base) {
+            for (Namespace namespace : metadata.getDatabase().getNamespaces()) {
+                for (Sequence sequence : namespace.getSequences()) {
+                    String name = sequence.getName().getSequenceName().render();
+                    Long next = jdbcTemplate.queryForObject("select nextval('" + name + "')", Long.class);
+                    if (next != null && next < base) {
+                        jdbcTemplate.execute("alter sequence " + name + " restart with " + (base + 1));
+                    }
+                }
+            }
+        }
+    }
+}
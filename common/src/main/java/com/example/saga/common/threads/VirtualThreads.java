@@ -0,0 +1,73 @@
+package com.example.saga.common.threads;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncListenableTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Fábrica das threads de trabalho (Tomcat, listeners Kafka, relays do outbox). Com
+ * {@code saga.threads.virtual=true} em um JDK 21+ são threads virtuais: uma chamada JDBC ou Kafka
+ * bloqueante deixa de prender uma thread de plataforma e a concorrência passa a ser limitada pelo pool de
+ * conexões, não pelos pools de threads. Em JDKs anteriores o modo é ignorado com um aviso.
+ * <p>
+ * As threads virtuais são criadas por reflexão para que o build continue em Java 11.
+ */
+@Component
+public class VirtualThreads {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreads.class);
+
+    private final boolean enabled;
+
+    public VirtualThreads(@Value("${saga.threads.virtual:false}") boolean virtual) {
+        boolean supported = virtual && virtualFactory("probe-") != null;
+        if (virtual && !supported) {
+            logger.warn("saga.threads.virtual is set but JDK {} has no virtual threads, using platform threads",
+                    Runtime.version().feature());
+        }
+        this.enabled = supported;
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Threads virtuais numeradas a partir de {@code name}, ou threads daemon de plataforma com esse nome.
+     */
+    public ThreadFactory factory(String name) {
+        if (enabled) {
+            return virtualFactory(name + "-");
+        }
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Executor de uma thread nova por tarefa, para os containers de listener do Kafka.
+     */
+    public AsyncListenableTaskExecutor taskExecutor(String name) {
+        return new SimpleAsyncTaskExecutor(factory(name));
+    }
+
+    private static ThreadFactory virtualFactory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            // through the public interface: the builder implementation class is not accessible
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Method name = builderType.getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
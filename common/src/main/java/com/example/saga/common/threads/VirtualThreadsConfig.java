@@ -0,0 +1,57 @@
+package com.example.saga.common.threads;
+
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.AbstractKafkaListenerContainerFactory;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Liga o modo de {@link VirtualThreads} nas requisições HTTP e nos containers de listener do Kafka.
+ * O relay do outbox usa {@link VirtualThreads} diretamente.
+ */
+@Configuration
+@ConditionalOnProperty(name = "saga.threads.virtual", havingValue = "true")
+public class VirtualThreadsConfig {
+
+    /**
+     * Cada consumidor do Kafka roda em uma thread virtual, em todos os {@code batchFactory} dos serviços.
+     */
+    @Bean
+    public static BeanPostProcessor virtualListenerThreads(ObjectProvider<VirtualThreads> virtualThreads) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof AbstractKafkaListenerContainerFactory && virtualThreads.getObject().enabled()) {
+                    ((AbstractKafkaListenerContainerFactory<?, ?, ?>) bean).getContainerProperties()
+                            .setConsumerTaskExecutor(virtualThreads.getObject().taskExecutor("kafka-listener"));
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Configuration
+    @ConditionalOnClass(ProtocolHandler.class)
+    static class Web {
+
+        /**
+         * Uma thread virtual por requisição no lugar do pool do Tomcat ({@code server.tomcat.threads.max}).
+         */
+        @Bean
+        public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualRequestThreads(VirtualThreads virtualThreads) {
+            return protocolHandler -> {
+                if (virtualThreads.enabled()) {
+                    ThreadFactory factory = virtualThreads.factory("http");
+                    protocolHandler.setExecutor(command -> factory.newThread(command).start());
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.saga.common.throttle;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket: {@code ratePerSecond} fichas por segundo, acumulando no máximo {@code burst}. Thread-safe;
+ * as fichas são repostas sob demanda a cada chamada, sem thread de fundo. A taxa pode ser ajustada em
+ * funcionamento ({@link #setRate}).
+ */
+public class TokenBucket {
+    private double ratePerNano;
+    private final double burst;
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+
+    public TokenBucket(double ratePerSecond, double burst) {
+        if (ratePerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+    }
+
+    public synchronized double getRate() {
+        return ratePerNano * TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * Muda a taxa de reposição a partir de agora; as fichas já acumuladas continuam valendo.
+     */
+    public synchronized void setRate(double ratePerSecond) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+        refill();
+        this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * Consome {@code permits} fichas se houver, sem esperar.
+     */
+    public synchronized boolean tryAcquire(int permits) {
+        refill();
+        if (tokens < permits) {
+            return false;
+        }
+        tokens -= permits;
+        return true;
+    }
+
+    /**
+     * Consome {@code permits} fichas, esperando o tempo necessário. Pedidos maiores que o burst deixam o
+     * saldo negativo, o que só atrasa os próximos.
+     */
+    public void acquire(int permits) throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            refill();
+            tokens -= permits;
+            waitNanos = tokens >= 0 ? 0 : (long) (-tokens / ratePerNano);
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Nanossegundos até haver {@code permits} fichas; 0 se já há.
+     */
+    public synchronized long nanosUntil(int permits) {
+        refill();
+        return tokens >= permits ? 0 : (long) Math.ceil((permits - tokens) / ratePerNano);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - refilledAt) * ratePerNano);
+        refilledAt = now;
+    }
+}
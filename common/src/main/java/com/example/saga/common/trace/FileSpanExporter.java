@@ -0,0 +1,98 @@
+package com.example.saga.common.trace;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Acrescenta os spans, um JSON por linha, ao arquivo {@code saga.tracing.file}. A escrita é feita por uma
+ * thread própria a partir de uma fila limitada; com a fila cheia o span é descartado em vez de segurar
+ * quem o exportou.
+ */
+@Component
+@ConditionalOnProperty(name = "saga.tracing.file")
+public class FileSpanExporter implements SpanExporter, DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(FileSpanExporter.class);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BlockingQueue<SpanRecord> queue = new ArrayBlockingQueue<>(10000);
+    private final AtomicLong dropped = new AtomicLong();
+    private final BufferedWriter writer;
+    private final Thread thread;
+
+    public FileSpanExporter(@Value("${saga.tracing.file}") String file) throws IOException {
+        Path path = Paths.get(file);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.thread = new Thread(this::run, "span-exporter");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        logger.info("Exporting saga spans to {}", path.toAbsolutePath());
+    }
+
+    @Override
+    public void export(SpanRecord span) {
+        if (!queue.offer(span) && dropped.incrementAndGet() % 10000 == 1) {
+            logger.warn("Span export queue is full, {} spans dropped so far", dropped.get());
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.close();
+    }
+
+    private void run() {
+        List<SpanRecord> batch = new ArrayList<>(1000);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(queue.take());
+                queue.drainTo(batch, 999);
+                write(batch);
+            }
+        } catch (InterruptedException e) {
+            // flush what is left on shutdown
+            queue.drainTo(batch);
+            write(batch);
+        }
+    }
+
+    private void write(List<SpanRecord> batch) {
+        try {
+            for (SpanRecord span : batch) {
+                writer.write(objectMapper.writeValueAsString(span));
+                writer.newLine();
+            }
+            writer.flush();
+        } catch (IOException e) {
+            logger.warn("Failed to write {} spans", batch.size(), e);
+        }
+        batch.clear();
+    }
+}
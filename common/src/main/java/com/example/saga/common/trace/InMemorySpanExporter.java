@@ -0,0 +1,43 @@
+package com.example.saga.common.trace;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Guarda os últimos {@code saga.tracing.buffer-size} spans em memória, para análise na mesma JVM
+ * (ex.: o teste de carga imprime o {@link TraceBreakdown} no final).
+ */
+@Component
+public class InMemorySpanExporter implements SpanExporter {
+    private final int capacity;
+    private final Deque<SpanRecord> spans;
+
+    public InMemorySpanExporter(@Value("${saga.tracing.buffer-size:100000}") int capacity) {
+        this.capacity = capacity;
+        this.spans = new ArrayDeque<>(Math.min(capacity, 1024));
+    }
+
+    @Override
+    public synchronized void export(SpanRecord span) {
+        if (capacity <= 0) {
+            return;
+        }
+        if (spans.size() >= capacity) {
+            spans.removeFirst();
+        }
+        spans.addLast(span);
+    }
+
+    public synchronized List<SpanRecord> spans() {
+        return new ArrayList<>(spans);
+    }
+
+    public synchronized void clear() {
+        spans.clear();
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.saga.common.trace;
+
+import com.example.saga.common.SagaHeaders;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracing do caminho de uma saga entre os serviços, sem backend externo. O trace começa no
+ * {@code POST /orders} (amostrado com {@code saga.tracing.sample-rate}), vai gravado com cada linha do
+ * outbox ({@code trace_parent}) e segue no header {@code traceparent} dos registros Kafka; cada listener o
+ * continua. Os spans de cada salto formam uma cadeia:
+ * <pre>
+ * db.write / *.consume → outbox.wait → kafka.publish → broker.queue → *.consume → ...
+ * </pre>
+ * de modo que o caminho crítico de uma saga é o caminho da raiz até o span que termina por último (ver
+ * {@link TraceBreakdown}). Sagas fora da amostra não carregam contexto e não custam nada.
+ */
+@Component
+public class SagaTracer {
+    private static final Consumption NONE = new Consumption(null, null, 0, Collections.emptyList());
+
+    private final double sampleRate;
+    private final String service;
+    private final List<SpanExporter> exporters;
+
+    public SagaTracer(@Value("${saga.tracing.sample-rate:0.0}") double sampleRate,
+                      @Value("${saga.tracing.service:${management.metrics.tags.application:saga}}") String service,
+                      List<SpanExporter> exporters) {
+        this.sampleRate = sampleRate;
+        this.service = service;
+        this.exporters = exporters;
+    }
+
+    /**
+     * Começa um trace com probabilidade {@code saga.tracing.sample-rate}; null quando fica fora da amostra.
+     */
+    public TraceContext startTrace() {
+        if (sampleRate <= 0 || exporters.isEmpty() || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return null;
+        }
+        return TraceContext.newTrace();
+    }
+
+    /**
+     * Exporta o span {@code span} (filho de {@code parent}, que pode ser null na raiz) já concluído.
+     */
+    public void export(TraceContext span, TraceContext parent, String name, String key, long startMicros, long endMicros) {
+        if (span == null) {
+            return;
+        }
+        SpanRecord record = new SpanRecord(span.getTraceId(), span.getSpanId(), parent == null ? null : parent.getSpanId(),
+                name, service, key, startMicros, Math.max(0, endMicros - startMicros));
+        for (SpanExporter exporter : exporters) {
+            exporter.export(record);
+        }
+    }
+
+    /**
+     * Continua os traces de um lote recebido: registra o tempo de fila no broker de cada registro com
+     * {@code traceparent} e roda {@code processing} dentro do span {@code name}, que vira o span corrente
+     * da chave do registro no {@link TraceScope}. O span termina quando {@code processing} retorna ou
+     * lança, depois do commit.
+     */
+    public void consume(List<? extends ConsumerRecord<String, ?>> records, String name, Runnable processing) {
+        Consumption consumption = open(records, name);
+        try {
+            processing.run();
+        } finally {
+            consumption.close();
+        }
+    }
+
+    private Consumption open(List<? extends ConsumerRecord<String, ?>> records, String name) {
+        List<OpenSpan> open = null;
+        long now = nowMicros();
+        for (ConsumerRecord<String, ?> record : records) {
+            Header header = record.headers().lastHeader(SagaHeaders.TRACEPARENT);
+            TraceContext parent = header == null ? null : TraceContext.parse(new String(header.value(), StandardCharsets.UTF_8));
+            if (parent == null) {
+                continue;
+            }
+            TraceContext queued = parent.child();
+            // the producer timestamp is taken when the record is sent
+            export(queued, parent, "broker.queue", record.key(), TimeUnit.MILLISECONDS.toMicros(record.timestamp()), now);
+            TraceContext consumed = queued.child();
+            TraceScope.put(record.key(), consumed);
+            if (open == null) {
+                open = new ArrayList<>();
+            }
+            open.add(new OpenSpan(consumed, queued, record.key()));
+        }
+        return open == null ? NONE : new Consumption(this, name, now, open);
+    }
+
+    public static long nowMicros() {
+        return micros(Instant.now());
+    }
+
+    public static long micros(Instant instant) {
+        return TimeUnit.SECONDS.toMicros(instant.getEpochSecond()) + instant.getNano() / 1000;
+    }
+
+    /**
+     * Spans de processamento de um lote em aberto.
+     */
+    private static class Consumption {
+        private final SagaTracer tracer;
+        private final String name;
+        private final long start;
+        private final List<OpenSpan> open;
+
+        Consumption(SagaTracer tracer, String name, long start, List<OpenSpan> open) {
+            this.tracer = tracer;
+            this.name = name;
+            this.start = start;
+            this.open = open;
+        }
+
+        void close() {
+            if (open.isEmpty()) {
+                return;
+            }
+            TraceScope.clear();
+            long end = nowMicros();
+            for (OpenSpan span : open) {
+                tracer.export(span.context, span.parent, name, span.key, start, end);
+            }
+        }
+    }
+
+    private static class OpenSpan {
+        private final TraceContext context;
+        private final TraceContext parent;
+        private final String key;
+
+        OpenSpan(TraceContext context, TraceContext parent, String key) {
+            this.context = context;
+            this.parent = parent;
+            this.key = key;
+        }
+    }
+}
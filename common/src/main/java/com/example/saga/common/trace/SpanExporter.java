@@ -0,0 +1,9 @@
+package com.example.saga.common.trace;
+
+/**
+ * Destino dos spans concluídos. Chamado das threads da aplicação e do producer Kafka, então precisa
+ * ser thread-safe e não pode bloquear.
+ */
+public interface SpanExporter {
+    void export(SpanRecord span);
+}
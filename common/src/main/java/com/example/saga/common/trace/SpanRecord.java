@@ -0,0 +1,29 @@
+package com.example.saga.common.trace;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Span concluído, como é exportado. Tempos em microssegundos desde a época; {@code key} é a chave do
+ * registro Kafka (id do pedido ou da saga).
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SpanRecord {
+    private String traceId;
+    private String spanId;
+    private String parentId;
+    private String name;
+    private String service;
+    private String key;
+    private long start;
+    private long duration;
+
+    public long end() {
+        return start + duration;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.saga.common.trace;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caminho crítico de cada saga a partir dos spans exportados: da raiz ({@code order.create}) até o span
+ * que termina por último, seguindo os pais. Cada span do caminho contribui com o tempo que acrescentou
+ * depois do anterior (sobreposições, como {@code kafka.publish} e {@code broker.queue}, não contam duas
+ * vezes); o que nenhum span cobre aparece como {@code (gap)}.
+ * <p>
+ * Uso: {@code java -cp <jar> com.example.saga.common.trace.TraceBreakdown [--per-trace] spans*.jsonl}
+ * com os arquivos de {@code saga.tracing.file} de todos os serviços.
+ */
+public final class TraceBreakdown {
+    private static final String GAP = "(gap)";
+
+    private TraceBreakdown() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean perTrace = false;
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<SpanRecord> spans = new ArrayList<>();
+        for (String arg : args) {
+            if ("--per-trace".equals(arg)) {
+                perTrace = true;
+                continue;
+            }
+            try (BufferedReader reader = Files.newBufferedReader(Paths.get(arg), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isBlank()) {
+                        spans.add(objectMapper.readValue(line, SpanRecord.class));
+                    }
+                }
+            }
+        }
+        System.out.println(report(spans, perTrace));
+    }
+
+    /**
+     * Tabela com a contribuição média, p50 e p95 de cada span ao caminho crítico, e opcionalmente o caminho
+     * de cada trace.
+     */
+    public static String report(Collection<SpanRecord> spans, boolean perTrace) {
+        Map<String, List<SpanRecord>> byTrace = new LinkedHashMap<>();
+        for (SpanRecord span : spans) {
+            byTrace.computeIfAbsent(span.getTraceId(), t -> new ArrayList<>()).add(span);
+        }
+        StringBuilder out = new StringBuilder();
+        Map<String, List<Long>> contributions = new LinkedHashMap<>();
+        List<Long> totals = new ArrayList<>();
+        for (List<SpanRecord> trace : byTrace.values()) {
+            List<SpanRecord> path = criticalPath(trace);
+            if (path.size() < 2) {
+                continue;
+            }
+            Map<String, Long> breakdown = breakdown(path);
+            long total = path.get(path.size() - 1).end() - path.get(0).getStart();
+            totals.add(total);
+            // sagas that skip a span count it as zero, so the means add up to the mean total
+            breakdown.forEach((name, micros) -> contributions.computeIfAbsent(name, n -> new ArrayList<>()).add(micros));
+            if (perTrace) {
+                out.append(String.format("trace %s key %s total %.1f ms%n", path.get(0).getTraceId(),
+                        path.get(path.size() - 1).getKey(), total / 1000.0));
+                breakdown.forEach((name, micros) -> out.append(String.format("  %-22s %10.1f ms%n", name, micros / 1000.0)));
+            }
+        }
+        if (totals.isEmpty()) {
+            return out.append("No complete traces").toString();
+        }
+        contributions.values().forEach(list -> {
+            while (list.size() < totals.size()) {
+                list.add(0L);
+            }
+        });
+        out.append(String.format("Critical path of %d sagas (ms)%n", totals.size()));
+        out.append(String.format("  %-22s %10s %10s %10s %7s%n", "span", "mean", "p50", "p95", "share"));
+        double meanTotal = mean(totals);
+        contributions.forEach((name, list) -> out.append(row(name, list, meanTotal)));
+        out.append(row("total", totals, meanTotal));
+        return out.toString();
+    }
+
+    private static List<SpanRecord> criticalPath(List<SpanRecord> trace) {
+        Map<String, SpanRecord> byId = new HashMap<>();
+        SpanRecord last = null;
+        for (SpanRecord span : trace) {
+            byId.put(span.getSpanId(), span);
+            if (last == null || span.end() > last.end()) {
+                last = span;
+            }
+        }
+        List<SpanRecord> path = new ArrayList<>();
+        for (SpanRecord span = last; span != null && path.size() <= trace.size(); span = byId.get(span.getParentId())) {
+            path.add(span);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Contribuição de cada span do caminho, sem a raiz, que cobre a requisição inteira.
+     */
+    private static Map<String, Long> breakdown(List<SpanRecord> path) {
+        Map<String, Long> breakdown = new LinkedHashMap<>();
+        long cursor = path.get(0).getStart();
+        for (SpanRecord span : path.subList(1, path.size())) {
+            if (span.getStart() > cursor) {
+                breakdown.merge(GAP, span.getStart() - cursor, Long::sum);
+                cursor = span.getStart();
+            }
+            breakdown.merge(span.getName(), Math.max(0, span.end() - cursor), Long::sum);
+            cursor = Math.max(cursor, span.end());
+        }
+        return breakdown;
+    }
+
+    private static String row(String name, List<Long> micros, double meanTotal) {
+        List<Long> sorted = new ArrayList<>(micros);
+        Collections.sort(sorted);
+        double mean = mean(sorted);
+        return String.format("  %-22s %10.1f %10.1f %10.1f %6.1f%%%n", name, mean / 1000.0,
+                percentile(sorted, 0.50) / 1000.0, percentile(sorted, 0.95) / 1000.0, 100.0 * mean / meanTotal);
+    }
+
+    private static double mean(List<Long> values) {
+        return values.stream().mapToLong(Long::longValue).average().orElse(0);
+    }
+
+    private static long percentile(List<Long> sorted, double p) {
+        return sorted.get((int) Math.min(sorted.size() - 1, Math.ceil(p * sorted.size()) - 1));
+    }
+}
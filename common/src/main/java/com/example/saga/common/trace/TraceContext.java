@@ -0,0 +1,68 @@
+package com.example.saga.common.trace;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Identificação de um span: trace (128 bits) e span (64 bits), no formato W3C {@code traceparent}
+ * ({@code 00-<trace>-<span>-01}). Só existem contextos de traces amostrados.
+ */
+public final class TraceContext {
+    private static final String VERSION = "00";
+    private static final String SAMPLED = "01";
+
+    private final String traceId;
+    private final String spanId;
+
+    private TraceContext(String traceId, String spanId) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+    }
+
+    static TraceContext newTrace() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new TraceContext(hex(random.nextLong()) + hex(random.nextLong()), hex(random.nextLong()));
+    }
+
+    /**
+     * Novo span no mesmo trace.
+     */
+    public TraceContext child() {
+        return new TraceContext(traceId, hex(ThreadLocalRandom.current().nextLong()));
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getSpanId() {
+        return spanId;
+    }
+
+    public String traceparent() {
+        return VERSION + "-" + traceId + "-" + spanId + "-" + SAMPLED;
+    }
+
+    /**
+     * Lê um {@code traceparent}; null se ausente, malformado ou não amostrado.
+     */
+    public static TraceContext parse(String traceparent) {
+        if (traceparent == null || traceparent.length() != 55) {
+            return null;
+        }
+        String[] parts = traceparent.split("-");
+        if (parts.length != 4 || parts[1].length() != 32 || parts[2].length() != 16 || !SAMPLED.equals(parts[3])) {
+            return null;
+        }
+        return new TraceContext(parts[1], parts[2]);
+    }
+
+    @Override
+    public String toString() {
+        return traceparent();
+    }
+
+    private static String hex(long value) {
+        String s = Long.toHexString(value);
+        return "0000000000000000".substring(s.length()) + s;
+    }
+}
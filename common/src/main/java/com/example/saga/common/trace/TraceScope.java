@@ -0,0 +1,45 @@
+package com.example.saga.common.trace;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Span corrente de cada chave (id do pedido ou da saga) na thread que processa um lote. As mensagens
+ * gravadas no outbox durante o lote herdam o span da sua chave (ver
+ * {@link com.example.saga.common.domain.OutboxCommitListener}), sem que o código de negócio precise
+ * repassá-lo.
+ */
+public final class TraceScope {
+    private static final ThreadLocal<Map<String, TraceContext>> CURRENT = new ThreadLocal<>();
+
+    private TraceScope() {
+    }
+
+    public static void put(String key, TraceContext context) {
+        if (key == null || context == null) {
+            return;
+        }
+        Map<String, TraceContext> map = CURRENT.get();
+        if (map == null) {
+            map = new HashMap<>();
+            CURRENT.set(map);
+        }
+        map.put(key, context);
+    }
+
+    public static TraceContext get(String key) {
+        Map<String, TraceContext> map = CURRENT.get();
+        return map == null || key == null ? null : map.get(key);
+    }
+
+    /**
+     * Faz {@code to} continuar o span de {@code from}, ex.: a saga criada a partir do pedido.
+     */
+    public static void link(String from, String to) {
+        put(to, get(from));
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.saga.common;
+
+import com.example.saga.common.shard.ShardRouter;
+import com.example.saga.common.threads.VirtualThreads;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxDispatcherTest {
+    private static final String TYPE = "order_created";
+    private static final int TICKS = 10;
+
+    private final OutboxRelay outboxRelay = mock(OutboxRelay.class);
+
+    @Test
+    void idleTypeSkipsExponentiallyMoreTicks() throws Exception {
+        when(outboxRelay.pass(TYPE)).thenReturn(new OutboxRelay.Pass(0, false));
+
+        tick(TICKS);
+
+        // ticks 1, 3 and 7 run, skipping 1, 3 and then 7 ticks
+        verify(outboxRelay, times(3)).pass(TYPE);
+    }
+
+    @Test
+    void failedSendsAreRetriedOnEveryTickInsteadOfBackingOff() throws Exception {
+        when(outboxRelay.pass(TYPE)).thenReturn(new OutboxRelay.Pass(0, true));
+
+        tick(TICKS);
+
+        verify(outboxRelay, times(TICKS)).pass(TYPE);
+    }
+
+    @Test
+    void relayExceptionsAreRetriedOnEveryTick() throws Exception {
+        when(outboxRelay.pass(TYPE))
+                .thenReturn(new OutboxRelay.Pass(0, false))
+                .thenThrow(new IllegalStateException("database down"));
+
+        tick(TICKS);
+
+        // one idle tick skipped after the first pass, then no backoff
+        verify(outboxRelay, times(TICKS - 1)).pass(TYPE);
+    }
+
+    private void tick(int ticks) throws InterruptedException {
+        OutboxDispatcher dispatcher = new OutboxDispatcher(outboxRelay, new VirtualThreads(false),
+                new ShardRouter(List.of()), false, 5);
+        try {
+            for (int i = 0; i < ticks; i++) {
+                dispatcher.poll(TYPE);
+                // let the pass finish and record its result before the next tick
+                Thread.sleep(50);
+            }
+        } finally {
+            dispatcher.destroy();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.saga.common;
+
+import com.example.saga.common.domain.OutboxMessage;
+import com.example.saga.common.event.BinaryEventCodec;
+import com.example.saga.common.event.EventCodecs;
+import com.example.saga.common.event.JsonEventCodec;
+import com.example.saga.common.event.OrderCreated;
+import com.example.saga.common.event.SagaEventType;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutboxPayloadsTest {
+    private final OrderCreated event = new OrderCreated(42L, 99.5);
+
+    @Test
+    void payloadAboveTheThresholdIsGzippedAndReadBackAsTheEncodedEvent() {
+        byte[] encoded = EventCodecs.JSON.encode(event);
+        OutboxMessage m = new OutboxMessage();
+
+        new OutboxPayloads(JsonEventCodec.CONTENT_TYPE, encoded.length - 1).write(m, event);
+
+        assertThat(m.getPayloadEncoding()).isEqualTo(OutboxPayloads.GZIP);
+        // gzip magic number
+        assertThat(m.getPayload()).startsWith((byte) 0x1f, (byte) 0x8b);
+        assertThat(OutboxPayloads.read(m)).isEqualTo(encoded);
+        assertThat(OutboxPayloads.contentType(m)).isEqualTo(JsonEventCodec.CONTENT_TYPE);
+    }
+
+    @Test
+    void binaryPayloadSurvivesTheGzipRoundTrip() {
+        OutboxMessage m = new OutboxMessage();
+
+        new OutboxPayloads(BinaryEventCodec.CONTENT_TYPE, 1).write(m, event);
+
+        assertThat(m.getPayloadEncoding()).isEqualTo(OutboxPayloads.GZIP);
+        OrderCreated decoded = (OrderCreated) EventCodecs.forContentType(OutboxPayloads.contentType(m))
+                .decode(SagaEventType.ORDER_CREATED, OutboxPayloads.read(m));
+        assertThat(decoded.getOrderId()).isEqualTo(42L);
+        assertThat(decoded.getAmount()).isEqualTo(99.5);
+    }
+
+    @Test
+    void payloadUpToTheThresholdIsStoredAsEncoded() {
+        byte[] encoded = EventCodecs.JSON.encode(event);
+        OutboxMessage m = new OutboxMessage();
+
+        new OutboxPayloads(JsonEventCodec.CONTENT_TYPE, encoded.length).write(m, event);
+
+        assertThat(m.getPayloadEncoding()).isNull();
+        assertThat(m.getPayload()).isEqualTo(encoded);
+        assertThat(OutboxPayloads.read(m)).isEqualTo(encoded);
+    }
+
+    @Test
+    void compressionIsOffByDefault() {
+        OutboxMessage m = new OutboxMessage();
+        m.setPayloadEncoding(OutboxPayloads.GZIP);
+
+        new OutboxPayloads(JsonEventCodec.CONTENT_TYPE, 0).write(m, event);
+
+        assertThat(m.getPayloadEncoding()).isNull();
+        assertThat(OutboxPayloads.read(m)).isEqualTo(EventCodecs.JSON.encode(event));
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.saga.common;
+
+import com.example.saga.common.bus.EventPublisher;
+import com.example.saga.common.domain.OutboxMessage;
+import com.example.saga.common.repo.OutboxRepository;
+import com.example.saga.common.trace.SagaTracer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Várias réplicas do relay em modo lease sobre o mesmo outbox (H2 no modo PostgreSQL, que aceita o
+ * {@code FOR UPDATE SKIP LOCKED} do claim): cada linha é publicada exatamente uma vez.
+ */
+@SpringBootTest(classes = OutboxRelayLeaseTest.TestApplication.class, properties = {
+        "spring.datasource.url=jdbc:h2:mem:lease;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "logging.level.root=WARN"})
+class OutboxRelayLeaseTest {
+    private static final String TYPE = "order_created";
+    private static final int ROWS = 2000;
+    private static final int RELAYS = 4;
+
+    @Autowired
+    private OutboxRepository outboxRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+    @Autowired
+    private ObjectProvider<SagaTracer> tracer;
+
+    @Test
+    void concurrentRelaysInLeaseModePublishEachRowOnce() throws Exception {
+        List<OutboxMessage> rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            OutboxMessage m = new OutboxMessage();
+            m.setAggregateType("order");
+            m.setAggregateId(String.valueOf(i));
+            m.setType(TYPE);
+            m.setPayload("{}".getBytes(StandardCharsets.UTF_8));
+            rows.add(m);
+        }
+        outboxRepository.saveAll(rows);
+
+        Map<String, AtomicInteger> sends = new ConcurrentHashMap<>();
+        EventPublisher publisher = record -> {
+            sends.computeIfAbsent(messageId(record), id -> new AtomicInteger()).incrementAndGet();
+            // acks arrive late and out of order, as from a broker
+            return CompletableFuture.runAsync(() -> { },
+                    CompletableFuture.delayedExecutor(ThreadLocalRandom.current().nextInt(3), TimeUnit.MILLISECONDS));
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(RELAYS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int r = 0; r < RELAYS; r++) {
+            // small batches, so that the replicas claim many times and race on every claim
+            OutboxRelay relay = new OutboxRelay(outboxRepository, publisher, transactionManager, meterRegistry, tracer,
+                    50, 20, 10000, true, 60000, "relay-" + r);
+            results.add(pool.submit(() -> {
+                start.await();
+                int published = 0;
+                for (int n; (n = relay.relay(TYPE)) > 0; ) {
+                    published += n;
+                }
+                return published;
+            }));
+        }
+        start.countDown();
+        int published = 0;
+        for (Future<Integer> result : results) {
+            published += result.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertThat(published).isEqualTo(ROWS);
+        assertThat(sends).hasSize(ROWS);
+        assertThat(sends.values()).allSatisfy(count -> assertThat(count.get()).isEqualTo(1));
+        assertThat(outboxRepository.findOldestPendingCreatedAt(TYPE)).isNull();
+    }
+
+    private static String messageId(ProducerRecord<String, byte[]> record) {
+        return new String(record.headers().lastHeader(SagaHeaders.MESSAGE_ID).value(), StandardCharsets.UTF_8);
+    }
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration(exclude = KafkaAutoConfiguration.class)
+    @EntityScan(basePackages = "com.example.saga.common.domain")
+    @EnableJpaRepositories(basePackages = "com.example.saga.common.repo")
+    static class TestApplication {
+    }
+}
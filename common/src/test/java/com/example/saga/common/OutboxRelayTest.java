@@ -0,0 +1,92 @@
+package com.example.saga.common;
+
+import com.example.saga.common.bus.EventPublisher;
+import com.example.saga.common.domain.OutboxMessage;
+import com.example.saga.common.repo.OutboxRepository;
+import com.example.saga.common.shard.ShardContext;
+import com.example.saga.common.trace.SagaTracer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxRelayTest {
+
+    private static OutboxRelay relay(OutboxRepository repository, EventPublisher publisher, MeterRegistry registry) {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory(Map.of("meterRegistry", registry));
+        return new OutboxRelay(repository, publisher, mock(PlatformTransactionManager.class),
+                beans.getBeanProvider(MeterRegistry.class), beans.getBeanProvider(SagaTracer.class),
+                500, 100, 10000, false, 60000, "test");
+    }
+
+    private static OutboxMessage row(String aggregateType, long id) {
+        OutboxMessage m = new OutboxMessage();
+        m.setId(id);
+        m.setAggregateType(aggregateType);
+        return m;
+    }
+
+    @Test
+    void sameRowIdFromDifferentProducersGetsDifferentMessageIds() {
+        assertThat(OutboxRelay.messageId(row("order", 42))).isNotEqualTo(OutboxRelay.messageId(row("payment", 42)));
+        assertThat(OutboxRelay.messageId(row("order", 42))).isNotEqualTo(OutboxRelay.messageId(row("inventory", 42)));
+    }
+
+    @Test
+    void sameRowIdOnDifferentShardsGetsDifferentMessageIds() {
+        OutboxMessage m = row("saga", 42);
+
+        String onShard0 = ShardContext.call(0, () -> OutboxRelay.messageId(m));
+        String onShard1 = ShardContext.call(1, () -> OutboxRelay.messageId(m));
+
+        assertThat(onShard0).isNotEqualTo(onShard1);
+    }
+
+    @Test
+    void messageIdIsStableAcrossResends() {
+        assertThat(OutboxRelay.messageId(row("saga", 42))).isEqualTo(OutboxRelay.messageId(row("saga", 42)));
+    }
+
+    @Test
+    void rowsWithoutPayloadAreSkippedAndTheRestOfTheBatchIsPublished() {
+        OutboxRepository repository = mock(OutboxRepository.class);
+        List<OutboxMessage> batch = new ArrayList<>();
+        for (long id = 1; id <= 3; id++) {
+            OutboxMessage m = row("order", id);
+            m.setType("order_created");
+            m.setAggregateId(String.valueOf(id));
+            // the first row was written by a version that still used the "payload" column
+            m.setPayload(id == 1 ? null : "{}".getBytes(StandardCharsets.UTF_8));
+            batch.add(m);
+        }
+        when(repository.findByTypeAndPublishedFalseOrderByCreatedAtAscIdAsc(eq("order_created"), any())).thenReturn(batch);
+        List<ProducerRecord<String, byte[]>> sent = new ArrayList<>();
+        EventPublisher publisher = record -> {
+            sent.add(record);
+            return CompletableFuture.completedFuture(null);
+        };
+        MeterRegistry registry = new SimpleMeterRegistry();
+
+        int published = relay(repository, publisher, registry).relay("order_created");
+
+        assertThat(published).isEqualTo(2);
+        assertThat(sent).extracting(ProducerRecord::key).containsExactly("2", "3");
+        verify(repository).markPublished(List.of(2L, 3L));
+        assertThat(registry.counter("saga.outbox.unreadable", "type", "order_created").count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.saga.common.retry;
+
+import com.example.saga.common.SagaHeaders;
+import com.example.saga.common.bus.EventPublisher;
+import com.example.saga.common.event.EventCodecs;
+import com.example.saga.common.event.OrderCreated;
+import com.example.saga.common.event.SagaEvent;
+import com.example.saga.common.event.SagaEventType;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RetryTopicsTest {
+    private static final String TOPIC = "order_created";
+
+    private final List<ProducerRecord<String, byte[]>> sent = new ArrayList<>();
+    private final EventPublisher publisher = record -> {
+        sent.add(record);
+        return CompletableFuture.completedFuture(null);
+    };
+    private final RetryTopics retryTopics = new RetryTopics(publisher,
+            new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class), 3, 1000, 5, 1000);
+
+    @Test
+    void failedBatchIsSplitAndOnlyTheFailingRecordIsRetried() {
+        List<ConsumerRecord<String, SagaEvent>> batch = List.of(record(1, 1L), record(2, 2L), record(3, 3L));
+        List<List<ConsumerRecord<String, SagaEvent>>> calls = new ArrayList<>();
+
+        long before = System.currentTimeMillis();
+        retryTopics.process(batch, records -> {
+            calls.add(records);
+            if (records.stream().anyMatch(r -> ((OrderCreated) r.value()).getOrderId() == 2L)) {
+                throw new IllegalStateException("boom");
+            }
+        });
+
+        assertThat(calls).extracting(List::size).containsExactly(3, 1, 1, 1);
+        assertThat(sent).hasSize(1);
+        ProducerRecord<String, byte[]> retry = sent.get(0);
+        assertThat(retry.topic()).isEqualTo(RetryTopics.retryTopic(TOPIC, 1));
+        assertThat(retry.key()).isEqualTo("2");
+        assertThat(header(retry.headers(), SagaHeaders.ORIGINAL_TOPIC)).isEqualTo(TOPIC);
+        assertThat(header(retry.headers(), SagaHeaders.ATTEMPT)).isEqualTo("1");
+        assertThat(header(retry.headers(), SagaHeaders.ERROR)).isEqualTo("IllegalStateException: boom");
+        assertThat(header(retry.headers(), SagaHeaders.MESSAGE_ID)).isEqualTo("message-2");
+        assertThat(Long.parseLong(header(retry.headers(), SagaHeaders.RETRY_AT))).isBetween(before + 1000, System.currentTimeMillis() + 1000);
+        assertThat(header(retry.headers(), SagaHeaders.CONTENT_TYPE)).isEqualTo(EventCodecs.JSON.contentType());
+        assertThat(((OrderCreated) EventCodecs.JSON.decode(SagaEventType.ORDER_CREATED, retry.value())).getOrderId()).isEqualTo(2L);
+    }
+
+    @Test
+    void backoffGrowsWithEachAttemptAndTheLastGoesToTheDeadLetter() {
+        assertThat(retryTopics.backoffMs(1)).isEqualTo(1000);
+        assertThat(retryTopics.backoffMs(2)).isEqualTo(5000);
+        assertThat(retryTopics.backoffMs(3)).isEqualTo(25000);
+
+        ConsumerRecord<String, SagaEvent> second = retried(record(1, 1L), 2);
+        retryTopics.process(List.of(second), records -> {
+            throw new IllegalStateException("boom");
+        });
+        assertThat(sent.get(0).topic()).isEqualTo(RetryTopics.retryTopic(TOPIC, 3));
+        assertThat(header(sent.get(0).headers(), SagaHeaders.ATTEMPT)).isEqualTo("3");
+
+        ConsumerRecord<String, SagaEvent> last = retried(record(1, 1L), 3);
+        retryTopics.process(List.of(last), records -> {
+            throw new IllegalStateException("boom");
+        });
+        ProducerRecord<String, byte[]> dead = sent.get(1);
+        assertThat(dead.topic()).isEqualTo(RetryTopics.deadLetterTopic(TOPIC));
+        assertThat(header(dead.headers(), SagaHeaders.ATTEMPT)).isEqualTo("4");
+        assertThat(dead.headers().lastHeader(SagaHeaders.RETRY_AT)).isNull();
+        // only the headers of the latest attempt
+        assertThat(dead.headers().headers(SagaHeaders.ATTEMPT)).hasSize(1);
+    }
+
+    @Test
+    void unreadablePayloadGoesStraightToTheDeadLetterWithItsOriginalBytes() {
+        byte[] garbage = "not an event".getBytes(StandardCharsets.UTF_8);
+        ConsumerRecord<String, SagaEvent> unreadable = new ConsumerRecord<>(TOPIC, 0, 7, "9", null);
+        SerializationUtils.deserializationException(unreadable.headers(), garbage,
+                new DeserializationException("bad", garbage, false, new IllegalArgumentException()), false);
+        List<List<ConsumerRecord<String, SagaEvent>>> calls = new ArrayList<>();
+
+        retryTopics.process(List.of(unreadable, record(8, 8L)), calls::add);
+
+        assertThat(calls).hasSize(1);
+        assertThat(calls.get(0)).extracting(ConsumerRecord::key).containsExactly("8");
+        assertThat(sent).hasSize(1);
+        ProducerRecord<String, byte[]> dead = sent.get(0);
+        assertThat(dead.topic()).isEqualTo(RetryTopics.deadLetterTopic(TOPIC));
+        assertThat(dead.value()).isEqualTo(garbage);
+        assertThat(header(dead.headers(), SagaHeaders.ERROR)).startsWith("PoisonRecordException");
+        assertThat(dead.headers().lastHeader(SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER)).isNull();
+    }
+
+    @Test
+    void transientFailuresAreRethrownForTheContainerToRedeliver() {
+        assertThatThrownBy(() -> retryTopics.process(List.of(record(1, 1L), record(2, 2L)), records -> {
+            throw new QueryTimeoutException("database busy");
+        })).isInstanceOf(QueryTimeoutException.class);
+        assertThat(sent).isEmpty();
+    }
+
+    @Test
+    void backToOriginalKeepsTheMessageIdAndResetsTheAttemptsOnRedrive() {
+        ConsumerRecord<String, byte[]> dead = new ConsumerRecord<>(RetryTopics.deadLetterTopic(TOPIC), 0, 3, "5",
+                "{}".getBytes(StandardCharsets.UTF_8));
+        add(dead.headers(), SagaHeaders.MESSAGE_ID, "message-5");
+        add(dead.headers(), SagaHeaders.ORIGINAL_TOPIC, TOPIC);
+        add(dead.headers(), SagaHeaders.ATTEMPT, "4");
+        add(dead.headers(), SagaHeaders.ERROR, "IllegalStateException: boom");
+        add(dead.headers(), SagaHeaders.RETRY_AT, "123");
+
+        ProducerRecord<String, byte[]> redriven = RetryTopics.backToOriginal(dead, true);
+        assertThat(redriven.topic()).isEqualTo(TOPIC);
+        assertThat(redriven.key()).isEqualTo("5");
+        assertThat(redriven.value()).isEqualTo(dead.value());
+        assertThat(header(redriven.headers(), SagaHeaders.MESSAGE_ID)).isEqualTo("message-5");
+        assertThat(redriven.headers()).extracting(Header::key).containsExactly(SagaHeaders.MESSAGE_ID);
+
+        ProducerRecord<String, byte[]> retried = RetryTopics.backToOriginal(dead, false);
+        assertThat(header(retried.headers(), SagaHeaders.ATTEMPT)).isEqualTo("4");
+        assertThat(retried.headers().lastHeader(SagaHeaders.RETRY_AT)).isNull();
+    }
+
+    private static ConsumerRecord<String, SagaEvent> record(long offset, Long orderId) {
+        ConsumerRecord<String, SagaEvent> record = new ConsumerRecord<>(TOPIC, 0, offset, String.valueOf(orderId),
+                new OrderCreated(orderId, 10.0));
+        add(record.headers(), SagaHeaders.MESSAGE_ID, "message-" + orderId);
+        return record;
+    }
+
+    // the record as consumed back from the original topic after `attempt` retries
+    private static ConsumerRecord<String, SagaEvent> retried(ConsumerRecord<String, SagaEvent> record, int attempt) {
+        add(record.headers(), SagaHeaders.ORIGINAL_TOPIC, TOPIC);
+        add(record.headers(), SagaHeaders.ATTEMPT, String.valueOf(attempt));
+        add(record.headers(), SagaHeaders.ERROR, "IllegalStateException: boom");
+        return record;
+    }
+
+    private static void add(Headers headers, String name, String value) {
+        headers.add(name, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String header(Headers headers, String name) {
+        Header header = headers.lastHeader(name);
+        return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+}
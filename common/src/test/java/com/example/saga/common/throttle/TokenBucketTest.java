@@ -0,0 +1,80 @@
+package com.example.saga.common.throttle;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+    @Test
+    void acquireBeyondTheBurstWaitsForTheShortfall() throws Exception {
+        TokenBucket bucket = new TokenBucket(1000, 10);
+
+        long start = System.nanoTime();
+        bucket.acquire(30);
+        long waited = System.nanoTime() - start;
+
+        // 20 tokens short at 1000/s
+        assertThat(waited).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(15));
+    }
+
+    @Test
+    void aNegativeBalanceDelaysTheNextCallers() throws Exception {
+        TokenBucket bucket = new TokenBucket(100, 10);
+        Thread large = new Thread(() -> {
+            try {
+                bucket.acquire(30);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        large.start();
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (bucket.nanosUntil(1) == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+
+            // 20 tokens in debt at 100/s: about 200 ms before anyone else gets one
+            assertThat(bucket.nanosUntil(1)).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(100));
+            assertThat(bucket.tryAcquire(1)).isFalse();
+        } finally {
+            large.join();
+        }
+    }
+
+    @Test
+    void tryAcquireNeverTakesMoreThanTheBalance() {
+        TokenBucket bucket = new TokenBucket(1, 5);
+
+        assertThat(bucket.tryAcquire(5)).isTrue();
+        assertThat(bucket.tryAcquire(1)).isFalse();
+        assertThat(bucket.nanosUntil(1)).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    @Test
+    void setRateRefillsAtTheNewRateFromThenOn() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 100);
+        assertThat(bucket.tryAcquire(100)).isTrue();
+
+        bucket.setRate(10000);
+        assertThat(bucket.getRate()).isEqualTo(10000);
+        Thread.sleep(20);
+
+        // about 200 tokens at the new rate, capped at the burst; at 1/s it would not have one yet
+        assertThat(bucket.tryAcquire(50)).isTrue();
+    }
+
+    @Test
+    void setRateKeepsWhatWasAccumulatedAtTheOldRate() throws Exception {
+        TokenBucket bucket = new TokenBucket(10000, 100);
+        assertThat(bucket.tryAcquire(100)).isTrue();
+        Thread.sleep(20);
+
+        bucket.setRate(1);
+
+        assertThat(bucket.tryAcquire(50)).isTrue();
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.inventory;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+@SpringBootApplication(scanBasePackages = {"com.example.inventory", "com.example.saga.common"})
+@EnableKafka
+@EnableScheduling
+@EntityScan(basePackages = {"com.example.inventory.domain", "com.example.saga.common.domain"})
+@EnableJpaRepositories(basePackages = {"com.example.inventory.repository", "com.example.saga.common.repo"})
+public class InventoryServiceApplication {
+    public static void main(String[] args) {
+        SpringApplication.run(InventoryServiceApplication.class, args);
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.inventory.config;
+
+import com.example.saga.common.event.SagaEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+
+@Configuration
+public class KafkaConfig {
+    @Value("${saga.kafka.listener-concurrency:3}")
+    private int listenerConcurrency;
+
+    /**
+     * Factory para listeners em lote: cada poll chega como uma {@code List<ConsumerRecord>} e é
+     * processado em uma única transação. Com {@code saga.kafka.listener-concurrency} consumidores por
+     * instância; como os registros são chaveados por saga, a ordem por saga é mantida.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, SagaEvent> batchFactory(ConsumerFactory<String, SagaEvent> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<String, SagaEvent> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setBatchListener(true);
+        factory.setConcurrency(listenerConcurrency);
+        return factory;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.inventory.domain;
+
+import javax.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "inventory_reservations", indexes = @Index(name = "inventory_reservations_saga_id_idx", columnList = "sagaId"))
+public class InventoryReservation {
+    public static final String RESERVED = "RESERVED";
+    public static final String REJECTED = "REJECTED";
+    public static final String RELEASED = "RELEASED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "inventory_reservations_seq")
+    @SequenceGenerator(name = "inventory_reservations_seq", sequenceName = "inventory_reservations_seq", allocationSize = 50)
+    private Long id;
+    private UUID sagaId;
+    private Long orderId;
+    private String status;
+    private Instant createdAt = Instant.now();
+    private Instant updatedAt = Instant.now();
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public UUID getSagaId() { return sagaId; }
+    public void setSagaId(UUID sagaId) { this.sagaId = sagaId; }
+    public Long getOrderId() { return orderId; }
+    public void setOrderId(Long orderId) { this.orderId = orderId; }
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -0,0 +1,177 @@
+package com.example.inventory.kafka;
+
+import com.example.inventory.domain.InventoryReservation;
+import com.example.inventory.repository.InventoryReservationRepository;
+import com.example.saga.common.InboxDeduplicator;
+import com.example.saga.common.OutboxDispatcher;
+import com.example.saga.common.OutboxPayloads;
+import com.example.saga.common.domain.OutboxMessage;
+import com.example.saga.common.event.InventoryFailed;
+import com.example.saga.common.event.InventoryReleaseRequested;
+import com.example.saga.common.event.InventoryRequested;
+import com.example.saga.common.event.InventoryReserved;
+import com.example.saga.common.event.SagaEvent;
+import com.example.saga.common.repo.OutboxRepository;
+import com.example.saga.common.retry.PoisonRecordException;
+import com.example.saga.common.retry.RetryTopics;
+import com.example.saga.common.shard.ShardRouter;
+import com.example.saga.common.shard.ShardTemplate;
+import com.example.saga.common.trace.SagaTracer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Component
+public class InventoryKafkaListener {
+    private final InventoryReservationRepository reservationRepository;
+    private final InboxDeduplicator inboxDeduplicator;
+    private final OutboxRepository outboxRepository;
+    private final OutboxDispatcher outboxDispatcher;
+    private final OutboxPayloads outboxPayloads;
+    private final ShardRouter shardRouter;
+    private final ShardTemplate shardTemplate;
+    private final SagaTracer tracer;
+    private final RetryTopics retryTopics;
+    private final double failureRate;
+    private static final Logger logger = LoggerFactory.getLogger(InventoryKafkaListener.class);
+
+    public InventoryKafkaListener(InventoryReservationRepository reservationRepository, InboxDeduplicator inboxDeduplicator,
+                                  OutboxRepository outboxRepository, OutboxDispatcher outboxDispatcher, OutboxPayloads outboxPayloads,
+                                  ShardRouter shardRouter, ShardTemplate shardTemplate, SagaTracer tracer, RetryTopics retryTopics,
+                                  @Value("${saga.inventory.failure-rate:0.0}") double failureRate) {
+        this.reservationRepository = reservationRepository;
+        this.inboxDeduplicator = inboxDeduplicator;
+        this.outboxRepository = outboxRepository;
+        this.outboxDispatcher = outboxDispatcher;
+        this.outboxPayloads = outboxPayloads;
+        this.shardRouter = shardRouter;
+        this.shardTemplate = shardTemplate;
+        this.tracer = tracer;
+        this.retryTopics = retryTopics;
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * Reserva o estoque dos pedidos do lote e responde com InventoryReserved ou InventoryFailed pelo outbox,
+     * tudo em uma transação por poll (uma por shard com sharding ligado). Um pedido repetido da mesma saga
+     * (retry do orquestrador) é respondido de novo com a reserva existente. Registros que falham vão para os
+     * tópicos de retry ({@link RetryTopics}) sem segurar a partição.
+     */
+    @KafkaListener(topics = "inventory_requested", groupId = "saga-poc-group", containerFactory = "batchFactory")
+    public void onInventoryRequested(List<ConsumerRecord<String, SagaEvent>> records) {
+        tracer.consume(records, "inventory.consume", () -> retryTopics.process(records, batch ->
+                shardTemplate.inTransactionPerShard(batch, r -> shardRouter.shardOf(r.value()), this::processRequests)));
+    }
+
+    private void processRequests(List<ConsumerRecord<String, SagaEvent>> records) {
+        List<ConsumerRecord<String, SagaEvent>> fresh = inboxDeduplicator.filterNew(records, "inventory_requested");
+
+        List<InventoryRequested> requests = new ArrayList<>(fresh.size());
+        Set<UUID> sagaIds = new HashSet<>();
+        for (ConsumerRecord<String, SagaEvent> record : fresh) {
+            if (!(record.value() instanceof InventoryRequested) || ((InventoryRequested) record.value()).getSagaId() == null) {
+                throw new PoisonRecordException("Unexpected inventory_requested payload, messageId=" + InboxDeduplicator.messageId(record));
+            }
+            InventoryRequested event = (InventoryRequested) record.value();
+            requests.add(event);
+            sagaIds.add(event.getSagaId());
+        }
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        Map<UUID, InventoryReservation> bySaga = new HashMap<>();
+        reservationRepository.findBySagaIdIn(sagaIds).forEach(r -> bySaga.put(r.getSagaId(), r));
+
+        List<InventoryReservation> reservations = new ArrayList<>(requests.size());
+        // entities have identity equality, so each reservation is answered once per batch
+        Set<InventoryReservation> answers = new LinkedHashSet<>();
+        for (InventoryRequested event : requests) {
+            InventoryReservation r = bySaga.get(event.getSagaId());
+            if (r == null) {
+                // simulate a stock check; saga.inventory.failure-rate rejects a share of them
+                r = new InventoryReservation();
+                r.setSagaId(event.getSagaId());
+                r.setOrderId(event.getOrderId());
+                r.setStatus(ThreadLocalRandom.current().nextDouble() < failureRate ? InventoryReservation.REJECTED : InventoryReservation.RESERVED);
+                reservations.add(r);
+                bySaga.put(event.getSagaId(), r);
+            }
+            answers.add(r);
+        }
+        reservationRepository.saveAll(reservations);
+
+        List<OutboxMessage> outbox = new ArrayList<>(answers.size());
+        for (InventoryReservation r : answers) {
+            // a reservation released by a compensation stays an answer of "reserved" for the saga
+            SagaEvent answer = InventoryReservation.REJECTED.equals(r.getStatus())
+                    ? new InventoryFailed(r.getSagaId(), r.getOrderId())
+                    : new InventoryReserved(r.getSagaId(), r.getOrderId());
+            OutboxMessage m = new OutboxMessage();
+            m.setAggregateType("inventory");
+            m.setAggregateId(String.valueOf(r.getId()));
+            m.setType(answer.eventType().getName());
+            // keyed by saga so that all events of one saga land on the same partition
+            m.setMessageKey(r.getSagaId().toString());
+            outboxPayloads.write(m, answer);
+            outbox.add(m);
+        }
+        outboxRepository.saveAll(outbox);
+
+        logger.info("{} inventory requests processed, {} new reservations", requests.size(), reservations.size());
+    }
+
+    /**
+     * Compensação: libera a reserva de uma saga que falhou em outro passo. Idempotente.
+     */
+    @KafkaListener(topics = "inventory_release_requested", groupId = "saga-poc-group", containerFactory = "batchFactory")
+    public void onReleaseRequested(List<ConsumerRecord<String, SagaEvent>> records) {
+        tracer.consume(records, "inventory.consume", () -> retryTopics.process(records, batch ->
+                shardTemplate.inTransactionPerShard(batch, r -> shardRouter.shardOf(r.value()), this::processReleases)));
+    }
+
+    private void processReleases(List<ConsumerRecord<String, SagaEvent>> records) {
+        List<ConsumerRecord<String, SagaEvent>> fresh = inboxDeduplicator.filterNew(records, "inventory_release_requested");
+        Set<UUID> sagaIds = new HashSet<>();
+        for (ConsumerRecord<String, SagaEvent> record : fresh) {
+            if (!(record.value() instanceof InventoryReleaseRequested)) {
+                throw new PoisonRecordException("Unexpected inventory_release_requested payload, messageId=" + InboxDeduplicator.messageId(record));
+            }
+            sagaIds.add(((InventoryReleaseRequested) record.value()).getSagaId());
+        }
+        if (sagaIds.isEmpty()) {
+            return;
+        }
+        List<InventoryReservation> released = new ArrayList<>();
+        for (InventoryReservation r : reservationRepository.findBySagaIdIn(sagaIds)) {
+            if (InventoryReservation.RESERVED.equals(r.getStatus())) {
+                r.setStatus(InventoryReservation.RELEASED);
+                r.setUpdatedAt(Instant.now());
+                released.add(r);
+            }
+        }
+        reservationRepository.saveAll(released);
+        logger.info("{} inventory reservations released", released.size());
+    }
+
+    @Scheduled(fixedDelayString = "${saga.outbox.poll-interval-ms:5000}")
+    public void pollOutbox() {
+        outboxDispatcher.poll("inventory_reserved");
+        outboxDispatcher.poll("inventory_failed");
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.inventory.repository;
+
+import com.example.inventory.domain.InventoryReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface InventoryReservationRepository extends JpaRepository<InventoryReservation, Long> {
+    List<InventoryReservation> findBySagaIdIn(Collection<UUID> sagaIds);
+}
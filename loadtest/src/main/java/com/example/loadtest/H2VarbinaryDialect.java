@@ -0,0 +1,17 @@
+package com.example.loadtest;
+
+import org.hibernate.dialect.H2Dialect;
+
+import java.sql.Types;
+
+/**
+ * H2 das aplicações do load test. O Hibernate 5 cria a coluna do {@code UUID} como {@code binary(255)}, que
+ * no H2 2.x completa o valor com zeros, e o {@code UPDATE ... WHERE saga_id = ?} do orquestrador nunca
+ * encontra a saga. Com {@code varbinary} o id fica como foi gravado, como o {@code uuid} do Postgres.
+ */
+public class H2VarbinaryDialect extends H2Dialect {
+
+    public H2VarbinaryDialect() {
+        registerColumnType(Types.BINARY, "varbinary($l)");
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.loadtest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Latências pedido → saga finalizada (a partir do instante agendado do pedido) e dentro do orquestrador
+ * ({@code OrderSaga.createdAt} → {@code updatedAt}), em microssegundos.
+ */
+class LoadReport {
+    static final String COMPLETED_STATUS = "COMPLETED";
+
+    private final long accepted;
+    private final long rejected;
+    private final long errors;
+    private final long dropped;
+    private final long measured;
+    private long[] endToEnd = new long[1024];
+    private long[] saga = new long[1024];
+    private int count;
+    private Instant firstScheduled;
+    private Instant lastCompleted;
+
+    LoadReport(long accepted, long rejected, long errors, long dropped, long measured) {
+        this.accepted = accepted;
+        this.rejected = rejected;
+        this.errors = errors;
+        this.dropped = dropped;
+        this.measured = measured;
+    }
+
+    void record(Instant scheduledAt, Instant sagaCreated, Instant sagaCompleted) {
+        if (count == endToEnd.length) {
+            endToEnd = Arrays.copyOf(endToEnd, count * 2);
+            saga = Arrays.copyOf(saga, count * 2);
+        }
+        endToEnd[count] = Duration.between(scheduledAt, sagaCompleted).toNanos() / 1000;
+        saga[count] = Duration.between(sagaCreated, sagaCompleted).toNanos() / 1000;
+        count++;
+        if (firstScheduled == null || scheduledAt.isBefore(firstScheduled)) {
+            firstScheduled = scheduledAt;
+        }
+        if (lastCompleted == null || sagaCompleted.isAfter(lastCompleted)) {
+            lastCompleted = sagaCompleted;
+        }
+    }
+
+    String format(int rate, int durationSeconds) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%n=== Saga load test: %d orders/s for %ds ===%n", rate, durationSeconds));
+        sb.append(String.format("accepted=%d rejected=%d errors=%d dropped=%d measured=%d completed=%d%n",
+                accepted, rejected, errors, dropped, measured, count));
+        if (count == 0) {
+            return sb.append("no completed sagas").toString();
+        }
+        double seconds = Duration.between(firstScheduled, lastCompleted).toNanos() / 1e9;
+        sb.append(String.format("sustained throughput: %.1f sagas/s%n", count / seconds));
+        sb.append(line("order -> " + COMPLETED_STATUS, endToEnd));
+        sb.append(line("saga created -> " + COMPLETED_STATUS, saga));
+        return sb.toString();
+    }
+
+    private String line(String label, long[] values) {
+        long[] sorted = Arrays.copyOf(values, count);
+        Arrays.sort(sorted);
+        return String.format("%-34s p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms%n", label,
+                percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+                sorted[sorted.length - 1] / 1000.0);
+    }
+
+    private static double percentile(long[] sorted, double q) {
+        int index = (int) Math.ceil(q * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1000.0;
+    }
+}
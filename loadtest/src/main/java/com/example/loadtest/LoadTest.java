@@ -0,0 +1,117 @@
+package com.example.loadtest;
+
+import com.example.inventory.InventoryServiceApplication;
+import com.example.orchestrator.OrchestratorApplication;
+import com.example.order.OrderServiceApplication;
+import com.example.payment.PaymentServiceApplication;
+import com.example.saga.common.event.SagaEventType;
+import com.example.saga.common.trace.InMemorySpanExporter;
+import com.example.saga.common.trace.SpanRecord;
+import com.example.saga.common.trace.TraceBreakdown;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sobe order-service, orchestrator, payment-service e inventory-service na mesma JVM, com um broker Kafka embutido e um
+ * H2 em memória compartilhado, e dispara pedidos em {@code POST /orders} a uma taxa fixa (open loop).
+ * Ao final imprime a vazão sustentada e os percentis da latência pedido → saga em COMPLETED.
+ * Não precisa de Docker.
+ * <p>
+ * Opções: {@code --rate} (pedidos/s, 200), {@code --duration} (s, 60), {@code --warmup} (s, 10),
+ * {@code --drain-timeout} (s, 60), {@code --partitions} (6). Qualquer {@code --saga.*} ou
+ * {@code --spring.*} é repassado às aplicações, ex.: {@code --saga.outbox.wakeup-enabled=false}.
+ * Com {@code --saga.tracing.sample-rate} imprime também o caminho crítico das sagas amostradas. Com
+ * {@code --saga.transport=memory} os serviços conversam pelo barramento em memória e o broker não sobe.
+ */
+public class LoadTest {
+    private static final Logger logger = LoggerFactory.getLogger(LoadTest.class);
+
+    private static final String[] TOPICS = Arrays.stream(SagaEventType.values()).map(SagaEventType::getName).toArray(String[]::new);
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        List<String> appArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--saga.") || arg.startsWith("--spring.") || arg.startsWith("--logging.")) {
+                appArgs.add(arg);
+            } else if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        int rate = Integer.parseInt(options.getOrDefault("rate", "200"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "60"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        int drainTimeout = Integer.parseInt(options.getOrDefault("drain-timeout", "60"));
+        int partitions = Integer.parseInt(options.getOrDefault("partitions", "6"));
+
+        EmbeddedKafkaBroker broker = null;
+        if (!appArgs.contains("--saga.transport=memory")) {
+            broker = new EmbeddedKafkaBroker(1, false, partitions, TOPICS);
+            broker.afterPropertiesSet();
+        }
+        List<ConfigurableApplicationContext> apps = new ArrayList<>();
+        try {
+            List<String> common = new ArrayList<>(appArgs);
+            common.add("--spring.config.name=loadtest");
+            if (broker != null) {
+                common.add("--spring.kafka.bootstrap-servers=" + broker.getBrokersAsString());
+            }
+            common.add("--saga.kafka.partitions=" + partitions);
+
+            // one at a time, so that ddl-auto does not race on the shared schema
+            ConfigurableApplicationContext orchestrator = start(OrchestratorApplication.class, WebApplicationType.NONE, common);
+            apps.add(orchestrator);
+            apps.add(start(PaymentServiceApplication.class, WebApplicationType.NONE, common));
+            apps.add(start(InventoryServiceApplication.class, WebApplicationType.NONE, common));
+            ConfigurableApplicationContext order = start(OrderServiceApplication.class, WebApplicationType.SERVLET, common);
+            apps.add(order);
+
+            int port = ((WebServerApplicationContext) order).getWebServer().getPort();
+            JdbcTemplate jdbcTemplate = orchestrator.getBean(JdbcTemplate.class);
+            logger.info("Applications started, order-service on port {}; {} orders/s for {}s (+{}s warmup)",
+                    port, rate, duration, warmup);
+
+            OpenLoopGenerator generator = new OpenLoopGenerator("http://localhost:" + port + "/orders", jdbcTemplate);
+            LoadReport report = generator.run(rate, warmup, duration, drainTimeout);
+            System.out.println(report.format(rate, duration));
+
+            // with --saga.tracing.sample-rate, every application kept the spans of the sampled sagas
+            List<SpanRecord> spans = new ArrayList<>();
+            apps.forEach(app -> spans.addAll(app.getBean(InMemorySpanExporter.class).spans()));
+            if (!spans.isEmpty()) {
+                System.out.println(TraceBreakdown.report(spans, false));
+            }
+        } finally {
+            Collections.reverse(apps);
+            apps.forEach(ConfigurableApplicationContext::close);
+            if (broker != null) {
+                broker.destroy();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(Class<?> application, WebApplicationType type, List<String> common) {
+        List<String> args = new ArrayList<>(common);
+        if (type == WebApplicationType.SERVLET) {
+            args.add("--server.port=0");
+        }
+        return new SpringApplicationBuilder(application)
+                .web(type)
+                .run(args.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Gera pedidos a uma taxa fixa independente das respostas (open loop): cada pedido tem um instante
+ * agendado e a latência é medida a partir dele, não do envio real, para não esconder filas
+ * (coordinated omission). Pedidos que não cabem em {@code MAX_OUTSTANDING} requisições abertas são
+ * contados como descartados.
+ */
+class OpenLoopGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(OpenLoopGenerator.class);
+    private static final int MAX_OUTSTANDING = 10_000;
+
+    private final URI ordersUri;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService httpExecutor = Executors.newFixedThreadPool(8);
+    private final HttpClient http = HttpClient.newBuilder().executor(httpExecutor).build();
+    private final Semaphore outstanding = new Semaphore(MAX_OUTSTANDING);
+
+    // orderId -> scheduled send time, only for orders sent after the warmup
+    private final Map<Long, Instant> measured = new ConcurrentHashMap<>();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    // 429 from the admission control
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    OpenLoopGenerator(String ordersUrl, JdbcTemplate jdbcTemplate) {
+        this.ordersUri = URI.create(ordersUrl + "?amount=10.0");
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    LoadReport run(int rate, int warmupSeconds, int durationSeconds, int drainTimeoutSeconds) throws InterruptedException {
+        long periodNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long total = (long) rate * (warmupSeconds + durationSeconds);
+        long warmupCount = (long) rate * warmupSeconds;
+
+        Instant startWall = Instant.now();
+        long startNanos = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long due = startNanos + i * periodNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            send(startWall.plusNanos(i * periodNanos), i >= warmupCount);
+        }
+        Instant sendEnd = Instant.now();
+        logger.info("Sent {} orders in {} ms, waiting for sagas to complete", total,
+                Duration.between(startWall, sendEnd).toMillis());
+
+        outstanding.acquire(MAX_OUTSTANDING);
+        waitForCompletion(drainTimeoutSeconds);
+        httpExecutor.shutdownNow();
+        return collect();
+    }
+
+    private void send(Instant scheduledAt, boolean measure) {
+        if (!outstanding.tryAcquire()) {
+            dropped.incrementAndGet();
+            return;
+        }
+        HttpRequest request = HttpRequest.newBuilder(ordersUri).POST(HttpRequest.BodyPublishers.noBody()).build();
+        http.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, ex) -> {
+            try {
+                if (ex == null && response.statusCode() == 429) {
+                    rejected.incrementAndGet();
+                    return;
+                }
+                if (ex != null || response.statusCode() / 100 != 2) {
+                    errors.incrementAndGet();
+                    return;
+                }
+                accepted.incrementAndGet();
+                if (measure) {
+                    measured.put(objectMapper.readTree(response.body()).get("id").asLong(), scheduledAt);
+                }
+            } catch (Exception e) {
+                errors.incrementAndGet();
+            } finally {
+                outstanding.release();
+            }
+        });
+    }
+
+    private void waitForCompletion(int drainTimeoutSeconds) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(drainTimeoutSeconds);
+        while (System.nanoTime() < deadline) {
+            Long completed = jdbcTemplate.queryForObject(
+                    "select count(*) from order_saga where status = ?", Long.class, LoadReport.COMPLETED_STATUS);
+            if (completed != null && completed >= accepted.get()) {
+                return;
+            }
+            Thread.sleep(200);
+        }
+        logger.warn("Drain timeout reached before every accepted order completed");
+    }
+
+    private LoadReport collect() {
+        LoadReport report = new LoadReport(accepted.get(), rejected.get(), errors.get(), dropped.get(), measured.size());
+        jdbcTemplate.query("select order_id, created_at, updated_at from order_saga where status = ?", rs -> {
+            Instant scheduledAt = measured.get(rs.getLong(1));
+            if (scheduledAt != null) {
+                Timestamp created = rs.getTimestamp(2);
+                Timestamp updated = rs.getTimestamp(3);
+                report.record(scheduledAt, created.toInstant(), updated.toInstant());
+            }
+        }, LoadReport.COMPLETED_STATUS);
+        return report;
+    }
+}
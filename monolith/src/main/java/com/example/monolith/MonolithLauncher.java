@@ -0,0 +1,54 @@
+package com.example.monolith;
+
+import com.example.inventory.InventoryServiceApplication;
+import com.example.orchestrator.OrchestratorApplication;
+import com.example.order.OrderServiceApplication;
+import com.example.payment.PaymentServiceApplication;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sobe os quatro serviços em uma JVM só, trocando o Kafka pelo barramento em memória
+ * ({@code saga.transport=memory}). Cada serviço continua em seu próprio contexto Spring, com seu outbox e
+ * inbox no Postgres; só o transporte entre eles muda. O order-service atende HTTP na porta de
+ * {@code server.port} (8080), os outros não abrem porta.
+ * <p>
+ * Qualquer argumento é repassado aos serviços, ex.: {@code --saga.bus.lanes=8}.
+ */
+public class MonolithLauncher {
+    private static final Logger logger = LoggerFactory.getLogger(MonolithLauncher.class);
+
+    public static void main(String[] args) {
+        List<String> common = new ArrayList<>(Arrays.asList(args));
+        common.add(0, "--spring.config.name=monolith");
+
+        List<ConfigurableApplicationContext> apps = new ArrayList<>();
+        // one at a time, so that ddl-auto does not race on the shared schema
+        apps.add(start(OrchestratorApplication.class, WebApplicationType.NONE, common));
+        apps.add(start(PaymentServiceApplication.class, WebApplicationType.NONE, common));
+        apps.add(start(InventoryServiceApplication.class, WebApplicationType.NONE, common));
+        apps.add(start(OrderServiceApplication.class, WebApplicationType.SERVLET, common));
+        logger.info("Saga services started in a single JVM");
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            // order-service first, so that no new saga starts while the others stop
+            Collections.reverse(apps);
+            apps.forEach(ConfigurableApplicationContext::close);
+        }, "monolith-shutdown"));
+    }
+
+    private static ConfigurableApplicationContext start(Class<?> application, WebApplicationType type, List<String> args) {
+        return new SpringApplicationBuilder(application)
+                .web(type)
+                .registerShutdownHook(false)
+                .run(args.toArray(new String[0]));
+    }
+}
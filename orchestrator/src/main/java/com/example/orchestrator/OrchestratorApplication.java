@@ -6,10 +6,10 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
-@SpringBootApplication
+@SpringBootApplication(scanBasePackages = {"com.example.orchestrator", "com.example.saga.common"})
 @EnableScheduling
-@EntityScan(basePackages = {"com.example.orchestrator.saga", "com.example.saga.common.domain"})
-@EnableJpaRepositories(basePackages = {"com.example.orchestrator.saga", "com.example.saga.common.repo"})
+@EntityScan(basePackages = {"com.example.orchestrator.saga", "com.example.orchestrator.replay", "com.example.saga.common.domain"})
+@EnableJpaRepositories(basePackages = {"com.example.orchestrator.saga", "com.example.orchestrator.replay", "com.example.saga.common.repo"})
 public class OrchestratorApplication {
     public static void main(String[] args) {
         SpringApplication.run(OrchestratorApplication.class, args);
@@ -1,38 +1,66 @@
 package com.example.orchestrator.config;
 
+import com.example.saga.common.event.SagaEvent;
+import com.example.saga.common.event.SagaEventType;
+import com.example.saga.common.retry.RetryTopics;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaAdmin;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.stream.Stream;
 
 @Configuration
 public class KafkaConfig {
     @Value("${spring.kafka.bootstrap-servers:localhost:9092}")
     private String bootstrapServers;
 
+    @Value("${saga.kafka.partitions:6}")
+    private int partitions;
+
+    @Value("${saga.kafka.listener-concurrency:3}")
+    private int listenerConcurrency;
+
     @Bean
-    public ProducerFactory<String, String> producerFactory() {
+    public ProducerFactory<String, byte[]> producerFactory() {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
         return new DefaultKafkaProducerFactory<>(configProps);
     }
 
     @Bean
-    public KafkaTemplate<String, String> kafkaTemplate() {
+    public KafkaTemplate<String, byte[]> kafkaTemplate() {
         return new KafkaTemplate<>(producerFactory());
     }
 
+    /**
+     * Factory para listeners em lote: cada poll chega como uma {@code List<ConsumerRecord>} e é
+     * processado em uma única transação. Com {@code saga.kafka.listener-concurrency} consumidores por
+     * instância; como os registros são chaveados por pedido/saga, a ordem por saga é mantida.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, SagaEvent> batchFactory(ConsumerFactory<String, SagaEvent> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<String, SagaEvent> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setBatchListener(true);
+        factory.setConcurrency(listenerConcurrency);
+        return factory;
+    }
+
     @Bean
     public KafkaAdmin kafkaAdmin() {
         Map<String, Object> configs = new HashMap<>();
@@ -40,20 +68,16 @@ public class KafkaConfig {
         return new KafkaAdmin(configs);
     }
 
+    /**
+     * Um tópico por tipo de evento da saga, todos com {@code saga.kafka.partitions} partições, mais os
+     * tópicos de retry e o dead letter de cada um ({@link RetryTopics}).
+     */
     @Bean
-    public NewTopic orderCreatedTopic() {
-        return new NewTopic("order_created", 1, (short) 1);
+    public KafkaAdmin.NewTopics sagaTopics(RetryTopics retryTopics) {
+        NewTopic[] topics = Arrays.stream(SagaEventType.values())
+                .flatMap(t -> Stream.concat(Stream.of(t.getName()), retryTopics.topicsFor(t.getName()).stream()))
+                .map(name -> new NewTopic(name, partitions, (short) 1))
+                .toArray(NewTopic[]::new);
+        return new KafkaAdmin.NewTopics(topics);
     }
-
-    @Bean
-    public NewTopic paymentRequestedTopic() {
-        return new NewTopic("payment_requested", 1, (short) 1);
-    }
-
-    @Bean
-    public NewTopic paymentCompletedProcessedTopic() {
-        return new NewTopic("payment_completed", 1, (short) 1);
-    }
-
 }
-
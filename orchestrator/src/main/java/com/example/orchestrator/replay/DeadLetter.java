@@ -0,0 +1,43 @@
+package com.example.orchestrator.replay;
+
+import java.time.Instant;
+
+/**
+ * Um registro pendente em um tópico de dead letter, exposto pelo {@link DeadLetterController}.
+ */
+public class DeadLetter {
+    private final String topic;
+    private final int partition;
+    private final long offset;
+    private final String key;
+    private final String messageId;
+    private final int attempts;
+    private final String error;
+    private final Instant deadAt;
+    private final String payload;
+
+    DeadLetter(String topic, int partition, long offset, String key, String messageId, int attempts, String error,
+               Instant deadAt, String payload) {
+        this.topic = topic;
+        this.partition = partition;
+        this.offset = offset;
+        this.key = key;
+        this.messageId = messageId;
+        this.attempts = attempts;
+        this.error = error;
+        this.deadAt = deadAt;
+        this.payload = payload;
+    }
+
+    // the original topic, where a re-drive sends the record
+    public String getTopic() { return topic; }
+    public int getPartition() { return partition; }
+    public long getOffset() { return offset; }
+    public String getKey() { return key; }
+    public String getMessageId() { return messageId; }
+    public int getAttempts() { return attempts; }
+    public String getError() { return error; }
+    public Instant getDeadAt() { return deadAt; }
+    // JSON as is, anything else in base64
+    public String getPayload() { return payload; }
+}
@@ -0,0 +1,44 @@
+package com.example.orchestrator.replay;
+
+import com.example.saga.common.event.SagaEventType;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Endpoints administrativos dos dead letters, por tópico da saga (ex.: {@code payment_requested}).
+ */
+@RestController
+@RequestMapping("/admin/dead-letters")
+public class DeadLetterController {
+
+    private final DeadLetterService deadLetterService;
+
+    public DeadLetterController(DeadLetterService deadLetterService) {
+        this.deadLetterService = deadLetterService;
+    }
+
+    @GetMapping("/{topic}")
+    public List<DeadLetter> pending(@PathVariable String topic, @RequestParam(defaultValue = "100") int limit) {
+        return deadLetterService.pending(checked(topic), limit);
+    }
+
+    /**
+     * Devolve ao tópico original os {@code limit} dead letters pendentes mais antigos.
+     */
+    @PostMapping("/{topic}/redrive")
+    public Map<String, Object> redrive(@PathVariable String topic, @RequestParam(defaultValue = "1000") int limit) {
+        return Map.of("topic", topic, "redriven", deadLetterService.redrive(checked(topic), limit));
+    }
+
+    private static String checked(String topic) {
+        if (Arrays.stream(SagaEventType.values()).noneMatch(t -> t.getName().equals(topic))) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown saga topic " + topic);
+        }
+        return topic;
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.orchestrator.replay;
+
+import com.example.saga.common.InboxDeduplicator;
+import com.example.saga.common.SagaHeaders;
+import com.example.saga.common.bus.InMemoryEventBus;
+import com.example.saga.common.event.EventCodecs;
+import com.example.saga.common.retry.RetryTopics;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Inspeção e re-drive dos tópicos de dead letter ({@link RetryTopics}). O que já foi re-enviado fica
+ * marcado pelos offsets do grupo {@code saga-dead-letters}: a listagem mostra só os pendentes e o re-drive
+ * continua de onde o anterior parou. Os registros voltam ao tópico original com o id de mensagem de
+ * sempre e a contagem de tentativas zerada.
+ * <p>
+ * Com {@code saga.transport=memory} não há broker: os dead letters são os da lista do
+ * {@link InMemoryEventBus}, e um re-drive confirmado os tira dela.
+ */
+@Service
+public class DeadLetterService {
+    private static final Logger logger = LoggerFactory.getLogger(DeadLetterService.class);
+    private static final String GROUP_ID = "saga-dead-letters";
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+    private static final long READ_TIMEOUT_MS = 10000;
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final ConsumerFactory<String, byte[]> consumerFactory;
+    private final InMemoryEventBus bus;
+    private final long sendTimeoutMs;
+
+    public DeadLetterService(KafkaTemplate<String, byte[]> kafkaTemplate,
+                             KafkaProperties kafkaProperties,
+                             @Value("${saga.transport:kafka}") String transport,
+                             @Value("${saga.outbox.send-timeout-ms:10000}") long sendTimeoutMs) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.bus = "memory".equals(transport) ? InMemoryEventBus.shared() : null;
+        this.sendTimeoutMs = sendTimeoutMs;
+        Map<String, Object> props = kafkaProperties.buildConsumerProperties();
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, GROUP_ID);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        this.consumerFactory = new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), new ByteArrayDeserializer());
+    }
+
+    /**
+     * Os dead letters pendentes de {@code topic}, até {@code limit}, do mais antigo para o mais novo.
+     */
+    public synchronized List<DeadLetter> pending(String topic, int limit) {
+        if (bus != null) {
+            return bus.deadLetters(RetryTopics.deadLetterTopic(topic), limit).stream()
+                    .map(DeadLetterService::toDeadLetter)
+                    .collect(Collectors.toList());
+        }
+        try (Consumer<String, byte[]> consumer = consumerFactory.createConsumer()) {
+            return readPending(consumer, topic, limit).stream()
+                    .sorted(Comparator.comparingLong(ConsumerRecord::timestamp))
+                    .map(DeadLetterService::toDeadLetter)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Re-envia ao tópico original os {@code limit} dead letters pendentes mais antigos de {@code topic} e os
+     * marca como re-enviados. Retorna quantos foram re-enviados.
+     */
+    public synchronized int redrive(String topic, int limit) {
+        if (bus != null) {
+            return redriveInMemory(topic, limit);
+        }
+        try (Consumer<String, byte[]> consumer = consumerFactory.createConsumer()) {
+            List<ConsumerRecord<String, byte[]>> records = readPending(consumer, topic, limit);
+            if (records.isEmpty()) {
+                return 0;
+            }
+            List<CompletableFuture<?>> sends = new ArrayList<>(records.size());
+            Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+            for (ConsumerRecord<String, byte[]> record : records) {
+                sends.add(kafkaTemplate.send(RetryTopics.backToOriginal(record, true)).completable());
+                // records of a partition come in offset order
+                offsets.put(new TopicPartition(record.topic(), record.partition()), new OffsetAndMetadata(record.offset() + 1));
+            }
+            RetryTopics.await(sends, sendTimeoutMs);
+            // committed only after the acks: a failed re-drive is repeated, and the inbox drops the copies
+            consumer.commitSync(offsets);
+            logger.info("{} dead letters of {} re-driven", records.size(), topic);
+            return records.size();
+        }
+    }
+
+    private int redriveInMemory(String topic, int limit) {
+        List<ConsumerRecord<String, byte[]>> records = bus.deadLetters(RetryTopics.deadLetterTopic(topic), limit);
+        if (records.isEmpty()) {
+            return 0;
+        }
+        List<CompletableFuture<?>> sends = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            sends.add(bus.send(RetryTopics.backToOriginal(record, true)));
+        }
+        RetryTopics.await(sends, sendTimeoutMs);
+        bus.removeDeadLetters(records);
+        logger.info("{} dead letters of {} re-driven", records.size(), topic);
+        return records.size();
+    }
+
+    private List<ConsumerRecord<String, byte[]>> readPending(Consumer<String, byte[]> consumer, String topic, int limit) {
+        String deadLetters = RetryTopics.deadLetterTopic(topic);
+        List<PartitionInfo> infos = consumer.partitionsFor(deadLetters);
+        if (infos == null || infos.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<TopicPartition> partitions = infos.stream()
+                .map(p -> new TopicPartition(deadLetters, p.partition()))
+                .collect(Collectors.toList());
+        consumer.assign(partitions);
+        Map<TopicPartition, Long> end = consumer.endOffsets(partitions);
+        Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(new HashSet<>(partitions));
+        for (TopicPartition partition : partitions) {
+            OffsetAndMetadata offset = committed.get(partition);
+            if (offset != null) {
+                consumer.seek(partition, offset);
+            } else {
+                consumer.seekToBeginning(Collections.singleton(partition));
+            }
+        }
+
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + READ_TIMEOUT_MS;
+        while (records.size() < limit && !atEnd(consumer, end) && System.currentTimeMillis() < deadline) {
+            for (ConsumerRecord<String, byte[]> record : consumer.poll(POLL_TIMEOUT)) {
+                // only what was there when the read started; once full nothing more is taken, so there
+                // are no gaps within a partition
+                if (records.size() < limit && record.offset() < end.get(new TopicPartition(record.topic(), record.partition()))) {
+                    records.add(record);
+                }
+            }
+        }
+        return records;
+    }
+
+    private static boolean atEnd(Consumer<String, byte[]> consumer, Map<TopicPartition, Long> end) {
+        for (Map.Entry<TopicPartition, Long> e : end.entrySet()) {
+            if (consumer.position(e.getKey()) < e.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static DeadLetter toDeadLetter(ConsumerRecord<String, byte[]> record) {
+        String contentType = RetryTopics.header(record, SagaHeaders.CONTENT_TYPE);
+        boolean json = contentType == null || EventCodecs.JSON.contentType().equals(contentType);
+        String payload = record.value() == null ? null
+                : json ? new String(record.value(), StandardCharsets.UTF_8) : Base64.getEncoder().encodeToString(record.value());
+        return new DeadLetter(RetryTopics.originalTopic(record), record.partition(), record.offset(), record.key(),
+                InboxDeduplicator.messageId(record), RetryTopics.attempt(record), RetryTopics.header(record, SagaHeaders.ERROR),
+                Instant.ofEpochMilli(record.timestamp()), payload);
+    }
+}
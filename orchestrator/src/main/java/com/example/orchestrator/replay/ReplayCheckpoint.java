@@ -0,0 +1,52 @@
+package com.example.orchestrator.replay;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Progresso de um replay em um shard: a última chave (em ordem) até a qual tudo foi processado. Um replay
+ * com o mesmo nome retoma daqui.
+ */
+@Entity
+@Table(name = "replay_checkpoint")
+public class ReplayCheckpoint {
+    @Id
+    private String id;
+
+    private String job;
+
+    private Integer shard;
+
+    private String lastKey;
+
+    private Long processed = 0L;
+
+    private Boolean done = false;
+
+    private Instant updatedAt = Instant.now();
+
+    protected ReplayCheckpoint() {
+    }
+
+    public ReplayCheckpoint(String job, int shard) {
+        this.id = id(job, shard);
+        this.job = job;
+        this.shard = shard;
+    }
+
+    public static String id(String job, int shard) {
+        return job + "/" + shard;
+    }
+
+    public String getId() { return id; }
+    public String getJob() { return job; }
+    public Integer getShard() { return shard; }
+    public String getLastKey() { return lastKey; }
+    public void setLastKey(String lastKey) { this.lastKey = lastKey; }
+    public Long getProcessed() { return processed; }
+    public void setProcessed(Long processed) { this.processed = processed; }
+    public Boolean getDone() { return done; }
+    public void setDone(Boolean done) { this.done = done; }
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+}
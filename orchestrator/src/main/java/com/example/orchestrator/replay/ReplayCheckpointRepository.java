@@ -0,0 +1,6 @@
+package com.example.orchestrator.replay;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ReplayCheckpointRepository extends JpaRepository<ReplayCheckpoint, String> {
+}
@@ -0,0 +1,77 @@
+package com.example.orchestrator.replay;
+
+import com.example.orchestrator.saga.SagaStatus;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * Endpoints administrativos do replay. Os replays rodam em segundo plano; a resposta é 202 com o
+ * {@code Location} do job, que informa o progresso. Para retomar um replay interrompido basta repetir a
+ * chamada com o mesmo {@code job} (e o mesmo {@code updatedBefore}, para o mesmo conjunto de sagas).
+ */
+@RestController
+@RequestMapping("/admin/replay")
+public class ReplayController {
+
+    private final ReplayService replayService;
+
+    public ReplayController(ReplayService replayService) {
+        this.replayService = replayService;
+    }
+
+    /**
+     * Reenvia o passo atual das sagas em {@code status} paradas desde {@code updatedBefore} (padrão: agora
+     * menos {@code olderThan}).
+     */
+    @PostMapping("/sagas")
+    public ResponseEntity<ReplayJob> sagas(@RequestParam SagaStatus status,
+                                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant updatedBefore,
+                                           @RequestParam(defaultValue = "PT1M") Duration olderThan,
+                                           @RequestParam(required = false) String job,
+                                           @RequestParam(required = false) Integer rate) {
+        Instant cutoff = updatedBefore != null ? updatedBefore : Instant.now().minus(olderThan);
+        String name = job != null ? job : "sagas-" + status.name().toLowerCase();
+        return accepted(replayService.redriveSagas(name, status, cutoff, rate));
+    }
+
+    /**
+     * Publica de novo as linhas do outbox com id entre {@code fromId} e {@code toId}.
+     */
+    @PostMapping("/outbox")
+    public ResponseEntity<ReplayJob> outbox(@RequestParam long fromId,
+                                            @RequestParam long toId,
+                                            @RequestParam(required = false) String type,
+                                            @RequestParam(required = false) String job,
+                                            @RequestParam(required = false) Integer rate) {
+        String name = job != null ? job : "outbox-" + fromId + "-" + toId + (type != null ? "-" + type : "");
+        return accepted(replayService.republishOutbox(name, fromId, toId, type, rate));
+    }
+
+    @GetMapping
+    public Collection<ReplayJob> jobs() {
+        return replayService.jobs();
+    }
+
+    @GetMapping("/{job}")
+    public ResponseEntity<ReplayJob> job(@PathVariable String job) {
+        return ResponseEntity.of(replayService.job(job));
+    }
+
+    @DeleteMapping("/{job}")
+    public ResponseEntity<ReplayJob> cancel(@PathVariable String job) {
+        return ResponseEntity.of(replayService.cancel(job));
+    }
+
+    private static ResponseEntity<ReplayJob> accepted(ReplayJob job) {
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentContextPath().path("/admin/replay/{job}")
+                        .buildAndExpand(job.getName()).toUri())
+                .body(job);
+    }
+}
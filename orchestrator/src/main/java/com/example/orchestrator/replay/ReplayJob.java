@@ -0,0 +1,57 @@
+package com.example.orchestrator.replay;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Estado de um replay em execução nesta instância, exposto pelo {@link ReplayController}.
+ */
+public class ReplayJob {
+    public enum State { RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    private final String name;
+    private final String kind;
+    private final int ratePerSecond;
+    private final Instant startedAt = Instant.now();
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong affected = new AtomicLong();
+    private volatile State state = State.RUNNING;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    ReplayJob(String name, String kind, int ratePerSecond) {
+        this.name = name;
+        this.kind = kind;
+        this.ratePerSecond = ratePerSecond;
+    }
+
+    void add(long scanned, long affected) {
+        this.scanned.addAndGet(scanned);
+        this.affected.addAndGet(affected);
+    }
+
+    boolean running() {
+        return state == State.RUNNING;
+    }
+
+    synchronized void end(State state, String error) {
+        if (this.state != State.RUNNING) {
+            return;
+        }
+        this.state = state;
+        this.error = error;
+        this.finishedAt = Instant.now();
+    }
+
+    public String getName() { return name; }
+    public String getKind() { return kind; }
+    public int getRatePerSecond() { return ratePerSecond; }
+    public Instant getStartedAt() { return startedAt; }
+    public Instant getFinishedAt() { return finishedAt; }
+    public State getState() { return state; }
+    public String getError() { return error; }
+    // rows read from the cursor and handled, including those of earlier runs of the same job
+    public long getScanned() { return scanned.get(); }
+    // sagas re-driven / messages published
+    public long getAffected() { return affected.get(); }
+}
@@ -0,0 +1,347 @@
+package com.example.orchestrator.replay;
+
+import com.example.orchestrator.saga.SagaStatus;
+import com.example.orchestrator.saga.engine.SagaEngine;
+import com.example.saga.common.OutboxRelay;
+import com.example.saga.common.domain.OutboxMessage;
+import com.example.saga.common.repo.OutboxRepository;
+import com.example.saga.common.shard.ShardContext;
+import com.example.saga.common.shard.ShardRouter;
+import com.example.saga.common.throttle.TokenBucket;
+import com.example.saga.common.threads.VirtualThreads;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Replay e backfill após incidentes, sem depender dos pollers: reenvia o passo atual de sagas paradas
+ * ({@link SagaEngine#redrive}) ou publica de novo um intervalo de ids do outbox ({@link OutboxRelay#republish}).
+ * <p>
+ * As chaves candidatas são lidas em ordem por um cursor forward-only ({@code saga.replay.fetch-size} linhas
+ * por ida ao banco, dentro de uma transação somente leitura), agrupadas em blocos de
+ * {@code saga.replay.chunk-size} e processadas por {@code saga.replay.parallelism} workers, cada bloco em
+ * sua transação, limitadas a {@code rate} linhas por segundo. A leitura espera quando há blocos demais
+ * em andamento, então a memória fica limitada ao que está em voo.
+ * <p>
+ * O checkpoint ({@code replay_checkpoint}, por shard) guarda a última chave de uma sequência contínua de
+ * blocos concluídos; repetir o replay com o mesmo nome retoma dali. Blocos concluídos depois de uma falha
+ * podem ser processados de novo na retomada, o que é inofensivo: os serviços respondem de novo sem repetir
+ * o efeito e o inbox descarta as mensagens já consumidas.
+ */
+@Service
+public class ReplayService implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(ReplayService.class);
+
+    private final SagaEngine sagaEngine;
+    private final OutboxRelay outboxRelay;
+    private final OutboxRepository outboxRepository;
+    private final ReplayCheckpointRepository checkpointRepository;
+    private final ShardRouter shardRouter;
+    private final VirtualThreads virtualThreads;
+    private final MeterRegistry meterRegistry;
+    private final JdbcTemplate streaming;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnly;
+    private final int defaultRate;
+    private final int parallelism;
+    private final int chunkSize;
+    private final Map<String, ReplayJob> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService runners;
+
+    public ReplayService(SagaEngine sagaEngine,
+                         OutboxRelay outboxRelay,
+                         OutboxRepository outboxRepository,
+                         ReplayCheckpointRepository checkpointRepository,
+                         ShardRouter shardRouter,
+                         VirtualThreads virtualThreads,
+                         MeterRegistry meterRegistry,
+                         JdbcTemplate jdbcTemplate,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${saga.replay.rate:10000}") int defaultRate,
+                         @Value("${saga.replay.parallelism:8}") int parallelism,
+                         @Value("${saga.replay.chunk-size:500}") int chunkSize,
+                         @Value("${saga.replay.fetch-size:5000}") int fetchSize) {
+        this.sagaEngine = sagaEngine;
+        this.outboxRelay = outboxRelay;
+        this.outboxRepository = outboxRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.shardRouter = shardRouter;
+        this.virtualThreads = virtualThreads;
+        this.meterRegistry = meterRegistry;
+        // Postgres only streams with a fetch size inside a transaction
+        this.streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streaming.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.defaultRate = defaultRate;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.runners = Executors.newCachedThreadPool(virtualThreads.factory("replay"));
+    }
+
+    /**
+     * Reenvia o passo atual das sagas em {@code status} sem atualização desde {@code updatedBefore}.
+     */
+    public ReplayJob redriveSagas(String name, SagaStatus status, Instant updatedBefore, Integer rate) {
+        Scan scan = (after, sink) -> {
+            StringBuilder sql = new StringBuilder("select saga_id from order_saga where status = ? and updated_at < ?");
+            List<Object> args = new ArrayList<>(List.of(status.name(), Timestamp.from(updatedBefore)));
+            if (after != null) {
+                sql.append(" and saga_id > ?");
+                args.add(UUID.fromString(after));
+            }
+            sql.append(" order by saga_id");
+            streaming.query(sql.toString(), (RowCallbackHandler) rs -> sink.accept(rs.getString(1)), args.toArray());
+        };
+        return start(name, "sagas", rate, scan, keys -> {
+            List<UUID> ids = keys.stream().map(UUID::fromString).collect(Collectors.toList());
+            Integer redriven = transactionTemplate.execute(s -> sagaEngine.redrive(ids, Instant.now()));
+            return redriven == null ? 0 : redriven;
+        });
+    }
+
+    /**
+     * Publica de novo as linhas do outbox com id em {@code [fromId, toId]}, opcionalmente só de um tipo,
+     * já publicadas ou não.
+     */
+    public ReplayJob republishOutbox(String name, long fromId, long toId, String type, Integer rate) {
+        Scan scan = (after, sink) -> {
+            StringBuilder sql = new StringBuilder("select id from outbox where id between ? and ?");
+            List<Object> args = new ArrayList<>(List.of(after != null ? Long.parseLong(after) + 1 : fromId, toId));
+            if (type != null) {
+                sql.append(" and type = ?");
+                args.add(type);
+            }
+            sql.append(" order by id");
+            streaming.query(sql.toString(), (RowCallbackHandler) rs -> sink.accept(String.valueOf(rs.getLong(1))), args.toArray());
+        };
+        return start(name, "outbox", rate, scan, keys -> {
+            List<Long> ids = keys.stream().map(Long::valueOf).collect(Collectors.toList());
+            List<OutboxMessage> messages = new ArrayList<>(outboxRepository.findAllById(ids));
+            messages.sort(Comparator.comparing(OutboxMessage::getId));
+            int published = outboxRelay.republish(messages);
+            if (published < messages.size()) {
+                throw new IllegalStateException((messages.size() - published) + " of " + messages.size()
+                        + " outbox messages were not acknowledged by the broker");
+            }
+            return published;
+        });
+    }
+
+    public Collection<ReplayJob> jobs() {
+        return jobs.values();
+    }
+
+    public Optional<ReplayJob> job(String name) {
+        return Optional.ofNullable(jobs.get(name));
+    }
+
+    /**
+     * Interrompe o replay; os blocos em andamento terminam e o checkpoint fica onde parou.
+     */
+    public Optional<ReplayJob> cancel(String name) {
+        ReplayJob job = jobs.get(name);
+        if (job != null) {
+            job.end(ReplayJob.State.CANCELLED, null);
+        }
+        return Optional.ofNullable(job);
+    }
+
+    @Override
+    public void destroy() {
+        jobs.values().forEach(job -> job.end(ReplayJob.State.CANCELLED, "shutdown"));
+        runners.shutdownNow();
+    }
+
+    private ReplayJob start(String name, String kind, Integer rate, Scan scan, Processor processor) {
+        int ratePerSecond = rate != null && rate > 0 ? rate : defaultRate;
+        ReplayJob job = new ReplayJob(name, kind, ratePerSecond);
+        ReplayJob previous = jobs.merge(name, job, (old, fresh) -> old.running() ? old : fresh);
+        if (previous != job) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Replay " + name + " is already running");
+        }
+        TokenBucket bucket = new TokenBucket(ratePerSecond, Math.max(ratePerSecond, chunkSize));
+        runners.submit(() -> run(job, bucket, scan, processor));
+        logger.info("Replay {} of {} started at {} rows/s", name, kind, ratePerSecond);
+        return job;
+    }
+
+    private void run(ReplayJob job, TokenBucket bucket, Scan scan, Processor processor) {
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, virtualThreads.factory("replay-" + job.getName()));
+        try {
+            for (int shard = 0; shard < shardRouter.count() && job.running(); shard++) {
+                ShardRun shardRun = new ShardRun(job, shard, bucket, processor, workers);
+                ShardContext.run(shard, () -> shardRun.execute(scan));
+            }
+            job.end(ReplayJob.State.COMPLETED, null);
+        } catch (RuntimeException e) {
+            logger.error("Replay {} failed", job.getName(), e);
+            job.end(ReplayJob.State.FAILED, e.toString());
+        } finally {
+            workers.shutdown();
+        }
+        logger.info("Replay {} {}: {} rows scanned, {} affected", job.getName(), job.getState(), job.getScanned(), job.getAffected());
+    }
+
+    /**
+     * Lê, em ordem, as chaves depois de {@code after} (null = do início) e as entrega a {@code sink}.
+     */
+    private interface Scan {
+        void stream(String after, Consumer<String> sink);
+    }
+
+    /**
+     * Processa um bloco de chaves e retorna quantas tiveram efeito.
+     */
+    private interface Processor {
+        int process(List<String> keys);
+    }
+
+    private static class Stopped extends RuntimeException {
+        Stopped() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Replay de um shard: o cursor roda na thread do job e os blocos nos workers.
+     */
+    private class ShardRun {
+        private final ReplayJob job;
+        private final int shard;
+        private final TokenBucket bucket;
+        private final Processor processor;
+        private final ExecutorService workers;
+        private final Semaphore window = new Semaphore(parallelism * 2);
+        // finished chunks waiting for the ones before them: sequence -> (last key, size)
+        private final TreeMap<Long, Object[]> finished = new TreeMap<>();
+        private ReplayCheckpoint checkpoint;
+        private List<String> chunk = new ArrayList<>(chunkSize);
+        private long submitted;
+        private long checkpointed;
+
+        ShardRun(ReplayJob job, int shard, TokenBucket bucket, Processor processor, ExecutorService workers) {
+            this.job = job;
+            this.shard = shard;
+            this.bucket = bucket;
+            this.processor = processor;
+            this.workers = workers;
+        }
+
+        void execute(Scan scan) {
+            checkpoint = checkpointRepository.findById(ReplayCheckpoint.id(job.getName(), shard))
+                    .orElseGet(() -> new ReplayCheckpoint(job.getName(), shard));
+            job.add(checkpoint.getProcessed(), 0);
+            if (Boolean.TRUE.equals(checkpoint.getDone())) {
+                return;
+            }
+            String after = checkpoint.getLastKey();
+            try {
+                readOnly.executeWithoutResult(status -> scan.stream(after, this::accept));
+                submit();
+            } catch (Stopped e) {
+                // cancelled or a chunk failed; the cursor is closed with the transaction
+            } finally {
+                window.acquireUninterruptibly(parallelism * 2);
+                window.release(parallelism * 2);
+            }
+            if (job.running()) {
+                checkpoint.setDone(true);
+                save();
+            }
+        }
+
+        private void accept(String key) {
+            chunk.add(key);
+            if (chunk.size() >= chunkSize) {
+                submit();
+            }
+        }
+
+        private void submit() {
+            if (!job.running()) {
+                throw new Stopped();
+            }
+            if (chunk.isEmpty()) {
+                return;
+            }
+            List<String> keys = chunk;
+            chunk = new ArrayList<>(chunkSize);
+            long seq = submitted++;
+            try {
+                window.acquire();
+                bucket.acquire(keys.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                job.end(ReplayJob.State.CANCELLED, "interrupted");
+                throw new Stopped();
+            }
+            workers.submit(() -> {
+                try {
+                    ShardContext.run(shard, () -> {
+                        int affected = processor.process(keys);
+                        job.add(keys.size(), affected);
+                        meterRegistry.counter("saga.replay.rows", "kind", job.getKind()).increment(keys.size());
+                        done(seq, keys.get(keys.size() - 1), keys.size());
+                    });
+                } catch (RuntimeException e) {
+                    logger.error("Replay {} failed on a chunk of {} rows after key {} (shard {})",
+                            job.getName(), keys.size(), keys.get(0), shard, e);
+                    job.end(ReplayJob.State.FAILED, e.toString());
+                } finally {
+                    window.release();
+                }
+            });
+        }
+
+        /**
+         * Avança o checkpoint até o último bloco de uma sequência contínua de blocos concluídos.
+         */
+        private synchronized void done(long seq, String lastKey, int size) {
+            finished.put(seq, new Object[]{lastKey, size});
+            boolean advanced = false;
+            while (!finished.isEmpty() && finished.firstKey() == checkpointed) {
+                Object[] entry = finished.pollFirstEntry().getValue();
+                checkpoint.setLastKey((String) entry[0]);
+                checkpoint.setProcessed(checkpoint.getProcessed() + (Integer) entry[1]);
+                checkpointed++;
+                advanced = true;
+            }
+            if (advanced) {
+                save();
+            }
+        }
+
+        private synchronized void save() {
+            checkpoint.setUpdatedAt(Instant.now());
+            checkpoint = transactionTemplate.execute(s -> checkpointRepository.save(checkpoint));
+        }
+    }
+}
@@ -1,12 +1,18 @@
 package com.example.orchestrator.saga;
 
+import org.springframework.data.domain.Persistable;
+
 import javax.persistence.*;
 import java.time.Instant;
 import java.util.UUID;
 
 @Entity
-@Table(name = "order_saga")
-public class OrderSaga {
+@Table(name = "order_saga", indexes = {
+        @Index(name = "order_saga_order_id_idx", columnList = "orderId"),
+        @Index(name = "order_saga_status_updated_at_idx", columnList = "status, updatedAt"),
+        @Index(name = "order_saga_next_deadline_idx", columnList = "nextDeadline")
+})
+public class OrderSaga implements Persistable<UUID> {
     @Id
     private UUID sagaId = UUID.randomUUID();
 
@@ -21,10 +27,35 @@ public class OrderSaga {
 
     private Boolean compensating = false;
 
+    // bit per parallel branch of the current step (see SagaJoin)
+    private Integer branchesDone = 0;
+
+    private Integer branchesFailed = 0;
+
     private Instant createdAt = Instant.now();
 
     private Instant updatedAt = Instant.now();
 
+    @Version
+    private Long version = 0L;
+
+    // when the current step times out; null once the saga is finished
+    private Instant nextDeadline;
+
+    // the id is assigned up front, so without this save() would issue a SELECT (merge) for every new saga
+    @Transient
+    private boolean isNew = true;
+
+    @Override
+    public UUID getId() { return sagaId; }
+
+    @Override
+    public boolean isNew() { return isNew; }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() { this.isNew = false; }
+
     public UUID getSagaId() { return sagaId; }
     public void setSagaId(UUID sagaId) { this.sagaId = sagaId; }
     public Long getOrderId() { return orderId; }
@@ -37,9 +68,17 @@ public class OrderSaga {
     public void setRetryCount(Integer retryCount) { this.retryCount = retryCount; }
     public Boolean getCompensating() { return compensating; }
     public void setCompensating(Boolean compensating) { this.compensating = compensating; }
+    public Integer getBranchesDone() { return branchesDone; }
+    public void setBranchesDone(Integer branchesDone) { this.branchesDone = branchesDone; }
+    public Integer getBranchesFailed() { return branchesFailed; }
+    public void setBranchesFailed(Integer branchesFailed) { this.branchesFailed = branchesFailed; }
     public Instant getCreatedAt() { return createdAt; }
     public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
     public Instant getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+    public Instant getNextDeadline() { return nextDeadline; }
+    public void setNextDeadline(Instant nextDeadline) { this.nextDeadline = nextDeadline; }
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
 }
 
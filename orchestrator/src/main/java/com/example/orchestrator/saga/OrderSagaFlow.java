@@ -0,0 +1,63 @@
+package com.example.orchestrator.saga;
+
+import com.example.orchestrator.saga.engine.SagaAction;
+import com.example.orchestrator.saga.engine.SagaDefinition;
+import com.example.orchestrator.saga.engine.SagaJoin;
+import com.example.saga.common.event.InventoryReleaseRequested;
+import com.example.saga.common.event.InventoryRequested;
+import com.example.saga.common.event.OrderCreated;
+import com.example.saga.common.event.PaymentRefundRequested;
+import com.example.saga.common.event.PaymentRequested;
+import com.example.saga.common.event.SagaEventType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Passos da saga de pedido. Para adicionar um passo basta declarar a transição aqui; o listener do
+ * {@link SagaOrchestrator} passa a consumir o tópico do evento automaticamente.
+ * <p>
+ * Pagamento e reserva de estoque são pedidos juntos (IN_PROGRESS) e a saga termina em COMPLETED quando
+ * os dois confirmam. Se um falha, o que já foi concluído é desfeito (estorno / liberação do estoque) e a
+ * saga termina em FAILED. Branches sem resposta em {@code saga.timeouts.step} são pedidas de novo até
+ * {@code saga.timeouts.max-retries} vezes (os serviços respondem de novo sem repetir o efeito); depois
+ * disso o passo é abandonado como se tivesse falhado, e após {@code saga.timeouts.compensation} sem as
+ * respostas restantes a saga termina em FAILED.
+ */
+@Configuration
+public class OrderSagaFlow {
+
+    @Bean
+    public SagaDefinition sagaDefinition(@Value("${saga.timeouts.step:PT30S}") Duration stepTimeout,
+                                         @Value("${saga.timeouts.max-retries:3}") int maxRetries,
+                                         @Value("${saga.timeouts.compensation:PT5M}") Duration compensationWindow) {
+        SagaJoin checkout = SagaJoin.of(SagaStatus.IN_PROGRESS, SagaStatus.COMPLETED, SagaStatus.COMPENSATING, SagaStatus.FAILED,
+                SagaJoin.branch("payment",
+                        context -> context.emit(new PaymentRequested(context.saga().getSagaId(), context.saga().getOrderId())),
+                        SagaEventType.PAYMENT_COMPLETED, SagaEventType.PAYMENT_FAILED,
+                        context -> context.emit(new PaymentRefundRequested(context.saga().getSagaId(), context.saga().getOrderId()))),
+                SagaJoin.branch("inventory",
+                        context -> context.emit(new InventoryRequested(context.saga().getSagaId(), context.saga().getOrderId())),
+                        SagaEventType.INVENTORY_RESERVED, SagaEventType.INVENTORY_FAILED,
+                        context -> context.emit(new InventoryReleaseRequested(context.saga().getSagaId(), context.saga().getOrderId()))));
+
+        return SagaDefinition.builder()
+                .startOn(SagaEventType.ORDER_CREATED, SagaStatus.IN_PROGRESS, context -> {
+                    OrderCreated event = context.event();
+                    context.saga().setOrderId(event.getOrderId());
+                    checkout.requestAll().execute(context);
+                })
+                .parallel(checkout)
+                .timeout(SagaStatus.IN_PROGRESS, stepTimeout, maxRetries, checkout.requestPending(),
+                        SagaStatus.COMPENSATING, checkout.compensateDone())
+                .timeout(SagaStatus.COMPENSATING, compensationWindow, 0, SagaAction.NONE, SagaStatus.FAILED, SagaAction.NONE)
+                // sagas started before the parallel flow still finish on the old single-step path
+                .on(SagaStatus.PAYMENT_REQUESTED, SagaEventType.PAYMENT_COMPLETED, SagaStatus.PAYMENT_COMPLETED, SagaAction.NONE)
+                .timeout(SagaStatus.PAYMENT_REQUESTED, stepTimeout, maxRetries,
+                        context -> context.emit(new PaymentRequested(context.saga().getSagaId(), context.saga().getOrderId())),
+                        SagaStatus.FAILED, SagaAction.NONE)
+                .build();
+    }
+}
@@ -1,10 +1,46 @@
 package com.example.orchestrator.saga;
 
+import com.example.orchestrator.saga.engine.SagaState;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 public interface OrderSagaRepository extends JpaRepository<OrderSaga, UUID> {
+    /**
+     * Só enxerga o shard atual; fora do engine use {@link OrderSagas#findByOrderId}, que vai ao shard do pedido.
+     */
     OrderSaga findByOrderId(Long orderId);
-}
 
+    /**
+     * Lê o estado das sagas sem colocá-las no contexto de persistência. Linhas anteriores à coluna
+     * {@code version} são lidas como versão 0.
+     */
+    @Query("select new com.example.orchestrator.saga.engine.SagaState(s.sagaId, s.orderId, s.status, s.currentStep, " +
+            "s.retryCount, s.compensating, coalesce(s.branchesDone, 0), coalesce(s.branchesFailed, 0), " +
+            "s.createdAt, s.updatedAt, s.nextDeadline, coalesce(s.version, 0L)) " +
+            "from OrderSaga s where s.sagaId in :ids")
+    List<SagaState> findStates(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Grava o estado se ninguém o alterou desde {@code version}. Retorna 0 em caso de conflito.
+     */
+    @Modifying
+    @Query("update OrderSaga s set s.status = :#{#state.status}, s.currentStep = :#{#state.currentStep}, " +
+            "s.retryCount = :#{#state.retryCount}, s.compensating = :#{#state.compensating}, " +
+            "s.branchesDone = :#{#state.branchesDone}, s.branchesFailed = :#{#state.branchesFailed}, " +
+            "s.updatedAt = :#{#state.updatedAt}, s.nextDeadline = :#{#state.nextDeadline}, s.version = :#{#state.version + 1} " +
+            "where s.sagaId = :#{#state.sagaId} and coalesce(s.version, 0L) = :#{#state.version}")
+    int updateIfVersion(@Param("state") SagaState state);
+
+    @Modifying
+    @Query(value = "delete from order_saga where saga_id in (select saga_id from order_saga " +
+            "where status in (:statuses) and updated_at < :cutoff limit :limit)", nativeQuery = true)
+    int deleteFinishedBefore(@Param("statuses") Collection<String> statuses, @Param("cutoff") Instant cutoff,
+                             @Param("limit") int limit);
+}
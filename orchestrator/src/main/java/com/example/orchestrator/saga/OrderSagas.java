@@ -0,0 +1,31 @@
+package com.example.orchestrator.saga;
+
+import com.example.saga.common.shard.ShardContext;
+import com.example.saga.common.shard.ShardRouter;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Buscas de saga por pedido já roteadas para o shard do pedido. Abrem a própria transação, então devem
+ * ser chamadas fora de uma: dentro dela a conexão já está presa ao shard em que foi aberta.
+ */
+@Component
+public class OrderSagas {
+    private final OrderSagaRepository orderSagaRepository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate readOnly;
+
+    public OrderSagas(OrderSagaRepository orderSagaRepository, ShardRouter shardRouter,
+                      PlatformTransactionManager transactionManager) {
+        this.orderSagaRepository = orderSagaRepository;
+        this.shardRouter = shardRouter;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+    }
+
+    public OrderSaga findByOrderId(Long orderId) {
+        return ShardContext.call(shardRouter.shardOf(orderId),
+                () -> readOnly.execute(status -> orderSagaRepository.findByOrderId(orderId)));
+    }
+}
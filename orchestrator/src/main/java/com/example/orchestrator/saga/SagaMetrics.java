@@ -0,0 +1,53 @@
+package com.example.orchestrator.saga;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tempo gasto em cada transição da saga ({@code saga.transition}, com tags {@code from}/{@code to}) e
+ * duração total até o estado final ({@code saga.duration}), ambos com histograma de percentis.
+ * <p>
+ * O tempo de processamento dos listeners já vem do próprio spring-kafka ({@code spring.kafka.listener}).
+ */
+@Component
+public class SagaMetrics {
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> transitions = new ConcurrentHashMap<>();
+    private final Map<SagaStatus, Timer> durations = new ConcurrentHashMap<>();
+
+    public SagaMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Registra uma transição que começou em {@code since} e terminou agora.
+     */
+    public void transition(String from, SagaStatus to, Instant since) {
+        Timer timer = transitions.computeIfAbsent(from + "->" + to, k -> Timer.builder("saga.transition")
+                .tag("from", from)
+                .tag("to", to.name())
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+        record(timer, since);
+    }
+
+    public void finished(SagaStatus status, Instant createdAt) {
+        Timer timer = durations.computeIfAbsent(status, s -> Timer.builder("saga.duration")
+                .tag("status", s.name())
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+        record(timer, createdAt);
+    }
+
+    private static void record(Timer timer, Instant since) {
+        if (since != null) {
+            timer.record(Duration.between(since, Instant.now()).abs());
+        }
+    }
+}
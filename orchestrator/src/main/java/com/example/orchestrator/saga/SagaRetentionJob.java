@@ -0,0 +1,61 @@
+package com.example.orchestrator.saga;
+
+import com.example.saga.common.retention.RetentionJob;
+import com.example.saga.common.shard.ShardTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Remove sagas finalizadas (ver {@link SagaStatus#FINISHED}) que não são atualizadas há mais que
+ * {@code saga.retention.saga}, em lotes limitados.
+ */
+@Component
+@ConditionalOnProperty(name = "saga.retention.enabled", havingValue = "true")
+public class SagaRetentionJob {
+    private static final Logger logger = LoggerFactory.getLogger(SagaRetentionJob.class);
+
+    private final OrderSagaRepository orderSagaRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardTemplate shardTemplate;
+    private final Duration sagaRetention;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final List<String> finished = SagaStatus.FINISHED.stream().map(Enum::name).collect(Collectors.toList());
+
+    public SagaRetentionJob(OrderSagaRepository orderSagaRepository,
+                            PlatformTransactionManager transactionManager,
+                            ShardTemplate shardTemplate,
+                            @Value("${saga.retention.saga:P30D}") Duration sagaRetention,
+                            @Value("${saga.retention.batch-size:5000}") int batchSize,
+                            @Value("${saga.retention.max-batches-per-run:100}") int maxBatchesPerRun) {
+        this.orderSagaRepository = orderSagaRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardTemplate = shardTemplate;
+        this.sagaRetention = sagaRetention;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+    }
+
+    @Scheduled(fixedDelayString = "${saga.retention.interval-ms:60000}")
+    public void purge() {
+        Instant cutoff = Instant.now().minus(sagaRetention);
+        shardTemplate.forEachShard(shard -> {
+            int deleted = RetentionJob.deleteInBatches(transactionTemplate,
+                    () -> orderSagaRepository.deleteFinishedBefore(finished, cutoff, batchSize), batchSize, maxBatchesPerRun);
+            if (deleted > 0) {
+                logger.info("Retention removed {} finished OrderSaga on shard {}", deleted, shard);
+            }
+        });
+    }
+}
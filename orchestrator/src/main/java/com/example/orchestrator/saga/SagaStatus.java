@@ -1,7 +1,12 @@
 package com.example.orchestrator.saga;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 public enum SagaStatus {
     STARTED,
+    // parallel steps requested, waiting for every branch to answer
+    IN_PROGRESS,
     PAYMENT_REQUESTED,
     PAYMENT_COMPLETED,
     PAYMENT_FAILED,
@@ -10,6 +15,12 @@ public enum SagaStatus {
     INVENTORY_FAILED,
     COMPLETED,
     COMPENSATING,
-    FAILED
+    FAILED;
+
+    /**
+     * Status in which a saga is done. PAYMENT_COMPLETED ends sagas started before the parallel
+     * payment/inventory flow.
+     */
+    public static final Set<SagaStatus> FINISHED = EnumSet.of(PAYMENT_COMPLETED, COMPLETED, FAILED);
 }
 
@@ -0,0 +1,11 @@
+package com.example.orchestrator.saga.engine;
+
+/**
+ * Efeito de uma transição: ajusta o estado da saga e/ou emite eventos pelo outbox.
+ */
+@FunctionalInterface
+public interface SagaAction {
+    SagaAction NONE = context -> { };
+
+    void execute(SagaContext context);
+}
@@ -0,0 +1,46 @@
+package com.example.orchestrator.saga.engine;
+
+import com.example.saga.common.OutboxPayloads;
+import com.example.saga.common.domain.OutboxMessage;
+import com.example.saga.common.event.SagaEvent;
+
+import java.util.List;
+
+/**
+ * O que uma {@link SagaAction} enxerga: o estado da saga (já no status de destino), o evento que
+ * disparou a transição (ou {@code null} quando a ação roda por timeout) e onde emitir os próximos eventos.
+ */
+public class SagaContext {
+    private final SagaState saga;
+    private final SagaEvent event;
+    private final List<OutboxMessage> outbox;
+    private final OutboxPayloads outboxPayloads;
+
+    SagaContext(SagaState saga, SagaEvent event, List<OutboxMessage> outbox, OutboxPayloads outboxPayloads) {
+        this.saga = saga;
+        this.event = event;
+        this.outbox = outbox;
+        this.outboxPayloads = outboxPayloads;
+    }
+
+    public SagaState saga() {
+        return saga;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <E extends SagaEvent> E event() {
+        return (E) event;
+    }
+
+    /**
+     * Grava o evento no outbox, na mesma transação da mudança de estado, chaveado pelo id da saga.
+     */
+    public void emit(SagaEvent next) {
+        OutboxMessage m = new OutboxMessage();
+        m.setAggregateType("saga");
+        m.setAggregateId(String.valueOf(saga.getSagaId()));
+        m.setType(next.eventType().getName());
+        outboxPayloads.write(m, next);
+        outbox.add(m);
+    }
+}
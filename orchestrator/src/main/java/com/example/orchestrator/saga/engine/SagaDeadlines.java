@@ -0,0 +1,60 @@
+package com.example.orchestrator.saga.engine;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Prazos das sagas em andamento, em um {@link TimerWheel} em memória. A fonte da verdade é a coluna
+ * {@code next_deadline}; a roda é só o índice que diz quando olhar de novo para uma saga, e é
+ * reconstruída a partir da coluna no startup ({@link SagaTimeoutScheduler}).
+ */
+@Component
+public class SagaDeadlines implements MeterBinder {
+    private final TimerWheel<UUID> wheel;
+
+    public SagaDeadlines(@Value("${saga.timeouts.tick-ms:100}") long tickMs,
+                         @Value("${saga.timeouts.wheel-size:512}") int wheelSize,
+                         @Value("${saga.timeouts.wheel-levels:4}") int levels) {
+        this.wheel = new TimerWheel<>(tickMs, wheelSize, levels, System.currentTimeMillis());
+    }
+
+    public void schedule(UUID sagaId, Instant deadline) {
+        synchronized (wheel) {
+            wheel.schedule(sagaId, deadline.toEpochMilli());
+        }
+    }
+
+    /**
+     * Ids das sagas cujo prazo venceu até {@code now}. Podem vir repetidos ou obsoletos.
+     */
+    public List<UUID> due(Instant now) {
+        List<TimerWheel.Entry<UUID>> expired;
+        synchronized (wheel) {
+            expired = wheel.advance(now.toEpochMilli());
+        }
+        List<UUID> ids = new ArrayList<>(expired.size());
+        expired.forEach(e -> ids.add(e.getKey()));
+        return ids;
+    }
+
+    public int size() {
+        synchronized (wheel) {
+            return wheel.size();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("saga.timeouts.scheduled", this, SagaDeadlines::size)
+                .description("Deadlines held in the timer wheel, including stale ones")
+                .register(registry);
+    }
+}
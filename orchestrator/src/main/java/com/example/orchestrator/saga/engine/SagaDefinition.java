@@ -0,0 +1,166 @@
+package com.example.orchestrator.saga.engine;
+
+import com.example.orchestrator.saga.SagaStatus;
+import com.example.saga.common.event.SagaEventType;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tabela de transições da saga: (status atual, evento) → (próximo status, ação). Eventos de início
+ * criam uma saga nova; os demais precisam carregar o id da saga
+ * ({@link com.example.saga.common.event.SagaScoped}). Os tópicos consumidos pelo orquestrador saem
+ * desta tabela, então um passo novo é só mais uma linha no builder.
+ * <p>
+ * Passos paralelos são declarados com {@link Builder#parallel(SagaJoin)}; as respostas das branches são
+ * tratadas pelo {@link SagaJoin} enquanto a saga estiver em um dos status dele.
+ * <p>
+ * Um status pode ter um {@link Timeout}: se nenhum evento tirar a saga dele no prazo, a ação de retry
+ * roda até {@code maxRetries} vezes e depois a saga vai para {@code exhaustedTo}.
+ */
+public class SagaDefinition {
+    private final Map<SagaEventType, Transition> starts;
+    private final Map<SagaStatus, Map<SagaEventType, Transition>> transitions;
+    private final Map<SagaStatus, Timeout> timeouts;
+    private final Map<SagaStatus, SagaJoin> joins;
+
+    private SagaDefinition(Map<SagaEventType, Transition> starts, Map<SagaStatus, Map<SagaEventType, Transition>> transitions,
+                           Map<SagaStatus, Timeout> timeouts, Map<SagaStatus, SagaJoin> joins) {
+        this.starts = starts;
+        this.transitions = transitions;
+        this.timeouts = timeouts;
+        this.joins = joins;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Transition start(SagaEventType event) {
+        return starts.get(event);
+    }
+
+    public Transition find(SagaStatus from, SagaEventType event) {
+        return transitions.getOrDefault(from, Collections.emptyMap()).get(event);
+    }
+
+    /**
+     * Passo paralelo que trata eventos no status informado, se houver.
+     */
+    public SagaJoin join(SagaStatus status) {
+        return joins.get(status);
+    }
+
+    public Timeout timeout(SagaStatus status) {
+        return timeouts.get(status);
+    }
+
+    public boolean starts(SagaEventType event) {
+        return starts.containsKey(event);
+    }
+
+    /**
+     * Tópicos de todos os eventos que a saga consome.
+     */
+    public String[] topics() {
+        Set<String> topics = new LinkedHashSet<>();
+        starts.keySet().forEach(e -> topics.add(e.getName()));
+        transitions.values().forEach(byEvent -> byEvent.keySet().forEach(e -> topics.add(e.getName())));
+        joins.values().forEach(join -> join.events().forEach(e -> topics.add(e.getName())));
+        return topics.toArray(new String[0]);
+    }
+
+    public static class Transition {
+        private final SagaStatus from;
+        private final SagaEventType event;
+        private final SagaStatus to;
+        private final SagaAction action;
+
+        Transition(SagaStatus from, SagaEventType event, SagaStatus to, SagaAction action) {
+            this.from = from;
+            this.event = event;
+            this.to = to;
+            this.action = action;
+        }
+
+        public SagaStatus getFrom() { return from; }
+        public SagaEventType getEvent() { return event; }
+        public SagaStatus getTo() { return to; }
+        public SagaAction getAction() { return action; }
+    }
+
+    public static class Timeout {
+        private final Duration after;
+        private final int maxRetries;
+        private final SagaAction retry;
+        private final SagaStatus exhaustedTo;
+        private final SagaAction exhausted;
+
+        Timeout(Duration after, int maxRetries, SagaAction retry, SagaStatus exhaustedTo, SagaAction exhausted) {
+            this.after = after;
+            this.maxRetries = maxRetries;
+            this.retry = retry;
+            this.exhaustedTo = exhaustedTo;
+            this.exhausted = exhausted;
+        }
+
+        public Duration getAfter() { return after; }
+        public int getMaxRetries() { return maxRetries; }
+        public SagaAction getRetry() { return retry; }
+        public SagaStatus getExhaustedTo() { return exhaustedTo; }
+        public SagaAction getExhausted() { return exhausted; }
+    }
+
+    public static class Builder {
+        private final Map<SagaEventType, Transition> starts = new EnumMap<>(SagaEventType.class);
+        private final Map<SagaStatus, Map<SagaEventType, Transition>> transitions = new EnumMap<>(SagaStatus.class);
+        private final Map<SagaStatus, Timeout> timeouts = new EnumMap<>(SagaStatus.class);
+        private final Map<SagaStatus, SagaJoin> joins = new EnumMap<>(SagaStatus.class);
+
+        public Builder startOn(SagaEventType event, SagaStatus to, SagaAction action) {
+            if (starts.putIfAbsent(event, new Transition(SagaStatus.STARTED, event, to, action)) != null) {
+                throw new IllegalStateException("Duplicate start transition on " + event);
+            }
+            return this;
+        }
+
+        public Builder on(SagaStatus from, SagaEventType event, SagaStatus to, SagaAction action) {
+            Map<SagaEventType, Transition> byEvent = transitions.computeIfAbsent(from, s -> new EnumMap<>(SagaEventType.class));
+            if (byEvent.putIfAbsent(event, new Transition(from, event, to, action)) != null) {
+                throw new IllegalStateException("Duplicate transition from " + from + " on " + event);
+            }
+            return this;
+        }
+
+        /**
+         * Registra um passo paralelo; a transição que entra em {@code join.getStatus()} deve pedir as
+         * branches com {@link SagaJoin#requestAll()}.
+         */
+        public Builder parallel(SagaJoin join) {
+            for (SagaStatus status : join.statuses()) {
+                if (joins.putIfAbsent(status, join) != null) {
+                    throw new IllegalStateException("Status " + status + " already belongs to another join");
+                }
+            }
+            return this;
+        }
+
+        public Builder timeout(SagaStatus status, Duration after, int maxRetries, SagaAction retry,
+                               SagaStatus exhaustedTo, SagaAction exhausted) {
+            if (SagaStatus.FINISHED.contains(status)) {
+                throw new IllegalArgumentException("Finished status " + status + " cannot time out");
+            }
+            timeouts.put(status, new Timeout(after, maxRetries, retry, exhaustedTo, exhausted));
+            return this;
+        }
+
+        public SagaDefinition build() {
+            return new SagaDefinition(new EnumMap<>(starts), new EnumMap<>(transitions), new EnumMap<>(timeouts),
+                    new EnumMap<>(joins));
+        }
+    }
+}
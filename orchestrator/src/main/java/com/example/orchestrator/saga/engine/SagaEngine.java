@@ -0,0 +1,444 @@
+package com.example.orchestrator.saga.engine;
+
+import com.example.orchestrator.saga.OrderSaga;
+import com.example.orchestrator.saga.OrderSagaRepository;
+import com.example.orchestrator.saga.SagaMetrics;
+import com.example.orchestrator.saga.SagaStatus;
+import com.example.saga.common.InboxDeduplicator;
+import com.example.saga.common.OutboxPayloads;
+import com.example.saga.common.domain.OutboxMessage;
+import com.example.saga.common.event.SagaEvent;
+import com.example.saga.common.event.SagaScoped;
+import com.example.saga.common.event.SagaStatusChanged;
+import com.example.saga.common.repo.OutboxRepository;
+import com.example.saga.common.retry.PoisonRecordException;
+import com.example.saga.common.shard.ShardContext;
+import com.example.saga.common.shard.ShardRouter;
+import com.example.saga.common.trace.TraceScope;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Aplica um lote de eventos à {@link SagaDefinition}, dentro da transação do listener (todos os eventos
+ * do lote são do mesmo shard, ver {@link ShardRouter}):
+ * <ol>
+ *     <li>deduplica o lote pelo inbox;</li>
+ *     <li>busca o estado das sagas no {@link SagaStateCache} e lê as que faltam com uma única query;</li>
+ *     <li>aplica as transições na ordem dos registros (eventos sem transição válida são ignorados);</li>
+ *     <li>insere as sagas novas e grava as alteradas com {@code UPDATE ... WHERE version = ?}.</li>
+ * </ol>
+ * Se a versão mudou (outra réplica, o scheduler de timeouts), a saga é relida e os eventos dela são
+ * reaplicados, até {@code saga.engine.max-retries} vezes; depois disso o lote falha e é reentregue.
+ * O cache e os prazos em {@link SagaDeadlines} só são atualizados após o commit.
+ * <p>
+ * Cada transição grava em {@code next_deadline} o prazo do novo status, se ele tiver timeout;
+ * {@link #expire} trata os prazos vencidos. Toda mudança de status também publica um
+ * {@link SagaStatusChanged} pelo outbox, para os read models fora do orquestrador.
+ */
+@Component
+public class SagaEngine {
+    private static final Logger logger = LoggerFactory.getLogger(SagaEngine.class);
+
+    private final SagaDefinition definition;
+    private final SagaStateCache cache;
+    private final SagaDeadlines deadlines;
+    private final OrderSagaRepository orderSagaRepository;
+    private final OutboxRepository outboxRepository;
+    private final OutboxPayloads outboxPayloads;
+    private final InboxDeduplicator inboxDeduplicator;
+    private final ShardRouter shardRouter;
+    private final SagaMetrics sagaMetrics;
+    private final MeterRegistry meterRegistry;
+    private final Counter conflicts;
+    private final int maxRetries;
+
+    public SagaEngine(SagaDefinition definition,
+                      SagaStateCache cache,
+                      SagaDeadlines deadlines,
+                      OrderSagaRepository orderSagaRepository,
+                      OutboxRepository outboxRepository,
+                      OutboxPayloads outboxPayloads,
+                      InboxDeduplicator inboxDeduplicator,
+                      ShardRouter shardRouter,
+                      SagaMetrics sagaMetrics,
+                      MeterRegistry meterRegistry,
+                      @Value("${saga.engine.max-retries:3}") int maxRetries) {
+        this.definition = definition;
+        this.cache = cache;
+        this.deadlines = deadlines;
+        this.orderSagaRepository = orderSagaRepository;
+        this.outboxRepository = outboxRepository;
+        this.outboxPayloads = outboxPayloads;
+        this.inboxDeduplicator = inboxDeduplicator;
+        this.shardRouter = shardRouter;
+        this.sagaMetrics = sagaMetrics;
+        this.meterRegistry = meterRegistry;
+        this.conflicts = meterRegistry.counter("saga.engine.version.conflicts");
+        this.maxRetries = maxRetries;
+    }
+
+    public void handle(List<ConsumerRecord<String, SagaEvent>> records) {
+        Set<ConsumerRecord<String, SagaEvent>> fresh = freshRecords(records);
+
+        List<Step> started = new ArrayList<>();
+        Map<UUID, List<ConsumerRecord<String, SagaEvent>>> bySaga = new LinkedHashMap<>();
+        for (ConsumerRecord<String, SagaEvent> record : records) {
+            if (!fresh.contains(record)) {
+                continue;
+            }
+            SagaEvent event = record.value();
+            // rolls the batch back, so the inbox does not keep a record that was never applied
+            if (event == null) {
+                throw new PoisonRecordException("Unreadable " + record.topic() + " payload, messageId=" + InboxDeduplicator.messageId(record));
+            } else if (definition.starts(event.eventType())) {
+                // the id carries the shard this batch runs on, where the saga will live
+                UUID sagaId = shardRouter.newSagaId(ShardContext.current());
+                // the saga's events continue the trace of the order that started it
+                TraceScope.link(record.key(), sagaId.toString());
+                started.add(apply(SagaState.started(sagaId, Instant.now()), Collections.singletonList(record)));
+            } else if (event instanceof SagaScoped && ((SagaScoped) event).getSagaId() != null) {
+                bySaga.computeIfAbsent(((SagaScoped) event).getSagaId(), id -> new ArrayList<>()).add(record);
+            } else {
+                throw new PoisonRecordException("No saga id in " + record.topic() + ", messageId=" + InboxDeduplicator.messageId(record));
+            }
+        }
+
+        List<Step> updated = new ArrayList<>(bySaga.size());
+        if (!bySaga.isEmpty()) {
+            Map<UUID, SagaState> states = load(bySaga.keySet());
+            for (Map.Entry<UUID, List<ConsumerRecord<String, SagaEvent>>> e : bySaga.entrySet()) {
+                SagaState state = states.get(e.getKey());
+                if (state == null) {
+                    logger.warn("Saga {} not found, {} events ignored", e.getKey(), e.getValue().size());
+                    continue;
+                }
+                updated.add(apply(state, e.getValue()));
+            }
+        }
+
+        List<Step> written = new ArrayList<>(started.size() + updated.size());
+        List<OrderSaga> inserts = new ArrayList<>(started.size());
+        for (Step step : started) {
+            inserts.add(step.state.toEntity());
+            written.add(step);
+        }
+        orderSagaRepository.saveAll(inserts);
+        for (Step step : updated) {
+            List<ConsumerRecord<String, SagaEvent>> events = bySaga.get(step.state.getSagaId());
+            written.add(write(step, reloaded -> apply(reloaded, events)));
+        }
+        int emitted = finish(written);
+        logger.debug("{} sagas started, {} updated, {} events emitted", inserts.size(), updated.size(), emitted);
+    }
+
+    /**
+     * Trata os prazos vencidos das sagas informadas: enquanto houver tentativas, incrementa
+     * {@code retryCount} e roda a ação de retry do status (ex.: reenviar o pedido pelo outbox); depois disso
+     * move a saga para o status de esgotamento. Ids obsoletos (a saga já avançou ou o prazo mudou) são
+     * ignorados. Precisa rodar dentro de uma transação.
+     */
+    public void expire(Collection<UUID> sagaIds, Instant now) {
+        List<Step> written = new ArrayList<>();
+        for (SagaState state : load(sagaIds).values()) {
+            Step step = timeout(state, now);
+            if (step.changed()) {
+                written.add(write(step, reloaded -> timeout(reloaded, now)));
+            }
+        }
+        int emitted = finish(written);
+        logger.debug("{} saga timeouts handled, {} events emitted", written.size(), emitted);
+    }
+
+    /**
+     * Reenvio manual (replay): roda de novo a ação de retry do status atual das sagas, como um timeout, mas
+     * zera {@code retryCount} e rearma o prazo em vez de consumir uma tentativa. Sagas finalizadas ou em
+     * status sem timeout são ignoradas. Retorna quantas foram reenviadas. Precisa rodar dentro de uma
+     * transação.
+     */
+    public int redrive(Collection<UUID> sagaIds, Instant now) {
+        List<Step> written = new ArrayList<>();
+        for (SagaState state : load(sagaIds).values()) {
+            Step step = redriven(state, now);
+            if (step.changed()) {
+                written.add(write(step, reloaded -> redriven(reloaded, now)));
+            }
+        }
+        int emitted = finish(written);
+        logger.debug("{} sagas re-driven, {} events emitted", written.size(), emitted);
+        return written.size();
+    }
+
+    private int finish(List<Step> written) {
+        List<OutboxMessage> outbox = new ArrayList<>();
+        for (Step step : written) {
+            outbox.addAll(step.outbox);
+            if (!step.transitions.isEmpty()) {
+                // emitted after the write so that it carries the version that was stored
+                SagaState saga = step.state;
+                new SagaContext(saga, null, outbox, outboxPayloads).emit(new SagaStatusChanged(saga.getSagaId(), saga.getOrderId(),
+                        saga.getStatus().name(), SagaStatus.FINISHED.contains(saga.getStatus()), saga.getVersion()));
+            }
+        }
+        outboxRepository.saveAll(outbox);
+
+        written.forEach(this::recordMetrics);
+        afterCommit(written);
+        return outbox.size();
+    }
+
+    private Set<ConsumerRecord<String, SagaEvent>> freshRecords(List<ConsumerRecord<String, SagaEvent>> records) {
+        Map<String, List<ConsumerRecord<String, SagaEvent>>> byTopic = new LinkedHashMap<>();
+        for (ConsumerRecord<String, SagaEvent> record : records) {
+            byTopic.computeIfAbsent(record.topic(), t -> new ArrayList<>()).add(record);
+        }
+        Set<ConsumerRecord<String, SagaEvent>> fresh = Collections.newSetFromMap(new IdentityHashMap<>());
+        byTopic.forEach((topic, batch) -> fresh.addAll(inboxDeduplicator.filterNew(batch, topic)));
+        return fresh;
+    }
+
+    private Map<UUID, SagaState> load(Collection<UUID> sagaIds) {
+        Map<UUID, SagaState> states = new LinkedHashMap<>();
+        List<UUID> missing = new ArrayList<>();
+        for (UUID id : sagaIds) {
+            SagaState cached = cache.get(id);
+            if (cached != null) {
+                states.put(id, cached);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            orderSagaRepository.findStates(missing).forEach(s -> states.put(s.getSagaId(), s));
+        }
+        return states;
+    }
+
+    private Step write(Step step, Function<SagaState, Step> reapply) {
+        for (int attempt = 0; ; attempt++) {
+            if (!step.changed() || orderSagaRepository.updateIfVersion(step.state) == 1) {
+                if (step.changed()) {
+                    step.state.setVersion(step.state.getVersion() + 1);
+                }
+                return step;
+            }
+            conflicts.increment();
+            UUID sagaId = step.state.getSagaId();
+            cache.evict(sagaId);
+            if (attempt >= maxRetries) {
+                throw new OptimisticLockingFailureException("Saga " + sagaId + " kept changing after " + maxRetries + " retries");
+            }
+            List<SagaState> reloaded = orderSagaRepository.findStates(Collections.singletonList(sagaId));
+            if (reloaded.isEmpty()) {
+                throw new OptimisticLockingFailureException("Saga " + sagaId + " was deleted concurrently");
+            }
+            logger.debug("Version conflict on saga {}, reapplying", sagaId);
+            step = reapply.apply(reloaded.get(0));
+        }
+    }
+
+    /**
+     * Aplica os eventos, em ordem, a uma cópia do estado. A versão continua sendo a lida do banco.
+     */
+    private Step apply(SagaState base, List<ConsumerRecord<String, SagaEvent>> events) {
+        Step step = new Step(base.copy());
+        for (ConsumerRecord<String, SagaEvent> record : events) {
+            SagaEvent event = record.value();
+            SagaStatus from = step.state.getStatus();
+            SagaDefinition.Transition t = from == SagaStatus.STARTED && definition.starts(event.eventType())
+                    ? definition.start(event.eventType())
+                    : definition.find(from, event.eventType());
+            if (t == null) {
+                applyToJoin(step, event);
+                continue;
+            }
+            // the start of a saga is timed from when its triggering event was produced
+            Instant since = from == SagaStatus.STARTED ? Instant.ofEpochMilli(record.timestamp()) : step.state.getUpdatedAt();
+            moveTo(step, t.getTo(), since, Instant.now());
+            t.getAction().execute(new SagaContext(step.state, event, step.outbox, outboxPayloads));
+        }
+        return step;
+    }
+
+    private void applyToJoin(Step step, SagaEvent event) {
+        SagaStatus from = step.state.getStatus();
+        SagaJoin join = definition.join(from);
+        if (join == null || !join.events().contains(event.eventType())) {
+            // usually a late redelivery after the saga has moved on
+            logger.warn("No transition from {} on {} for saga {}, event ignored", from, event.eventType(), step.state.getSagaId());
+            return;
+        }
+        SagaStatus to = join.onEvent(new SagaContext(step.state, event, step.outbox, outboxPayloads), event.eventType());
+        if (to == null) {
+            logger.debug("Branch of saga {} already answered, {} ignored", step.state.getSagaId(), event.eventType());
+            return;
+        }
+        step.modified = true;
+        if (to != from) {
+            moveTo(step, to, step.state.getUpdatedAt(), Instant.now());
+        }
+    }
+
+    /**
+     * Muda o status e arma o prazo do novo status. Entrar em um passo paralelo zera o resultado das branches.
+     */
+    private void moveTo(Step step, SagaStatus to, Instant since, Instant now) {
+        SagaState saga = step.state;
+        step.transitions.add(new Applied(saga.getStatus(), to, since));
+        SagaJoin join = definition.join(to);
+        if (join != null && join.getStatus() == to) {
+            saga.setBranchesDone(0);
+            saga.setBranchesFailed(0);
+        }
+        saga.setStatus(to);
+        saga.setCurrentStep(to.name());
+        saga.setUpdatedAt(now);
+        saga.setRetryCount(0);
+        saga.setNextDeadline(deadline(to, now));
+    }
+
+    private Step timeout(SagaState base, Instant now) {
+        Step step = new Step(base.copy());
+        SagaState saga = step.state;
+        SagaDefinition.Timeout t = definition.timeout(saga.getStatus());
+        if (t == null || saga.getNextDeadline() == null || saga.getNextDeadline().isAfter(now)) {
+            return step;
+        }
+        SagaStatus from = saga.getStatus();
+        int retries = saga.getRetryCount() == null ? 0 : saga.getRetryCount();
+        if (retries < t.getMaxRetries()) {
+            saga.setRetryCount(retries + 1);
+            saga.setNextDeadline(deadline(from, now));
+            t.getRetry().execute(new SagaContext(saga, null, step.outbox, outboxPayloads));
+            step.timedOut = "retry";
+            logger.info("Saga {} timed out in {}, retry {}/{}", saga.getSagaId(), from, retries + 1, t.getMaxRetries());
+        } else {
+            moveTo(step, t.getExhaustedTo(), saga.getUpdatedAt(), now);
+            t.getExhausted().execute(new SagaContext(saga, null, step.outbox, outboxPayloads));
+            step.timedOut = "exhausted";
+            logger.warn("Saga {} timed out in {} after {} retries, moved to {}", saga.getSagaId(), from, retries, t.getExhaustedTo());
+        }
+        step.timedOutIn = from;
+        return step;
+    }
+
+    private Step redriven(SagaState base, Instant now) {
+        Step step = new Step(base.copy());
+        SagaState saga = step.state;
+        SagaDefinition.Timeout t = definition.timeout(saga.getStatus());
+        if (t == null || SagaStatus.FINISHED.contains(saga.getStatus())) {
+            return step;
+        }
+        saga.setRetryCount(0);
+        saga.setNextDeadline(deadline(saga.getStatus(), now));
+        t.getRetry().execute(new SagaContext(saga, null, step.outbox, outboxPayloads));
+        step.modified = true;
+        return step;
+    }
+
+    private Instant deadline(SagaStatus status, Instant now) {
+        SagaDefinition.Timeout t = definition.timeout(status);
+        // millisecond precision so that the value survives the round trip through the database unchanged
+        return t == null ? null : now.plus(t.getAfter()).truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    private void recordMetrics(Step step) {
+        if (step.timedOut != null) {
+            meterRegistry.counter("saga.timeouts", "status", step.timedOutIn.name(), "outcome", step.timedOut).increment();
+        }
+        for (Applied t : step.transitions) {
+            sagaMetrics.transition(t.from.name(), t.to, t.since);
+        }
+        if (step.changed() && SagaStatus.FINISHED.contains(step.state.getStatus())) {
+            sagaMetrics.finished(step.state.getStatus(), step.state.getCreatedAt());
+        }
+    }
+
+    private void afterCommit(List<Step> steps) {
+        List<SagaState> states = new ArrayList<>(steps.size());
+        for (Step step : steps) {
+            if (step.changed()) {
+                states.add(step.state);
+            }
+        }
+        if (states.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            states.forEach(this::remember);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    states.forEach(SagaEngine.this::remember);
+                } else {
+                    states.forEach(s -> cache.evict(s.getSagaId()));
+                }
+            }
+        });
+    }
+
+    private void remember(SagaState state) {
+        if (state.getNextDeadline() != null) {
+            deadlines.schedule(state.getSagaId(), state.getNextDeadline());
+        }
+        if (SagaStatus.FINISHED.contains(state.getStatus())) {
+            cache.evict(state.getSagaId());
+        } else {
+            cache.put(state);
+        }
+    }
+
+    private static class Step {
+        private final SagaState state;
+        private final List<OutboxMessage> outbox = new ArrayList<>();
+        private final List<Applied> transitions = new ArrayList<>();
+        // set when the step comes from a timeout rather than an event
+        private String timedOut;
+        private SagaStatus timedOutIn;
+        // branch results changed without a status change
+        private boolean modified;
+
+        Step(SagaState state) {
+            this.state = state;
+        }
+
+        boolean changed() {
+            return !transitions.isEmpty() || timedOut != null || modified;
+        }
+    }
+
+    private static class Applied {
+        private final SagaStatus from;
+        private final SagaStatus to;
+        private final Instant since;
+
+        Applied(SagaStatus from, SagaStatus to, Instant since) {
+            this.from = from;
+            this.to = to;
+            this.since = since;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.orchestrator.saga.engine;
+
+import com.example.orchestrator.saga.SagaStatus;
+import com.example.saga.common.event.SagaEventType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Passo paralelo (fan-out/join): todas as branches são pedidas ao mesmo tempo e a saga fica em
+ * {@code status} até cada uma responder, então a latência do passo é a da branch mais lenta e não a soma.
+ * <ul>
+ *     <li>todas com sucesso → {@code completedTo};</li>
+ *     <li>a primeira falha → {@code compensatingTo}, compensando as branches já concluídas; as que
+ *     concluírem depois também são compensadas, e quando todas tiverem respondido → {@code failedTo}.</li>
+ * </ul>
+ * O resultado de cada branch fica em dois bitmaps da saga ({@code branchesDone}/{@code branchesFailed}), de
+ * modo que respostas repetidas (reentregas, respostas a um retry) são ignoradas.
+ */
+public class SagaJoin {
+    private static final int MAX_BRANCHES = 31;
+
+    private final SagaStatus status;
+    private final SagaStatus completedTo;
+    private final SagaStatus compensatingTo;
+    private final SagaStatus failedTo;
+    private final List<Branch> branches;
+    private final int all;
+    private final Set<SagaEventType> events = EnumSet.noneOf(SagaEventType.class);
+
+    private SagaJoin(SagaStatus status, SagaStatus completedTo, SagaStatus compensatingTo, SagaStatus failedTo, List<Branch> branches) {
+        this.status = status;
+        this.completedTo = completedTo;
+        this.compensatingTo = compensatingTo;
+        this.failedTo = failedTo;
+        this.branches = branches;
+        this.all = (1 << branches.size()) - 1;
+        branches.forEach(b -> events.addAll(Arrays.asList(b.succeeded, b.failed)));
+    }
+
+    public static SagaJoin of(SagaStatus status, SagaStatus completedTo, SagaStatus compensatingTo, SagaStatus failedTo,
+                              Branch... branches) {
+        if (branches.length == 0 || branches.length > MAX_BRANCHES) {
+            throw new IllegalArgumentException("A join needs between 1 and " + MAX_BRANCHES + " branches");
+        }
+        List<Branch> indexed = new ArrayList<>(branches.length);
+        for (int i = 0; i < branches.length; i++) {
+            indexed.add(branches[i].withIndex(i));
+        }
+        return new SagaJoin(status, completedTo, compensatingTo, failedTo, Collections.unmodifiableList(indexed));
+    }
+
+    /**
+     * @param request     emite o pedido da branch
+     * @param succeeded   evento de resposta positiva
+     * @param failed      evento de resposta negativa
+     * @param compensate  desfaz a branch concluída
+     */
+    public static Branch branch(String name, SagaAction request, SagaEventType succeeded, SagaEventType failed, SagaAction compensate) {
+        return new Branch(name, -1, request, succeeded, failed, compensate);
+    }
+
+    public SagaStatus getStatus() { return status; }
+
+    /**
+     * Status em que a saga ainda aceita respostas das branches.
+     */
+    Set<SagaStatus> statuses() {
+        return EnumSet.of(status, compensatingTo, failedTo);
+    }
+
+    Set<SagaEventType> events() {
+        return events;
+    }
+
+    /**
+     * Pede todas as branches; usada na transição que entra no passo.
+     */
+    public SagaAction requestAll() {
+        return context -> branches.forEach(b -> b.request.execute(context));
+    }
+
+    /**
+     * Pede de novo as branches que ainda não responderam; usada como retry do timeout.
+     */
+    public SagaAction requestPending() {
+        return context -> {
+            int resolved = context.saga().getBranchesDone() | context.saga().getBranchesFailed();
+            branches.stream().filter(b -> (resolved & b.bit()) == 0).forEach(b -> b.request.execute(context));
+        };
+    }
+
+    /**
+     * Compensa as branches já concluídas; usada quando o passo é abandonado (falha ou timeout).
+     */
+    public SagaAction compensateDone() {
+        return context -> {
+            int done = context.saga().getBranchesDone();
+            context.saga().setCompensating(true);
+            branches.stream().filter(b -> (done & b.bit()) != 0).forEach(b -> b.compensate.execute(context));
+        };
+    }
+
+    /**
+     * Registra a resposta de uma branch e retorna o status em que a saga deve ficar, ou {@code null} se a
+     * branch já tinha respondido.
+     */
+    SagaStatus onEvent(SagaContext context, SagaEventType event) {
+        SagaState saga = context.saga();
+        Branch branch = branches.stream()
+                .filter(b -> b.succeeded == event || b.failed == event)
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(event + " is not part of this join"));
+        int bit = branch.bit();
+        if (((saga.getBranchesDone() | saga.getBranchesFailed()) & bit) != 0) {
+            return null;
+        }
+        boolean succeeded = event == branch.succeeded;
+
+        SagaStatus current = saga.getStatus();
+        if (current == status) {
+            if (succeeded) {
+                saga.setBranchesDone(saga.getBranchesDone() | bit);
+                return saga.getBranchesDone() == all ? completedTo : status;
+            }
+            compensateDone().execute(context);
+            saga.setBranchesFailed(saga.getBranchesFailed() | bit);
+            return resolved(saga) ? failedTo : compensatingTo;
+        }
+
+        // the step was already abandoned: whatever succeeds now has to be undone
+        if (succeeded) {
+            saga.setBranchesDone(saga.getBranchesDone() | bit);
+            branch.compensate.execute(context);
+        } else {
+            saga.setBranchesFailed(saga.getBranchesFailed() | bit);
+        }
+        return current == compensatingTo && resolved(saga) ? failedTo : current;
+    }
+
+    private boolean resolved(SagaState saga) {
+        return (saga.getBranchesDone() | saga.getBranchesFailed()) == all;
+    }
+
+    public static class Branch {
+        private final String name;
+        private final int index;
+        private final SagaAction request;
+        private final SagaEventType succeeded;
+        private final SagaEventType failed;
+        private final SagaAction compensate;
+
+        private Branch(String name, int index, SagaAction request, SagaEventType succeeded, SagaEventType failed, SagaAction compensate) {
+            this.name = name;
+            this.index = index;
+            this.request = request;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.compensate = compensate;
+        }
+
+        private Branch withIndex(int index) {
+            return new Branch(name, index, request, succeeded, failed, compensate);
+        }
+
+        private int bit() {
+            return 1 << index;
+        }
+
+        public String getName() { return name; }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.orchestrator.saga.engine;
+
+import com.example.orchestrator.saga.OrderSaga;
+import com.example.orchestrator.saga.SagaStatus;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Cópia desanexada de uma {@link OrderSaga}, usada pelo {@link SagaEngine} e guardada no
+ * {@link SagaStateCache}. {@code version} é a versão lida do banco, usada na gravação condicional.
+ */
+public class SagaState {
+    private final UUID sagaId;
+    private Long orderId;
+    private SagaStatus status;
+    private String currentStep;
+    private Integer retryCount;
+    private Boolean compensating;
+    private int branchesDone;
+    private int branchesFailed;
+    private final Instant createdAt;
+    private Instant updatedAt;
+    private Instant nextDeadline;
+    private long version;
+
+    public SagaState(UUID sagaId, Long orderId, SagaStatus status, String currentStep, Integer retryCount,
+                     Boolean compensating, Integer branchesDone, Integer branchesFailed, Instant createdAt,
+                     Instant updatedAt, Instant nextDeadline, Long version) {
+        this.sagaId = sagaId;
+        this.orderId = orderId;
+        this.status = status;
+        this.currentStep = currentStep;
+        this.retryCount = retryCount;
+        this.compensating = compensating;
+        this.branchesDone = branchesDone == null ? 0 : branchesDone;
+        this.branchesFailed = branchesFailed == null ? 0 : branchesFailed;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.nextDeadline = nextDeadline;
+        this.version = version == null ? 0 : version;
+    }
+
+    static SagaState started(UUID sagaId, Instant now) {
+        return new SagaState(sagaId, null, SagaStatus.STARTED, SagaStatus.STARTED.name(), 0, false, 0, 0, now, now, null, 0L);
+    }
+
+    SagaState copy() {
+        return new SagaState(sagaId, orderId, status, currentStep, retryCount, compensating, branchesDone, branchesFailed,
+                createdAt, updatedAt, nextDeadline, version);
+    }
+
+    OrderSaga toEntity() {
+        OrderSaga saga = new OrderSaga();
+        saga.setSagaId(sagaId);
+        saga.setOrderId(orderId);
+        saga.setStatus(status);
+        saga.setCurrentStep(currentStep);
+        saga.setRetryCount(retryCount);
+        saga.setCompensating(compensating);
+        saga.setBranchesDone(branchesDone);
+        saga.setBranchesFailed(branchesFailed);
+        saga.setCreatedAt(createdAt);
+        saga.setUpdatedAt(updatedAt);
+        saga.setNextDeadline(nextDeadline);
+        saga.setVersion(version);
+        return saga;
+    }
+
+    public UUID getSagaId() { return sagaId; }
+    public Long getOrderId() { return orderId; }
+    public void setOrderId(Long orderId) { this.orderId = orderId; }
+    public SagaStatus getStatus() { return status; }
+    public void setStatus(SagaStatus status) { this.status = status; }
+    public String getCurrentStep() { return currentStep; }
+    public void setCurrentStep(String currentStep) { this.currentStep = currentStep; }
+    public Integer getRetryCount() { return retryCount; }
+    public void setRetryCount(Integer retryCount) { this.retryCount = retryCount; }
+    public Boolean getCompensating() { return compensating; }
+    public void setCompensating(Boolean compensating) { this.compensating = compensating; }
+    public int getBranchesDone() { return branchesDone; }
+    public void setBranchesDone(int branchesDone) { this.branchesDone = branchesDone; }
+    public int getBranchesFailed() { return branchesFailed; }
+    public void setBranchesFailed(int branchesFailed) { this.branchesFailed = branchesFailed; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+    public Instant getNextDeadline() { return nextDeadline; }
+    public void setNextDeadline(Instant nextDeadline) { this.nextDeadline = nextDeadline; }
+    public long getVersion() { return version; }
+    void setVersion(long version) { this.version = version; }
+}
@@ -0,0 +1,63 @@
+package com.example.orchestrator.saga.engine;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache LRU limitado do estado das sagas em andamento, para que o próximo evento de uma saga não
+ * precise relê-la do banco. Entradas podem ficar velhas (outra réplica ou o timeout alterou a saga);
+ * isso é detectado pela versão na gravação e a entrada é descartada.
+ */
+@Component
+public class SagaStateCache implements MeterBinder {
+    private final Map<UUID, SagaState> states;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public SagaStateCache(@Value("${saga.engine.cache-size:100000}") int cacheSize) {
+        this.states = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, SagaState> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * Retorna uma cópia do estado em cache, ou {@code null}.
+     */
+    public SagaState get(UUID sagaId) {
+        SagaState state = states.get(sagaId);
+        if (state == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return state.copy();
+    }
+
+    public void put(SagaState state) {
+        states.put(state.getSagaId(), state.copy());
+    }
+
+    public void evict(UUID sagaId) {
+        states.remove(sagaId);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("saga.engine.cache.hits", this, c -> c.hits.get()).register(registry);
+        FunctionCounter.builder("saga.engine.cache.misses", this, c -> c.misses.get()).register(registry);
+        Gauge.builder("saga.engine.cache.size", states, Map::size).register(registry);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.orchestrator.saga.engine;
+
+import com.example.saga.common.shard.ShardContext;
+import com.example.saga.common.shard.ShardRouter;
+import com.example.saga.common.shard.ShardTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispara os timeouts das sagas. No startup carrega na roda todos os prazos pendentes com uma única
+ * leitura do índice de {@code next_deadline}; a partir daí os prazos chegam pelo {@link SagaEngine} a cada
+ * commit e o banco não é mais varrido. A cada tick os prazos vencidos são entregues ao
+ * {@link SagaEngine#expire} em lotes, cada um em sua própria transação.
+ * <p>
+ * Com várias réplicas todas carregam todos os prazos; a gravação por versão garante que só uma trata
+ * cada timeout. Com sharding os prazos são lidos de todos os shards e cada lote roda no shard das sagas.
+ */
+@Component
+@ConditionalOnProperty(name = "saga.timeouts.enabled", havingValue = "true", matchIfMissing = true)
+public class SagaTimeoutScheduler implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(SagaTimeoutScheduler.class);
+
+    private final SagaDeadlines deadlines;
+    private final SagaEngine sagaEngine;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final ShardTemplate shardTemplate;
+    private final long tickMs;
+    private final int batchSize;
+    private final long failureRetryMs;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "saga-timeouts");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public SagaTimeoutScheduler(SagaDeadlines deadlines,
+                                SagaEngine sagaEngine,
+                                JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                ShardRouter shardRouter,
+                                ShardTemplate shardTemplate,
+                                @Value("${saga.timeouts.tick-ms:100}") long tickMs,
+                                @Value("${saga.timeouts.batch-size:500}") int batchSize,
+                                @Value("${saga.timeouts.failure-retry-ms:5000}") long failureRetryMs) {
+        this.deadlines = deadlines;
+        this.sagaEngine = sagaEngine;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardRouter = shardRouter;
+        this.shardTemplate = shardTemplate;
+        this.tickMs = tickMs;
+        this.batchSize = batchSize;
+        this.failureRetryMs = failureRetryMs;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        int recovered = recover();
+        logger.info("{} saga deadlines recovered", recovered);
+        executor.scheduleWithFixedDelay(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private int recover() {
+        int[] count = {0};
+        // streamed with a fetch size (Postgres only honours it inside a transaction)
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(10000);
+        shardTemplate.forEachShard(shard -> transactionTemplate.executeWithoutResult(status -> {
+            streaming.query("select saga_id, next_deadline from order_saga where next_deadline is not null", rs -> {
+                deadlines.schedule(rs.getObject(1, UUID.class), rs.getTimestamp(2).toInstant());
+                count[0]++;
+            });
+        }));
+        return count[0];
+    }
+
+    private void tick() {
+        Instant now = Instant.now();
+        Map<Integer, List<UUID>> byShard = new LinkedHashMap<>();
+        for (UUID id : new LinkedHashSet<>(deadlines.due(now))) {
+            byShard.computeIfAbsent(shardRouter.shardOf(id), s -> new ArrayList<>()).add(id);
+        }
+        byShard.forEach((shard, due) -> {
+            for (int from = 0; from < due.size(); from += batchSize) {
+                List<UUID> batch = due.subList(from, Math.min(from + batchSize, due.size()));
+                try {
+                    ShardContext.run(shard, () -> transactionTemplate.executeWithoutResult(status -> sagaEngine.expire(batch, now)));
+                } catch (Exception e) {
+                    logger.warn("Failed to handle {} saga timeouts, retrying in {} ms", batch.size(), failureRetryMs, e);
+                    Instant retryAt = now.plusMillis(failureRetryMs);
+                    batch.forEach(id -> deadlines.schedule(id, retryAt));
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.orchestrator.saga.engine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Timer wheel hierárquico: {@code levels} rodas de {@code wheelSize} posições, onde cada posição do
+ * nível {@code n} cobre {@code tickMs * wheelSize^n} ms. Agendar é O(1) e avançar custa O(1) por tick mais
+ * o número de timers vencidos ou rebaixados de nível, independente de quantos timers existem; com os
+ * valores padrão (100 ms, 512 posições, 4 níveis) cobre anos sem precisar de fila ordenada.
+ * <p>
+ * Não há cancelamento: quem consome os timers vencidos deve ignorar os que ficaram obsoletos.
+ * Não é thread-safe; o chamador sincroniza.
+ */
+public class TimerWheel<K> {
+    private final long tickMs;
+    private final int wheelSize;
+    private final long[] span;
+    private final List<List<ArrayDeque<Entry<K>>>> wheels = new ArrayList<>();
+    private final List<Entry<K>> overdue = new ArrayList<>();
+    private long currentTick;
+    private int size;
+
+    public TimerWheel(long tickMs, int wheelSize, int levels, long startMs) {
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.span = new long[levels + 1];
+        this.currentTick = startMs / tickMs;
+        span[0] = 1;
+        for (int level = 0; level < levels; level++) {
+            span[level + 1] = span[level] * wheelSize;
+            List<ArrayDeque<Entry<K>>> slots = new ArrayList<>(wheelSize);
+            for (int i = 0; i < wheelSize; i++) {
+                slots.add(new ArrayDeque<>());
+            }
+            wheels.add(slots);
+        }
+    }
+
+    public void schedule(K key, long deadlineMs) {
+        insert(new Entry<>(key, deadlineMs));
+        size++;
+    }
+
+    /**
+     * Avança o relógio até {@code nowMs} e retorna os timers vencidos, em ordem aproximada de prazo.
+     */
+    public List<Entry<K>> advance(long nowMs) {
+        List<Entry<K>> expired = new ArrayList<>(overdue);
+        overdue.clear();
+        long targetTick = nowMs / tickMs;
+        while (currentTick < targetTick) {
+            currentTick++;
+            // cascade from the top so that entries reach level 0 before its slot is read
+            for (int level = wheels.size() - 1; level > 0; level--) {
+                if (currentTick % span[level] == 0) {
+                    drain(level, (int) ((currentTick / span[level]) % wheelSize), expired);
+                }
+            }
+            drain(0, (int) (currentTick % wheelSize), expired);
+        }
+        size -= expired.size();
+        return expired;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void drain(int level, int slot, List<Entry<K>> expired) {
+        ArrayDeque<Entry<K>> bucket = wheels.get(level).get(slot);
+        int n = bucket.size();
+        for (int i = 0; i < n; i++) {
+            Entry<K> e = bucket.poll();
+            if (e.deadlineMs / tickMs <= currentTick) {
+                expired.add(e);
+            } else {
+                insert(e);
+            }
+        }
+    }
+
+    private void insert(Entry<K> e) {
+        long deadlineTick = e.deadlineMs / tickMs;
+        long delta = deadlineTick - currentTick;
+        if (delta <= 0) {
+            overdue.add(e);
+            return;
+        }
+        int top = wheels.size() - 1;
+        int level = 0;
+        while (level < top && delta >= span[level + 1]) {
+            level++;
+        }
+        long slotTick = deadlineTick / span[level];
+        if (level == top && delta >= span[top + 1]) {
+            // beyond the wheel: park in the last slot of the top level, it is re-inserted when visited
+            slotTick = currentTick / span[top] + wheelSize - 1;
+        }
+        wheels.get(level).get((int) (slotTick % wheelSize)).add(e);
+    }
+
+    public static class Entry<K> {
+        private final K key;
+        private final long deadlineMs;
+
+        Entry(K key, long deadlineMs) {
+            this.key = key;
+            this.deadlineMs = deadlineMs;
+        }
+
+        public K getKey() { return key; }
+        public long getDeadlineMs() { return deadlineMs; }
+    }
+}
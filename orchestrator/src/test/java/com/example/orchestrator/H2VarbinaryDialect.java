@@ -0,0 +1,18 @@
+package com.example.orchestrator;
+
+import org.hibernate.dialect.H2Dialect;
+
+import java.sql.Types;
+
+/**
+ * H2 para os testes que alteram sagas. O Hibernate 5 guarda o {@code UUID} como {@code binary(255)}, que no
+ * H2 2.x tem tamanho fixo e completa o valor com zeros, então {@code where saga_id = ?} com os 16 bytes do
+ * id nunca encontra a linha. Com {@code varbinary} o valor fica como foi gravado; no Postgres o id é
+ * {@code uuid} e a questão não existe.
+ */
+public class H2VarbinaryDialect extends H2Dialect {
+
+    public H2VarbinaryDialect() {
+        registerColumnType(Types.BINARY, "varbinary($l)");
+    }
+}
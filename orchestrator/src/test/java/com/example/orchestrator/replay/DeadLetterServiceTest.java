@@ -0,0 +1,55 @@
+package com.example.orchestrator.replay;
+
+import com.example.saga.common.SagaHeaders;
+import com.example.saga.common.bus.InMemoryEventBus;
+import com.example.saga.common.retry.RetryTopics;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class DeadLetterServiceTest {
+    // a topic no other test subscribes to on the shared bus
+    private static final String TOPIC = "inventory_release_requested";
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void inMemoryTransportListsAndRedrivesTheBusDeadLetters() {
+        KafkaTemplate<String, byte[]> kafkaTemplate = mock(KafkaTemplate.class);
+        DeadLetterService service = new DeadLetterService(kafkaTemplate, new KafkaProperties(), "memory", 5000);
+        InMemoryEventBus bus = InMemoryEventBus.shared();
+        for (int i = 0; i < 3; i++) {
+            ProducerRecord<String, byte[]> dead = new ProducerRecord<>(RetryTopics.deadLetterTopic(TOPIC), "saga-" + i,
+                    "{}".getBytes(StandardCharsets.UTF_8));
+            dead.headers().add(SagaHeaders.ORIGINAL_TOPIC, TOPIC.getBytes(StandardCharsets.UTF_8));
+            dead.headers().add(SagaHeaders.ATTEMPT, "4".getBytes(StandardCharsets.UTF_8));
+            bus.send(dead);
+        }
+
+        List<DeadLetter> pending = service.pending(TOPIC, 2);
+        assertThat(pending).extracting(DeadLetter::getKey).containsExactly("saga-0", "saga-1");
+        assertThat(pending).extracting(DeadLetter::getAttempts).containsOnly(4);
+
+        List<ConsumerRecord<String, ?>> received = new CopyOnWriteArrayList<>();
+        InMemoryEventBus.Subscription subscription = bus.subscribe("dead-letter-test", List.of(TOPIC), received::addAll, 1, 16, 16);
+        try {
+            assertThat(service.redrive(TOPIC, 2)).isEqualTo(2);
+        } finally {
+            subscription.cancel();
+        }
+
+        assertThat(received).extracting(ConsumerRecord::key).containsExactly("saga-0", "saga-1");
+        assertThat(received).allSatisfy(r -> assertThat(RetryTopics.attempt(r)).isZero());
+        assertThat(service.pending(TOPIC, 10)).extracting(DeadLetter::getKey).containsExactly("saga-2");
+        verifyNoInteractions(kafkaTemplate);
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.orchestrator.replay;
+
+import com.example.orchestrator.saga.engine.SagaEngine;
+import com.example.saga.common.OutboxRelay;
+import com.example.saga.common.domain.OutboxMessage;
+import com.example.saga.common.repo.OutboxRepository;
+import com.example.saga.common.shard.ShardRouter;
+import com.example.saga.common.threads.VirtualThreads;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checkpoint do replay sobre o outbox em H2: a retomada depois de um bloco com falha começa no último
+ * bloco de uma sequência contínua de concluídos, e um bloco que termina antes do anterior não avança o
+ * checkpoint.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:replay;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "saga.outbox.wakeup-enabled=false",
+        "saga.outbox.poll-interval-ms=3600000",
+        "saga.timeouts.enabled=false",
+        "saga.retention.enabled=false",
+        "logging.level.root=WARN"})
+class ReplayServiceTest {
+    private static final String TYPE = "replay_test";
+    private static final int CHUNK = 10;
+
+    // no broker here: the relay is a mock and the listeners are never fed
+    @MockBean
+    private KafkaAdmin kafkaAdmin;
+    @Autowired
+    private SagaEngine sagaEngine;
+    @Autowired
+    private OutboxRepository outboxRepository;
+    @Autowired
+    private ReplayCheckpointRepository checkpointRepository;
+    @Autowired
+    private ShardRouter shardRouter;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final OutboxRelay outboxRelay = mock(OutboxRelay.class);
+
+    @BeforeEach
+    void clean() {
+        checkpointRepository.deleteAll();
+        outboxRepository.deleteAll();
+    }
+
+    @Test
+    void resumesAfterTheLastChunkBeforeTheFailedOne() throws Exception {
+        List<Long> ids = rows(2 * CHUNK);
+        List<Long> republished = new CopyOnWriteArrayList<>();
+        AtomicBoolean failed = new AtomicBoolean();
+        when(outboxRelay.republish(anyList())).thenAnswer(invocation -> {
+            List<OutboxMessage> messages = invocation.getArgument(0);
+            if (messages.get(0).getId().equals(ids.get(CHUNK)) && failed.compareAndSet(false, true)) {
+                throw new IllegalStateException("broker down");
+            }
+            messages.forEach(m -> republished.add(m.getId()));
+            return messages.size();
+        });
+
+        // one worker: the first chunk is checkpointed before the second one fails
+        ReplayService service = service(1);
+        try {
+            ReplayJob first = await(service.republishOutbox("backfill", ids.get(0), ids.get(ids.size() - 1), TYPE, null));
+            assertThat(first.getState()).isEqualTo(ReplayJob.State.FAILED);
+            ReplayCheckpoint checkpoint = checkpoint("backfill");
+            assertThat(checkpoint.getLastKey()).isEqualTo(String.valueOf(ids.get(CHUNK - 1)));
+            assertThat(checkpoint.getProcessed()).isEqualTo(CHUNK);
+            assertThat(checkpoint.getDone()).isFalse();
+
+            republished.clear();
+            ReplayJob second = await(service.republishOutbox("backfill", ids.get(0), ids.get(ids.size() - 1), TYPE, null));
+            assertThat(second.getState()).isEqualTo(ReplayJob.State.COMPLETED);
+            assertThat(republished).containsExactlyElementsOf(ids.subList(CHUNK, ids.size()));
+            assertThat(second.getScanned()).isEqualTo(ids.size());
+            checkpoint = checkpoint("backfill");
+            assertThat(checkpoint.getLastKey()).isEqualTo(String.valueOf(ids.get(ids.size() - 1)));
+            assertThat(checkpoint.getProcessed()).isEqualTo(ids.size());
+            assertThat(checkpoint.getDone()).isTrue();
+        } finally {
+            service.destroy();
+        }
+    }
+
+    @Test
+    void chunkFinishedAheadOfAnEarlierOneDoesNotMoveTheCheckpoint() throws Exception {
+        List<Long> ids = rows(3 * CHUNK);
+        CountDownLatch laterChunks = new CountDownLatch(2);
+        AtomicReference<Optional<ReplayCheckpoint>> whileFirstChunkRuns = new AtomicReference<>();
+        when(outboxRelay.republish(anyList())).thenAnswer(invocation -> {
+            List<OutboxMessage> messages = invocation.getArgument(0);
+            if (messages.get(0).getId().equals(ids.get(0))) {
+                assertThat(laterChunks.await(10, TimeUnit.SECONDS)).isTrue();
+                // let the other worker record the later chunks as done
+                Thread.sleep(200);
+                whileFirstChunkRuns.set(checkpointRepository.findById(ReplayCheckpoint.id("ordering", 0)));
+            } else {
+                laterChunks.countDown();
+            }
+            return messages.size();
+        });
+
+        ReplayService service = service(2);
+        try {
+            ReplayJob job = await(service.republishOutbox("ordering", ids.get(0), ids.get(ids.size() - 1), TYPE, null));
+            assertThat(job.getState()).isEqualTo(ReplayJob.State.COMPLETED);
+            assertThat(whileFirstChunkRuns.get()).isEmpty();
+            ReplayCheckpoint checkpoint = checkpoint("ordering");
+            assertThat(checkpoint.getLastKey()).isEqualTo(String.valueOf(ids.get(ids.size() - 1)));
+            assertThat(checkpoint.getProcessed()).isEqualTo(ids.size());
+            assertThat(checkpoint.getDone()).isTrue();
+        } finally {
+            service.destroy();
+        }
+    }
+
+    private ReplayService service(int parallelism) {
+        return new ReplayService(sagaEngine, outboxRelay, outboxRepository, checkpointRepository, shardRouter,
+                new VirtualThreads(false), new SimpleMeterRegistry(), jdbcTemplate, transactionManager,
+                100000, parallelism, CHUNK, 100);
+    }
+
+    private List<Long> rows(int count) {
+        List<OutboxMessage> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            OutboxMessage m = new OutboxMessage();
+            m.setAggregateType("saga");
+            m.setAggregateId(String.valueOf(i));
+            m.setType(TYPE);
+            m.setPayload("{}".getBytes(StandardCharsets.UTF_8));
+            rows.add(m);
+        }
+        return outboxRepository.saveAll(rows).stream().map(OutboxMessage::getId).sorted().collect(Collectors.toList());
+    }
+
+    private ReplayCheckpoint checkpoint(String name) {
+        return checkpointRepository.findById(ReplayCheckpoint.id(name, 0)).orElseThrow();
+    }
+
+    private static ReplayJob await(ReplayJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (job.getState() == ReplayJob.State.RUNNING && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        return job;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.orchestrator.saga;
+
+import com.example.saga.common.SagaHeaders;
+import com.example.saga.common.event.InventoryFailed;
+import com.example.saga.common.event.InventoryReserved;
+import com.example.saga.common.event.OrderCreated;
+import com.example.saga.common.event.PaymentCompleted;
+import com.example.saga.common.event.PaymentFailed;
+import com.example.saga.common.event.SagaEvent;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaAdmin;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fan-out/join do checkout com uma branch falhando: o que a outra branch já concluiu é compensado, em
+ * qualquer ordem de chegada das respostas, e a saga termina em FAILED.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:flow;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=com.example.orchestrator.H2VarbinaryDialect",
+        "saga.outbox.wakeup-enabled=false",
+        "saga.outbox.poll-interval-ms=3600000",
+        "saga.timeouts.enabled=false",
+        "saga.retention.enabled=false",
+        "logging.level.root=WARN"})
+class OrderSagaFlowTest {
+    private static final AtomicLong ORDER_IDS = new AtomicLong(1000);
+
+    // no broker here: the events are handed to the listener method directly
+    @MockBean
+    private KafkaAdmin kafkaAdmin;
+    @Autowired
+    private SagaOrchestrator sagaOrchestrator;
+    @Autowired
+    private OrderSagas orderSagas;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void inventoryFailingAfterThePaymentRefundsItAndFailsTheSaga() {
+        long orderId = ORDER_IDS.incrementAndGet();
+        UUID sagaId = start(orderId);
+
+        deliver(new PaymentCompleted(sagaId, orderId));
+        assertThat(status(orderId)).isEqualTo(SagaStatus.IN_PROGRESS);
+        deliver(new InventoryFailed(sagaId, orderId));
+
+        OrderSaga saga = orderSagas.findByOrderId(orderId);
+        assertThat(saga.getStatus()).isEqualTo(SagaStatus.FAILED);
+        assertThat(saga.getCompensating()).isTrue();
+        assertThat(compensations(sagaId)).containsExactly("payment_refund_requested");
+    }
+
+    @Test
+    void paymentSucceedingAfterTheInventoryFailedIsRefundedOnArrival() {
+        long orderId = ORDER_IDS.incrementAndGet();
+        UUID sagaId = start(orderId);
+
+        deliver(new InventoryFailed(sagaId, orderId));
+        // nothing was done yet, so nothing to undo: it waits for the payment answer
+        assertThat(status(orderId)).isEqualTo(SagaStatus.COMPENSATING);
+        assertThat(compensations(sagaId)).isEmpty();
+
+        deliver(new PaymentCompleted(sagaId, orderId));
+
+        assertThat(status(orderId)).isEqualTo(SagaStatus.FAILED);
+        assertThat(compensations(sagaId)).containsExactly("payment_refund_requested");
+    }
+
+    @Test
+    void paymentFailingAfterTheReservationReleasesTheStock() {
+        long orderId = ORDER_IDS.incrementAndGet();
+        UUID sagaId = start(orderId);
+
+        deliver(new InventoryReserved(sagaId, orderId));
+        deliver(new PaymentFailed(sagaId, orderId));
+
+        assertThat(status(orderId)).isEqualTo(SagaStatus.FAILED);
+        assertThat(compensations(sagaId)).containsExactly("inventory_release_requested");
+    }
+
+    @Test
+    void repeatedBranchAnswerAfterTheFailureIsNotCompensatedTwice() {
+        long orderId = ORDER_IDS.incrementAndGet();
+        UUID sagaId = start(orderId);
+        deliver(new PaymentCompleted(sagaId, orderId));
+        deliver(new InventoryFailed(sagaId, orderId));
+
+        // e.g. the answer to a retried request, under a new message id
+        deliver(new PaymentCompleted(sagaId, orderId));
+
+        assertThat(status(orderId)).isEqualTo(SagaStatus.FAILED);
+        assertThat(compensations(sagaId)).containsExactly("payment_refund_requested");
+    }
+
+    private UUID start(long orderId) {
+        deliver(new OrderCreated(orderId, 10.0));
+        OrderSaga saga = orderSagas.findByOrderId(orderId);
+        assertThat(saga.getStatus()).isEqualTo(SagaStatus.IN_PROGRESS);
+        return saga.getSagaId();
+    }
+
+    private void deliver(SagaEvent event) {
+        ConsumerRecord<String, SagaEvent> record = new ConsumerRecord<>(event.eventType().getName(), 0, 0, null, event);
+        record.headers().add(SagaHeaders.MESSAGE_ID, UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8));
+        sagaOrchestrator.onSagaEvents(List.of(record));
+    }
+
+    private SagaStatus status(long orderId) {
+        return orderSagas.findByOrderId(orderId).getStatus();
+    }
+
+    private List<String> compensations(UUID sagaId) {
+        return jdbcTemplate.queryForList("select type from outbox where aggregate_id = ? " +
+                "and type in ('payment_refund_requested', 'inventory_release_requested') order by id", String.class, sagaId.toString());
+    }
+}
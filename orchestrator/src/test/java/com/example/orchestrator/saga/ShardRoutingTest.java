@@ -0,0 +1,111 @@
+package com.example.orchestrator.saga;
+
+import com.example.saga.common.SagaHeaders;
+import com.example.saga.common.event.OrderCreated;
+import com.example.saga.common.event.SagaEvent;
+import com.example.saga.common.event.SagaEventType;
+import com.example.saga.common.shard.ShardRouter;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.kafka.core.KafkaAdmin;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Dois shards H2: a saga criada por um {@code OrderCreated}, o inbox desse evento e o outbox da saga
+ * ficam todos no shard do pedido, que é também o codificado no id da saga.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=" + ShardRoutingTest.SHARD_0,
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "saga.sharding.urls=" + ShardRoutingTest.SHARD_0 + "," + ShardRoutingTest.SHARD_1,
+        "saga.outbox.wakeup-enabled=false",
+        "saga.outbox.poll-interval-ms=3600000",
+        "saga.timeouts.enabled=false",
+        "saga.retention.enabled=false",
+        "logging.level.root=WARN"})
+class ShardRoutingTest {
+    static final String SHARD_0 = "jdbc:h2:mem:routing0;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+    static final String SHARD_1 = "jdbc:h2:mem:routing1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+    private static final int ORDERS = 20;
+
+    // no broker here: the events are handed to the listener method directly
+    @MockBean
+    private KafkaAdmin kafkaAdmin;
+    @Autowired
+    private SagaOrchestrator sagaOrchestrator;
+    @Autowired
+    private OrderSagas orderSagas;
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Test
+    void sagaInboxAndOutboxLandOnTheShardOfTheOrder() {
+        List<ConsumerRecord<String, SagaEvent>> records = new ArrayList<>();
+        Map<String, Long> orderByMessageId = new HashMap<>();
+        for (long orderId = 1; orderId <= ORDERS; orderId++) {
+            ConsumerRecord<String, SagaEvent> record = new ConsumerRecord<>(SagaEventType.ORDER_CREATED.getName(), 0, orderId,
+                    String.valueOf(orderId), new OrderCreated(orderId, 10.0));
+            String messageId = UUID.randomUUID().toString();
+            record.headers().add(SagaHeaders.MESSAGE_ID, messageId.getBytes(StandardCharsets.UTF_8));
+            orderByMessageId.put(messageId, orderId);
+            records.add(record);
+        }
+        sagaOrchestrator.onSagaEvents(records);
+
+        int sagas = 0;
+        List<String> shards = List.of(SHARD_0, SHARD_1);
+        for (int shard = 0; shard < shards.size(); shard++) {
+            JdbcTemplate db = new JdbcTemplate(new DriverManagerDataSource(shards.get(shard), "sa", ""));
+            Map<UUID, Long> orderBySaga = new HashMap<>();
+            db.query("select saga_id, order_id from order_saga",
+                    rs -> { orderBySaga.put(uuid(rs.getBytes(1)), rs.getLong(2)); });
+            assertThat(orderBySaga).isNotEmpty();
+            for (Map.Entry<UUID, Long> e : orderBySaga.entrySet()) {
+                assertThat(shardRouter.shardOf(e.getKey())).isEqualTo(shard);
+                assertThat(shardRouter.shardOf(e.getValue())).isEqualTo(shard);
+            }
+            sagas += orderBySaga.size();
+
+            List<String> outboxSagas = db.queryForList("select aggregate_id from outbox where aggregate_type = 'saga'", String.class);
+            assertThat(outboxSagas).isNotEmpty();
+            for (String sagaId : outboxSagas) {
+                assertThat(orderBySaga).containsKey(UUID.fromString(sagaId));
+            }
+
+            List<String> inbox = db.queryForList("select message_id from inbox", String.class);
+            assertThat(inbox).hasSize(orderBySaga.size());
+            for (String messageId : inbox) {
+                assertThat(shardRouter.shardOf(orderByMessageId.get(messageId))).isEqualTo(shard);
+            }
+        }
+        assertThat(sagas).isEqualTo(ORDERS);
+
+        for (long orderId = 1; orderId <= ORDERS; orderId++) {
+            OrderSaga saga = orderSagas.findByOrderId(orderId);
+            assertThat(saga).isNotNull();
+            assertThat(shardRouter.shardOf(saga.getSagaId())).isEqualTo(shardRouter.shardOf(orderId));
+        }
+    }
+
+    // Hibernate 5 maps UUID to binary(255) on H2, the 16 bytes come first
+    private static UUID uuid(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.orchestrator.saga.engine;
+
+import com.example.orchestrator.saga.OrderSaga;
+import com.example.orchestrator.saga.OrderSagaRepository;
+import com.example.orchestrator.saga.OrderSagas;
+import com.example.orchestrator.saga.SagaStatus;
+import com.example.saga.common.InboxDeduplicator;
+import com.example.saga.common.SagaHeaders;
+import com.example.saga.common.event.InventoryReserved;
+import com.example.saga.common.event.OrderCreated;
+import com.example.saga.common.event.PaymentCompleted;
+import com.example.saga.common.event.SagaEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+
+/**
+ * Engine sobre o H2: transições, escrita com {@code UPDATE ... WHERE version = ?} e o que só muda depois
+ * do commit (cache e prazos).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:engine;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=com.example.orchestrator.H2VarbinaryDialect",
+        "saga.outbox.wakeup-enabled=false",
+        "saga.outbox.poll-interval-ms=3600000",
+        "saga.timeouts.enabled=false",
+        "saga.retention.enabled=false",
+        "logging.level.root=WARN"})
+class SagaEngineTest {
+    private static final AtomicLong ORDER_IDS = new AtomicLong(1000);
+
+    // no broker here: the events are handed to the engine directly
+    @MockBean
+    private KafkaAdmin kafkaAdmin;
+    @SpyBean
+    private OrderSagaRepository orderSagaRepository;
+    @Autowired
+    private SagaEngine sagaEngine;
+    @Autowired
+    private SagaStateCache cache;
+    @Autowired
+    private SagaDeadlines deadlines;
+    @Autowired
+    private OrderSagas orderSagas;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void orderCreatedStartsTheSagaAndRequestsBothBranches() {
+        long orderId = ORDER_IDS.incrementAndGet();
+        int scheduled = deadlines.size();
+
+        UUID sagaId = start(orderId);
+
+        assertThat(row(orderId)).containsEntry("status", "IN_PROGRESS").containsEntry("version", 0L);
+        assertThat(outbox(sagaId)).containsExactly("payment_requested", "inventory_requested", "saga_status_changed");
+        // after the commit: the next event skips the read and the step timeout is armed
+        assertThat(cache.get(sagaId)).isNotNull();
+        assertThat(deadlines.size()).isEqualTo(scheduled + 1);
+    }
+
+    @Test
+    void bothBranchesAnsweringCompleteTheSagaAndDropItFromTheCache() {
+        long orderId = ORDER_IDS.incrementAndGet();
+        UUID sagaId = start(orderId);
+
+        handle(record("payment_completed", new PaymentCompleted(sagaId, orderId)),
+                record("inventory_reserved", new InventoryReserved(sagaId, orderId)));
+
+        assertThat(row(orderId)).containsEntry("status", "COMPLETED").containsEntry("version", 1L);
+        assertThat(outbox(sagaId)).endsWith("saga_status_changed", "saga_status_changed");
+        assertThat(cache.get(sagaId)).isNull();
+    }
+
+    @Test
+    void versionConflictReloadsTheSagaAndReappliesTheEvents() {
+        long orderId = ORDER_IDS.incrementAndGet();
+        UUID sagaId = start(orderId);
+        // another replica wrote the saga: the cached copy is now one version behind
+        jdbcTemplate.update("update order_saga set version = version + 1 where order_id = ?", orderId);
+        double conflicts = meterRegistry.counter("saga.engine.version.conflicts").count();
+
+        handle(record("payment_completed", new PaymentCompleted(sagaId, orderId)));
+
+        assertThat(meterRegistry.counter("saga.engine.version.conflicts").count()).isEqualTo(conflicts + 1);
+        assertThat(row(orderId)).containsEntry("status", "IN_PROGRESS").containsEntry("version", 2L)
+                .containsEntry("branches_done", 1);
+        assertThat(cache.get(sagaId).getVersion()).isEqualTo(2L);
+    }
+
+    @Test
+    void sagaThatKeepsChangingFailsTheBatchAfterTheRetries() {
+        long orderId = ORDER_IDS.incrementAndGet();
+        UUID sagaId = start(orderId);
+        doReturn(0).when(orderSagaRepository).updateIfVersion(any());
+
+        assertThatThrownBy(() -> handle(record("payment_completed", new PaymentCompleted(sagaId, orderId))))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+
+        assertThat(row(orderId)).containsEntry("branches_done", 0).containsEntry("version", 0L);
+        assertThat(outbox(sagaId)).doesNotContain("payment_refund_requested");
+        assertThat(cache.get(sagaId)).isNull();
+    }
+
+    @Test
+    void duplicateEventIsDroppedByTheInbox() {
+        long orderId = ORDER_IDS.incrementAndGet();
+        UUID sagaId = start(orderId);
+        ConsumerRecord<String, SagaEvent> completed = record("payment_completed", new PaymentCompleted(sagaId, orderId));
+        handle(completed);
+        List<String> outbox = outbox(sagaId);
+
+        handle(record("payment_completed", new PaymentCompleted(sagaId, orderId), InboxDeduplicator.messageId(completed)));
+
+        assertThat(row(orderId)).containsEntry("version", 1L);
+        assertThat(outbox(sagaId)).isEqualTo(outbox);
+    }
+
+    @Test
+    void rolledBackBatchEvictsTheSagaFromTheCache() {
+        long orderId = ORDER_IDS.incrementAndGet();
+        UUID sagaId = start(orderId);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            sagaEngine.handle(List.of(record("payment_completed", new PaymentCompleted(sagaId, orderId))));
+            status.setRollbackOnly();
+        });
+
+        assertThat(cache.get(sagaId)).isNull();
+        assertThat(row(orderId)).containsEntry("version", 0L);
+    }
+
+    @Test
+    void redriveRequestsThePendingBranchAgainWithoutSpendingARetry() {
+        long orderId = ORDER_IDS.incrementAndGet();
+        UUID sagaId = start(orderId);
+        handle(record("payment_completed", new PaymentCompleted(sagaId, orderId)));
+
+        Integer redriven = new TransactionTemplate(transactionManager)
+                .execute(status -> sagaEngine.redrive(List.of(sagaId), Instant.now()));
+
+        assertThat(redriven).isEqualTo(1);
+        assertThat(outbox(sagaId)).endsWith("inventory_requested");
+        assertThat(row(orderId)).containsEntry("status", "IN_PROGRESS").containsEntry("retry_count", 0);
+    }
+
+    private UUID start(long orderId) {
+        handle(record("order_created", new OrderCreated(orderId, 10.0)));
+        OrderSaga saga = orderSagas.findByOrderId(orderId);
+        assertThat(saga).isNotNull();
+        assertThat(saga.getStatus()).isEqualTo(SagaStatus.IN_PROGRESS);
+        return saga.getSagaId();
+    }
+
+    @SafeVarargs
+    private void handle(ConsumerRecord<String, SagaEvent>... records) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> sagaEngine.handle(List.of(records)));
+    }
+
+    private Map<String, Object> row(long orderId) {
+        return jdbcTemplate.queryForMap("select status, version, branches_done, retry_count from order_saga where order_id = ?", orderId);
+    }
+
+    private List<String> outbox(UUID sagaId) {
+        return jdbcTemplate.queryForList("select type from outbox where aggregate_id = ? order by id", String.class, sagaId.toString());
+    }
+
+    private static ConsumerRecord<String, SagaEvent> record(String topic, SagaEvent event) {
+        return record(topic, event, UUID.randomUUID().toString());
+    }
+
+    private static ConsumerRecord<String, SagaEvent> record(String topic, SagaEvent event, String messageId) {
+        ConsumerRecord<String, SagaEvent> record = new ConsumerRecord<>(topic, 0, 0, null, event);
+        record.headers().add(SagaHeaders.MESSAGE_ID, messageId.getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.orchestrator.saga.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimerWheelTest {
+    // 10 ms ticks, 8 slots, 3 levels: level 1 slots cover 80 ms, level 2 slots 640 ms, the wheel 5120 ms
+    private static final long TICK_MS = 10;
+
+    private final TimerWheel<String> wheel = new TimerWheel<>(TICK_MS, 8, 3, 0);
+
+    @Test
+    void timerOnTheFirstLevelExpiresOnItsTick() {
+        wheel.schedule("a", 50);
+
+        assertThat(wheel.advance(40)).isEmpty();
+        assertThat(keys(wheel.advance(50))).containsExactly("a");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void timerOnAnUpperLevelCascadesDownAndExpiresOnItsTick() {
+        // 100 ticks ahead: starts on level 2 and goes through level 1 and 0 on the way
+        wheel.schedule("a", 1000);
+
+        for (long now = TICK_MS; now < 1000; now += TICK_MS) {
+            assertThat(wheel.advance(now)).as("at %d ms", now).isEmpty();
+        }
+        assertThat(keys(wheel.advance(1000))).containsExactly("a");
+    }
+
+    @Test
+    void timerBeyondTheWheelIsParkedAndStillExpiresOnItsTick() {
+        wheel.schedule("a", 12000);
+
+        assertThat(wheel.advance(11990)).isEmpty();
+        assertThat(wheel.size()).isEqualTo(1);
+        assertThat(keys(wheel.advance(12000))).containsExactly("a");
+    }
+
+    @Test
+    void timerAlreadyDueIsReturnedByTheNextAdvance() {
+        wheel.advance(500);
+        wheel.schedule("late", 200);
+        wheel.schedule("now", 500);
+
+        assertThat(keys(wheel.advance(500))).containsExactlyInAnyOrder("late", "now");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void oneLargeAdvanceReturnsEverythingDue() {
+        wheel.schedule("a", 30);
+        wheel.schedule("b", 700);
+        wheel.schedule("c", 6000);
+
+        assertThat(keys(wheel.advance(5000))).containsExactly("a", "b");
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+
+    @Test
+    void everyTimerExpiresExactlyOnItsTick() {
+        Random random = new Random(42);
+        Map<String, Long> deadlines = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            long deadline = TICK_MS + random.nextInt(20000 - (int) TICK_MS);
+            deadlines.put("t" + i, deadline);
+            wheel.schedule("t" + i, deadline);
+        }
+
+        List<String> expired = new ArrayList<>();
+        for (long now = TICK_MS; now <= 20000; now += TICK_MS) {
+            for (TimerWheel.Entry<String> e : wheel.advance(now)) {
+                assertThat(e.getDeadlineMs() / TICK_MS).as("timer %s at %d ms", e.getKey(), now).isEqualTo(now / TICK_MS);
+                expired.add(e.getKey());
+            }
+        }
+        assertThat(expired).containsExactlyInAnyOrderElementsOf(deadlines.keySet());
+        assertThat(wheel.size()).isZero();
+    }
+
+    private static List<String> keys(List<TimerWheel.Entry<String>> entries) {
+        return entries.stream().map(TimerWheel.Entry::getKey).collect(Collectors.toList());
+    }
+}
@@ -6,7 +6,7 @@ import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
-@SpringBootApplication
+@SpringBootApplication(scanBasePackages = {"com.example.order", "com.example.saga.common"})
 @EnableScheduling
 @EntityScan(basePackages = {"com.example.order.domain", "com.example.saga.common.domain"})
 @EnableJpaRepositories(basePackages = {"com.example.order.repository", "com.example.saga.common.repo"})
@@ -1,38 +1,160 @@
 package com.example.order.controller;
 
 import com.example.order.domain.OrderEntity;
-import com.example.order.repository.OrderRepository;
+import com.example.order.service.AdmissionControl;
+import com.example.order.service.OrderIntake;
+import com.example.order.domain.OrderStatusView;
 import com.example.order.service.OrderService;
-import com.example.saga.common.domain.OutboxMessage;
-import com.example.saga.common.repo.OutboxRepository;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.example.order.service.OrderStatusService;
+import com.example.saga.common.trace.SagaTracer;
+import com.example.saga.common.trace.TraceContext;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/orders")
 public class OrderController {
 
-private final OrderService orderService;
+    private final OrderService orderService;
+    private final OrderIntake orderIntake;
+    private final AdmissionControl admissionControl;
+    private final OrderStatusService orderStatusService;
+    private final SagaTracer tracer;
+    private final long maxWaitMs;
 
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService, ObjectProvider<OrderIntake> orderIntake,
+                           ObjectProvider<AdmissionControl> admissionControl,
+                           OrderStatusService orderStatusService, SagaTracer tracer,
+                           @Value("${saga.status.max-wait-ms:60000}") long maxWaitMs) {
         this.orderService = orderService;
-
+        this.orderIntake = orderIntake.getIfAvailable();
+        this.admissionControl = admissionControl.getIfAvailable();
+        this.orderStatusService = orderStatusService;
+        this.tracer = tracer;
+        this.maxWaitMs = maxWaitMs;
     }
 
+    /**
+     * Cria o pedido. Com o group commit ligado a requisição é respondida de forma assíncrona, depois do
+     * commit do lote em que entrou. Com {@code Prefer: respond-async} a resposta é 202 com o
+     * {@code Location} do pedido, já que a saga ainda está em andamento. Acima da taxa admitida pelo
+     * {@link AdmissionControl} o pedido é recusado com 429 e {@code Retry-After}, sem tocar no banco.
+     */
     @PostMapping
-    @Transactional
-    public ResponseEntity<OrderEntity> create(@RequestParam Double amount) {
-
-
-
-        return ResponseEntity.ok(orderService.create(amount));
+    public CompletableFuture<ResponseEntity<OrderEntity>> create(@RequestParam Double amount,
+                                                                 @RequestHeader(value = "Prefer", required = false) String prefer) {
+        long retryAfter = admissionControl == null ? 0 : admissionControl.tryAdmit();
+        if (retryAfter > 0) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                    .build());
+        }
+        // resolved here: the future completes on the intake thread, outside the request
+        UriComponentsBuilder location = prefer != null && prefer.contains("respond-async")
+                ? ServletUriComponentsBuilder.fromCurrentRequestUri().path("/{id}")
+                : null;
+        TraceContext trace = tracer.startTrace();
+        long receivedAt = trace == null ? 0 : SagaTracer.nowMicros();
+        CompletableFuture<OrderEntity> order;
+        if (orderIntake == null) {
+            TraceContext write = trace == null ? null : trace.child();
+            order = CompletableFuture.completedFuture(orderService.create(amount, write));
+            if (trace != null) {
+                tracer.export(write, trace, "db.write", String.valueOf(order.join().getId()), receivedAt, SagaTracer.nowMicros());
+            }
+        } else {
+            order = orderIntake.submit(amount, trace);
+        }
+        if (trace != null) {
+            // the root span covers the request; the saga goes on after it
+            order.thenAccept(o -> tracer.export(trace, null, "order.create", String.valueOf(o.getId()), receivedAt, SagaTracer.nowMicros()));
+        }
+        return order.thenApply(o -> respond(o, location));
     }
-}
 
+    @GetMapping("/{id}")
+    public ResponseEntity<OrderEntity> get(@PathVariable Long id) {
+        return ResponseEntity.of(orderService.find(id));
+    }
 
+    /**
+     * Status da saga do pedido, servido do read model em memória. Com {@code wait} (ms) é um long-poll: a
+     * resposta sai assim que a saga termina ou, no fim da espera, com o status corrente.
+     */
+    @GetMapping("/{id}/status")
+    public DeferredResult<ResponseEntity<OrderStatusView>> status(@PathVariable Long id,
+                                                                  @RequestParam(defaultValue = "0") long wait) {
+        Optional<OrderStatusView> current = orderStatusService.current(id);
+        if (!current.isPresent() || current.get().isFinished() || wait <= 0) {
+            DeferredResult<ResponseEntity<OrderStatusView>> now = new DeferredResult<>();
+            now.setResult(ResponseEntity.of(current));
+            return now;
+        }
+        DeferredResult<ResponseEntity<OrderStatusView>> result = new DeferredResult<>(Math.min(wait, maxWaitMs));
+        Runnable unwatch = orderStatusService.watch(id, view -> {
+            if (view.isFinished()) {
+                result.setResult(ResponseEntity.ok(view));
+            }
+        });
+        result.onCompletion(unwatch);
+        result.onTimeout(() -> result.setResult(ResponseEntity.of(orderStatusService.current(id))));
+        // the saga may have finished between the first read and the watch
+        orderStatusService.current(id).filter(OrderStatusView::isFinished)
+                .ifPresent(view -> result.setResult(ResponseEntity.ok(view)));
+        return result;
+    }
 
+    /**
+     * Server-Sent Events com cada mudança de status do pedido, começando pelo status corrente; o stream
+     * é encerrado quando a saga termina.
+     */
+    @GetMapping(value = "/{id}/status/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> statusStream(@PathVariable Long id) {
+        Optional<OrderStatusView> current = orderStatusService.current(id);
+        if (!current.isPresent()) {
+            return ResponseEntity.notFound().build();
+        }
+        SseEmitter emitter = new SseEmitter(maxWaitMs);
+        Runnable unwatch = orderStatusService.watch(id, view -> send(emitter, view));
+        emitter.onCompletion(unwatch);
+        emitter.onTimeout(unwatch);
+        emitter.onError(e -> unwatch.run());
+        // updates that raced with the watch are older versions and harmless to repeat
+        send(emitter, orderStatusService.current(id).orElse(current.get()));
+        return ResponseEntity.ok(emitter);
+    }
 
+    private static void send(SseEmitter emitter, OrderStatusView view) {
+        try {
+            emitter.send(SseEmitter.event().name("status").id(String.valueOf(view.getVersion())).data(view));
+            if (view.isFinished()) {
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // client gone or stream already completed
+            emitter.completeWithError(e);
+        }
+    }
 
+    private ResponseEntity<OrderEntity> respond(OrderEntity order, UriComponentsBuilder location) {
+        if (location == null) {
+            return ResponseEntity.ok(order);
+        }
+        return ResponseEntity.accepted()
+                .location(location.buildAndExpand(order.getId()).toUri())
+                .body(order);
+    }
+}
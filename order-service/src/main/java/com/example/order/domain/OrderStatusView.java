@@ -0,0 +1,54 @@
+package com.example.order.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Read model do status da saga de cada pedido, mantido a partir dos {@code saga_status_changed}.
+ * {@code version} é a versão da saga no orquestrador; atualizações com versão menor ou igual são descartadas.
+ */
+@Entity
+@Table(name = "order_status")
+public class OrderStatusView implements Persistable<Long> {
+    @Id
+    private Long orderId;
+    private UUID sagaId;
+    private String status;
+    private boolean finished;
+    private long version;
+    private Instant updatedAt = Instant.now();
+    // the id is assigned, so without this flag save() would select before every insert
+    @Transient
+    private boolean created;
+
+    public Long getOrderId() { return orderId; }
+    public void setOrderId(Long orderId) { this.orderId = orderId; }
+    public UUID getSagaId() { return sagaId; }
+    public void setSagaId(UUID sagaId) { this.sagaId = sagaId; }
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    public boolean isFinished() { return finished; }
+    public void setFinished(boolean finished) { this.finished = finished; }
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+
+    @Override
+    @JsonIgnore
+    public Long getId() { return orderId; }
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() { return created; }
+
+    public void markCreated() { this.created = true; }
+
+    @PostPersist
+    @PostLoad
+    void markStored() { this.created = false; }
+}
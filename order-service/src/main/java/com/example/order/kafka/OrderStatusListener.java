@@ -0,0 +1,56 @@
+package com.example.order.kafka;
+
+import com.example.order.service.OrderStatusService;
+import com.example.saga.common.InboxDeduplicator;
+import com.example.saga.common.event.SagaEvent;
+import com.example.saga.common.event.SagaStatusChanged;
+import com.example.saga.common.retry.RetryTopics;
+import com.example.saga.common.trace.SagaTracer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+public class OrderStatusListener {
+    private static final Logger logger = LoggerFactory.getLogger(OrderStatusListener.class);
+
+    private final OrderStatusService orderStatusService;
+    private final SagaTracer tracer;
+    private final RetryTopics retryTopics;
+
+    public OrderStatusListener(OrderStatusService orderStatusService, SagaTracer tracer, RetryTopics retryTopics) {
+        this.orderStatusService = orderStatusService;
+        this.tracer = tracer;
+        this.retryTopics = retryTopics;
+    }
+
+    /**
+     * Atualiza o read model com o lote; um lote que falha é reaplicado registro a registro e os registros
+     * que continuam falhando vão para os tópicos de retry ({@link RetryTopics}).
+     */
+    @KafkaListener(topics = "saga_status_changed", groupId = "${saga.status.group-id:order-status-view}", containerFactory = "batchFactory")
+    public void onStatusChanged(List<ConsumerRecord<String, SagaEvent>> records) {
+        // the end of a traced saga: the status is visible to the client once this commits
+        tracer.consume(records, "status.consume", () -> retryTopics.process(records, this::apply));
+    }
+
+    private void apply(List<ConsumerRecord<String, SagaEvent>> records) {
+        List<SagaStatusChanged> events = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, SagaEvent> record : records) {
+            if (record.value() instanceof SagaStatusChanged && ((SagaStatusChanged) record.value()).getOrderId() != null) {
+                events.add((SagaStatusChanged) record.value());
+            } else {
+                // a status update is superseded by the next one, so a bad record is not worth stopping for
+                logger.error("Ignoring unexpected saga_status_changed messageId={}", InboxDeduplicator.messageId(record));
+            }
+        }
+        if (!events.isEmpty()) {
+            orderStatusService.apply(events);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.order.repository;
+
+import com.example.order.domain.OrderStatusView;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface OrderStatusRepository extends JpaRepository<OrderStatusView, Long> {
+}
@@ -0,0 +1,166 @@
+package com.example.order.service;
+
+import com.example.saga.common.event.SagaEventType;
+import com.example.saga.common.repo.OutboxRepository;
+import com.example.saga.common.throttle.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Controle de admissão do {@code POST /orders}: um {@link TokenBucket} decide, antes de qualquer
+ * transação, se o pedido entra ou é recusado com 429 e {@code Retry-After}. A taxa do bucket acompanha o
+ * que o resto da saga consegue absorver, medido a cada {@code saga.admission.interval-ms}:
+ * <ul>
+ *     <li>idade do {@code order_created} mais antigo ainda não publicado (o relay está atrasado);</li>
+ *     <li>sagas esperando resposta dos participantes, nos status de {@code saga.admission.saga-statuses}
+ *     (o payment-service ou o inventory-service está atrasado). Por padrão {@code IN_PROGRESS}, onde as
+ *     sagas ficam desde que os passos rodam em paralelo, e {@code PAYMENT_REQUESTED}, das sagas antigas.</li>
+ * </ul>
+ * Acima de um dos alvos e sem melhora desde a última amostra a taxa cai 30%; abaixo dos dois ela sobe
+ * 5% de {@code max-rate} por intervalo (AIMD). Sob sobrecarga a entrada converge para a vazão que a saga
+ * sustenta, em vez de acumular backlog até os pollers caírem.
+ * <p>
+ * As sagas são contadas no banco do order-service, que é o mesmo do orquestrador na PoC; com o
+ * orquestrador em outro banco ou com sharding o sinal some e só o atraso do outbox é usado.
+ */
+@Component
+@ConditionalOnProperty(name = "saga.admission.enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionControl implements MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionControl.class);
+    private static final String ORDER_CREATED = SagaEventType.ORDER_CREATED.getName();
+    private static final double DECREASE = 0.7;
+    private static final double INCREASE = 0.05;
+    private static final long MAX_RETRY_AFTER_SECONDS = 30;
+
+    private final OutboxRepository outboxRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final double maxRate;
+    private final double minRate;
+    private final long targetOutboxLagMs;
+    private final long targetPendingSagas;
+    private final List<String> sagaStatuses;
+    private final String countPendingSagas;
+    private final TokenBucket bucket;
+
+    private volatile long outboxLagMs;
+    private volatile long pendingSagas;
+    private volatile boolean overloaded;
+    private volatile boolean sagasVisible = true;
+    private Counter rejected = Counter.builder("saga.admission.rejected").register(new SimpleMeterRegistry());
+
+    public AdmissionControl(OutboxRepository outboxRepository,
+                            JdbcTemplate jdbcTemplate,
+                            @Value("${saga.admission.max-rate:5000}") double maxRate,
+                            @Value("${saga.admission.min-rate:50}") double minRate,
+                            @Value("${saga.admission.burst:500}") double burst,
+                            @Value("${saga.admission.target-outbox-lag-ms:2000}") long targetOutboxLagMs,
+                            @Value("${saga.admission.target-pending-sagas:5000}") long targetPendingSagas,
+                            @Value("${saga.admission.saga-statuses:IN_PROGRESS,PAYMENT_REQUESTED}") List<String> sagaStatuses) {
+        this.outboxRepository = outboxRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxRate = maxRate;
+        this.minRate = minRate;
+        this.targetOutboxLagMs = targetOutboxLagMs;
+        this.targetPendingSagas = targetPendingSagas;
+        this.sagaStatuses = sagaStatuses.stream().map(String::trim).collect(Collectors.toList());
+        // bounded, so that the sample costs the same however large the backlog is
+        this.countPendingSagas = "select count(*) from (select 1 from order_saga where status in (" +
+                String.join(", ", Collections.nCopies(this.sagaStatuses.size(), "?")) + ") limit ?) s";
+        this.bucket = new TokenBucket(maxRate, burst);
+    }
+
+    /**
+     * Consome uma ficha para um pedido novo. Retorna 0 se o pedido foi admitido, ou em quantos segundos o
+     * cliente deve tentar de novo: 1 quando é só excesso de taxa, mais quando a saga está atrasada.
+     */
+    public long tryAdmit() {
+        if (bucket.tryAcquire(1)) {
+            return 0;
+        }
+        rejected.increment();
+        if (!overloaded) {
+            return 1;
+        }
+        return Math.min(MAX_RETRY_AFTER_SECONDS, Math.max(1, outboxLagMs / 1000));
+    }
+
+    @Scheduled(fixedDelayString = "${saga.admission.interval-ms:1000}")
+    public void adjust() {
+        long lastLag = outboxLagMs;
+        long lastPendingSagas = pendingSagas;
+        try {
+            Instant oldest = outboxRepository.findOldestPendingCreatedAt(ORDER_CREATED);
+            outboxLagMs = oldest == null ? 0 : Math.max(0, Duration.between(oldest, Instant.now()).toMillis());
+            pendingSagas = countPendingSagas();
+        } catch (DataAccessException e) {
+            logger.warn("Could not sample the admission signals, keeping {} orders/s", (long) bucket.getRate(), e);
+            return;
+        }
+
+        double rate = bucket.getRate();
+        boolean over = outboxLagMs > targetOutboxLagMs || pendingSagas > targetPendingSagas;
+        double next = rate;
+        if (!over) {
+            next = Math.min(maxRate, rate + maxRate * INCREASE);
+        } else if (outboxLagMs >= lastLag && pendingSagas >= lastPendingSagas) {
+            // a backlog that is already shrinking drains at the current rate; only cut while it grows
+            next = Math.max(minRate, rate * DECREASE);
+        }
+        if (over && !overloaded) {
+            logger.warn("Order intake overloaded (order_created lag {} ms, {} sagas in {}), throttling",
+                    outboxLagMs, pendingSagas, sagaStatuses);
+        } else if (!over && overloaded) {
+            logger.info("Order intake recovered, admitting up to {} orders/s", (long) next);
+        }
+        overloaded = over;
+        if (next != rate) {
+            bucket.setRate(next);
+        }
+    }
+
+    private long countPendingSagas() {
+        Object[] args = new Object[sagaStatuses.size() + 1];
+        sagaStatuses.toArray(args);
+        args[args.length - 1] = targetPendingSagas * 2;
+        try {
+            Long count = jdbcTemplate.queryForObject(countPendingSagas, Long.class, args);
+            sagasVisible = true;
+            return count == null ? 0 : count;
+        } catch (BadSqlGrammarException e) {
+            // tried again at every sample: the orchestrator may just not have created the table yet
+            if (sagasVisible) {
+                logger.info("order_saga is not readable from order-service, admission control uses the outbox lag only: {}", e.getMessage());
+            }
+            sagasVisible = false;
+            return 0;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        rejected = Counter.builder("saga.admission.rejected")
+                .description("Orders refused with 429 by the admission control")
+                .register(registry);
+        Gauge.builder("saga.admission.rate", bucket, TokenBucket::getRate)
+                .description("Orders per second currently admitted")
+                .register(registry);
+    }
+}
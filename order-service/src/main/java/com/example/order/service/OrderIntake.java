@@ -0,0 +1,188 @@
+package com.example.order.service;
+
+import com.example.order.domain.OrderEntity;
+import com.example.saga.common.trace.SagaTracer;
+import com.example.saga.common.trace.TraceContext;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit dos pedidos: as requisições entram em uma fila e uma única thread grava o que se acumulou
+ * (até {@code saga.intake.batch-size}, esperando no máximo {@code saga.intake.max-wait-ms} pelos próximos)
+ * em uma transação, com inserts em lote de {@code orders} e {@code outbox}. Cada chamador recebe o pedido
+ * só depois do commit do lote, então a durabilidade é a mesma do caminho de uma transação por pedido, mas
+ * o custo do commit é dividido pelo lote.
+ * <p>
+ * Com a fila cheia o pedido é recusado com 503 em vez de acumular latência.
+ */
+@Component
+@ConditionalOnProperty(name = "saga.intake.group-commit", havingValue = "true", matchIfMissing = true)
+public class OrderIntake implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(OrderIntake.class);
+
+    private final OrderService orderService;
+    private final SagaTracer tracer;
+    private final int batchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<Pending> queue;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "order-intake");
+        t.setDaemon(true);
+        return t;
+    });
+    private final DistributionSummary batchSizes;
+
+    public OrderIntake(OrderService orderService,
+                       SagaTracer tracer,
+                       ObjectProvider<MeterRegistry> meterRegistry,
+                       @Value("${saga.intake.batch-size:500}") int batchSize,
+                       @Value("${saga.intake.max-wait-ms:2}") long maxWaitMs,
+                       @Value("${saga.intake.queue-capacity:10000}") int queueCapacity) {
+        this.orderService = orderService;
+        this.tracer = tracer;
+        this.batchSize = batchSize;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        // not a MeterBinder: the registry would then need this bean, and through the order service the
+        // Kafka producer, whose metrics need the registry back
+        MeterRegistry registry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+        this.batchSizes = DistributionSummary.builder("saga.intake.batch.size")
+                .description("Orders written per group commit")
+                .register(registry);
+        Gauge.builder("saga.intake.queue.size", queue, BlockingQueue::size)
+                .description("Orders waiting for the next group commit")
+                .register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        executor.submit(this::run);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Enfileira um pedido; o future completa com o pedido gravado após o commit do lote.
+     */
+    public CompletableFuture<OrderEntity> submit(Double amount, TraceContext trace) {
+        Pending pending = new Pending(amount, trace);
+        if (!queue.offer(pending)) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Order intake queue is full");
+        }
+        return pending.future;
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(queue.take());
+                collect(batch);
+                try {
+                    write(batch);
+                } catch (Throwable t) {
+                    // an Error, or a failure after the commit, must neither leave the callers waiting nor
+                    // stop the only writer; futures already completed keep their result
+                    logger.error("Order intake failed on a batch of {} orders", batch.size(), t);
+                    batch.forEach(p -> p.future.completeExceptionally(t));
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // fail whatever is still waiting so that no request hangs on shutdown
+            queue.drainTo(batch);
+            IllegalStateException stopped = new IllegalStateException("Order intake stopped");
+            batch.forEach(p -> p.future.completeExceptionally(stopped));
+        }
+    }
+
+    /**
+     * Junta ao lote o que já está na fila e espera pelos próximos até o lote encher ou o prazo acabar.
+     */
+    private void collect(List<Pending> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long left = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || left <= 0) {
+                return;
+            }
+            Pending next = queue.poll(left, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        List<Double> amounts = new ArrayList<>(batch.size());
+        // sampled orders: time waiting for the batch, then the batch transaction
+        List<TraceContext> queued = new ArrayList<>(batch.size());
+        List<TraceContext> writes = new ArrayList<>(batch.size());
+        long startedAt = SagaTracer.nowMicros();
+        for (Pending p : batch) {
+            amounts.add(p.amount);
+            TraceContext q = p.trace == null ? null : p.trace.child();
+            tracer.export(q, p.trace, "intake.queue", null, p.queuedAt, startedAt);
+            queued.add(q);
+            writes.add(q == null ? null : q.child());
+        }
+        List<OrderEntity> orders;
+        try {
+            orders = orderService.createAll(amounts, writes);
+        } catch (RuntimeException e) {
+            logger.error("Failed to write a batch of {} orders", batch.size(), e);
+            batch.forEach(p -> p.future.completeExceptionally(e));
+            return;
+        }
+        batchSizes.record(batch.size());
+        long committedAt = SagaTracer.nowMicros();
+        for (int i = 0; i < batch.size(); i++) {
+            tracer.export(writes.get(i), queued.get(i), "db.write", String.valueOf(orders.get(i).getId()), startedAt, committedAt);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).future.complete(orders.get(i));
+        }
+    }
+
+    private static class Pending {
+        private final Double amount;
+        private final TraceContext trace;
+        private final long queuedAt;
+        private final CompletableFuture<OrderEntity> future = new CompletableFuture<>();
+
+        Pending(Double amount, TraceContext trace) {
+            this.amount = amount;
+            this.trace = trace;
+            this.queuedAt = trace == null ? 0 : SagaTracer.nowMicros();
+        }
+    }
+}
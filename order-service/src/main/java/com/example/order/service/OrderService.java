@@ -2,70 +2,90 @@ package com.example.order.service;
 
 import com.example.order.domain.OrderEntity;
 import com.example.order.repository.OrderRepository;
+import com.example.saga.common.OutboxDispatcher;
+import com.example.saga.common.OutboxPayloads;
 import com.example.saga.common.domain.OutboxMessage;
+import com.example.saga.common.event.OrderCreated;
 import com.example.saga.common.repo.OutboxRepository;
+import com.example.saga.common.trace.TraceContext;
+import com.example.saga.common.trace.TraceScope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 @Service
 public class OrderService {
     private static final Logger logger = LoggerFactory.getLogger(OrderService.class);
     private final OutboxRepository outboxRepository;
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final OutboxDispatcher outboxDispatcher;
+    private final OutboxPayloads outboxPayloads;
     private final OrderRepository orderRepository;
 
-    public OrderService(OutboxRepository outboxRepository, KafkaTemplate<String, String> kafkaTemplate, OrderRepository orderRepository) {
+    public OrderService(OutboxRepository outboxRepository, OutboxDispatcher outboxDispatcher, OutboxPayloads outboxPayloads,
+                        OrderRepository orderRepository) {
         this.outboxRepository = outboxRepository;
-        this.kafkaTemplate = kafkaTemplate;
+        this.outboxDispatcher = outboxDispatcher;
+        this.outboxPayloads = outboxPayloads;
         this.orderRepository = orderRepository;
     }
 
-    public OrderEntity create(Double amount) {
-        logger.info("Received new order, amount: {}", amount);
-
-        OrderEntity o = new OrderEntity();
-        o.setAmount(amount);
-        o.setStatus("CREATED");
-        OrderEntity saved = orderRepository.save(o);
-
-        logger.info("Order created: {}", o.getId());
-
-        OutboxMessage m = new OutboxMessage();
-        m.setAggregateType("order");
-        m.setAggregateId(String.valueOf(saved.getId()));
-        m.setType("order_created");
-        m.setPayload("{\"orderId\":" + saved.getId() + ",\"amount\":" + saved.getAmount() + "}");
-        outboxRepository.save(m);
-
-        logger.info("OutboxMessage created: {}", m.getId());
-
-        return saved;
+    @Transactional
+    public OrderEntity create(Double amount, TraceContext trace) {
+        return createAll(Collections.singletonList(amount), Collections.singletonList(trace)).get(0);
     }
 
-    @Scheduled(fixedDelay = 5000)
+    /**
+     * Grava os pedidos e seus OrderCreated no outbox em uma transação. Os ids vêm da sequence, então
+     * os inserts das duas tabelas saem em lote no flush do commit. {@code traces} traz, por pedido, o span
+     * da gravação (ou null), que segue com o OrderCreated.
+     */
     @Transactional
-    public void pollOutbox() {
-        List<OutboxMessage> pending = outboxRepository.findByTypeAndPublishedFalseOrderByCreatedAtAsc("order_created");
+    public List<OrderEntity> createAll(List<Double> amounts, List<TraceContext> traces) {
+        List<OrderEntity> orders = new ArrayList<>(amounts.size());
+        for (Double amount : amounts) {
+            OrderEntity o = new OrderEntity();
+            o.setAmount(amount);
+            o.setStatus("CREATED");
+            orders.add(o);
+        }
+        orderRepository.saveAll(orders);
+        for (int i = 0; i < orders.size(); i++) {
+            TraceScope.put(String.valueOf(orders.get(i).getId()), traces.get(i));
+        }
 
-        if (!pending.isEmpty()) {
-            logger.info("{} pending OutboxMessage of type order_created to process", pending.size());
+        List<OutboxMessage> outbox = new ArrayList<>(orders.size());
+        for (OrderEntity o : orders) {
+            OutboxMessage m = new OutboxMessage();
+            m.setAggregateType("order");
+            m.setAggregateId(String.valueOf(o.getId()));
+            m.setType("order_created");
+            outboxPayloads.write(m, new OrderCreated(o.getId(), o.getAmount()));
+            outbox.add(m);
+        }
+        try {
+            outboxRepository.saveAll(outbox);
+        } finally {
+            TraceScope.clear();
         }
-        for (OutboxMessage m : pending) {
-            String topic = m.getType();
-            String messageId = java.util.UUID.randomUUID().toString();
-            var result = kafkaTemplate.send(topic, messageId, m.getPayload());
 
-            // if result processado, aslva
-            m.setPublished(true);
-            outboxRepository.save(m);
+        logger.info("{} orders created", orders.size());
+        return orders;
+    }
 
-            logger.info("Message {} published", messageId);
-        }
+    @Transactional(readOnly = true)
+    public Optional<OrderEntity> find(Long id) {
+        return orderRepository.findById(id);
+    }
+
+    @Scheduled(fixedDelayString = "${saga.outbox.poll-interval-ms:5000}")
+    public void pollOutbox() {
+        outboxDispatcher.poll("order_created");
     }
 }
@@ -0,0 +1,156 @@
+package com.example.order.service;
+
+import com.example.order.domain.OrderStatusView;
+import com.example.order.repository.OrderStatusRepository;
+import com.example.saga.common.event.SagaStatusChanged;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Status da saga por pedido. As leituras vêm de um cache LRU em memória ({@code saga.status.cache-size}) e
+ * só vão ao banco no primeiro acesso; as atualizações chegam pelos {@code saga_status_changed}, são gravadas
+ * em {@code order_status} e, após o commit, atualizam o cache e acordam quem está esperando o pedido
+ * (long-poll / SSE).
+ * <p>
+ * Só as requisições presas nesta instância são acordadas; com várias réplicas as demais descobrem o
+ * status final na próxima leitura (fim do long-poll).
+ */
+@Service
+public class OrderStatusService {
+    private static final Logger logger = LoggerFactory.getLogger(OrderStatusService.class);
+    private static final String PENDING = "PENDING";
+
+    private final OrderStatusRepository orderStatusRepository;
+    private final OrderService orderService;
+    private final Map<Long, OrderStatusView> cache;
+    private final Map<Long, List<Consumer<OrderStatusView>>> watchers = new ConcurrentHashMap<>();
+
+    public OrderStatusService(OrderStatusRepository orderStatusRepository, OrderService orderService,
+                              @Value("${saga.status.cache-size:100000}") int cacheSize) {
+        this.orderStatusRepository = orderStatusRepository;
+        this.orderService = orderService;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, OrderStatusView> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * Status atual do pedido; {@code PENDING} enquanto a saga ainda não foi criada e vazio se o pedido
+     * não existe.
+     */
+    public Optional<OrderStatusView> current(Long orderId) {
+        OrderStatusView cached = cache.get(orderId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<OrderStatusView> stored = orderStatusRepository.findById(orderId);
+        if (stored.isPresent()) {
+            // never replace a newer entry written by a concurrent update
+            cache.merge(orderId, stored.get(), OrderStatusService::newest);
+            return stored;
+        }
+        return orderService.find(orderId).map(order -> {
+            OrderStatusView pending = new OrderStatusView();
+            pending.setOrderId(order.getId());
+            pending.setStatus(PENDING);
+            pending.setVersion(-1);
+            pending.setUpdatedAt(order.getCreatedAt());
+            return pending;
+        });
+    }
+
+    /**
+     * Registra um observador das próximas atualizações do pedido; o retorno o remove.
+     */
+    public Runnable watch(Long orderId, Consumer<OrderStatusView> watcher) {
+        watchers.computeIfAbsent(orderId, id -> new CopyOnWriteArrayList<>()).add(watcher);
+        return () -> watchers.computeIfPresent(orderId, (id, list) -> {
+            list.remove(watcher);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    /**
+     * Aplica um lote de mudanças de status. Reentregas e eventos fora de ordem são descartados pela versão,
+     * então não há inbox aqui.
+     */
+    @Transactional
+    public void apply(List<SagaStatusChanged> events) {
+        Map<Long, SagaStatusChanged> latest = new LinkedHashMap<>();
+        for (SagaStatusChanged e : events) {
+            latest.merge(e.getOrderId(), e, (a, b) -> b.getVersion() > a.getVersion() ? b : a);
+        }
+        Map<Long, OrderStatusView> stored = new LinkedHashMap<>();
+        orderStatusRepository.findAllById(latest.keySet()).forEach(v -> stored.put(v.getOrderId(), v));
+
+        List<OrderStatusView> changed = new ArrayList<>(latest.size());
+        Instant now = Instant.now();
+        for (SagaStatusChanged e : latest.values()) {
+            OrderStatusView view = stored.get(e.getOrderId());
+            if (view == null) {
+                view = new OrderStatusView();
+                view.setOrderId(e.getOrderId());
+                view.markCreated();
+            } else if (view.getVersion() >= e.getVersion()) {
+                continue;
+            }
+            view.setSagaId(e.getSagaId());
+            view.setStatus(e.getStatus());
+            view.setFinished(Boolean.TRUE.equals(e.getFinished()));
+            view.setVersion(e.getVersion());
+            view.setUpdatedAt(now);
+            changed.add(view);
+        }
+        orderStatusRepository.saveAll(changed);
+        logger.debug("{} status updates, {} applied", events.size(), changed.size());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    changed.forEach(OrderStatusService.this::publish);
+                }
+            });
+        } else {
+            changed.forEach(this::publish);
+        }
+    }
+
+    private void publish(OrderStatusView view) {
+        cache.merge(view.getOrderId(), view, OrderStatusService::newest);
+        List<Consumer<OrderStatusView>> list = watchers.get(view.getOrderId());
+        if (list == null) {
+            return;
+        }
+        for (Consumer<OrderStatusView> watcher : list) {
+            try {
+                watcher.accept(view);
+            } catch (RuntimeException ex) {
+                logger.warn("Status watcher of order {} failed", view.getOrderId(), ex);
+            }
+        }
+    }
+
+    private static OrderStatusView newest(OrderStatusView a, OrderStatusView b) {
+        return b.getVersion() > a.getVersion() ? b : a;
+    }
+}
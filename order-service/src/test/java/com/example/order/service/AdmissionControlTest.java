@@ -0,0 +1,106 @@
+package com.example.order.service;
+
+import com.example.saga.common.repo.OutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AdmissionControlTest {
+    private final OutboxRepository outboxRepository = mock(OutboxRepository.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    // max 1000/s, min 50/s, burst 10, targets: 2 s of outbox lag, 100 pending sagas
+    private final AdmissionControl admission = new AdmissionControl(outboxRepository, jdbcTemplate,
+            1000, 50, 10, 2000, 100, List.of("IN_PROGRESS", "PAYMENT_REQUESTED"));
+
+    @BeforeEach
+    void bind() {
+        admission.bindTo(registry);
+    }
+
+    @Test
+    void rateIsCutWhileTheLagGrowsAndHeldWhileItShrinks() {
+        sample(5000, 0);
+        assertThat(rate()).isCloseTo(700, within(0.01));
+        sample(6000, 0);
+        assertThat(rate()).isCloseTo(490, within(0.01));
+
+        // still above the target, but already draining
+        sample(4000, 0);
+        assertThat(rate()).isCloseTo(490, within(0.01));
+    }
+
+    @Test
+    void rateGrowsByAFractionOfTheMaximumBelowTheTargetsUpToTheMaximum() {
+        sample(5000, 0);
+        sample(0, 0);
+        assertThat(rate()).isCloseTo(750, within(0.01));
+
+        for (int i = 0; i < 10; i++) {
+            sample(0, 0);
+        }
+        assertThat(rate()).isEqualTo(1000);
+    }
+
+    @Test
+    void rateNeverDropsBelowTheMinimum() {
+        for (int i = 1; i <= 20; i++) {
+            sample(5000L * i, 0);
+        }
+        assertThat(rate()).isEqualTo(50);
+    }
+
+    @Test
+    void pendingSagasAboveTheTargetAloneThrottle() {
+        sample(0, 150);
+        assertThat(rate()).isCloseTo(700, within(0.01));
+        sample(0, 80);
+        assertThat(rate()).isCloseTo(750, within(0.01));
+    }
+
+    @Test
+    void rejectedOrdersAreToldToComeBackAfterTheOutboxLagWhenOverloaded() {
+        sample(5000, 0);
+
+        long retryAfter = 0;
+        for (int i = 0; i < 1000 && retryAfter == 0; i++) {
+            retryAfter = admission.tryAdmit();
+        }
+
+        assertThat(retryAfter).isEqualTo(5);
+        assertThat(registry.get("saga.admission.rejected").counter().count()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    void rejectedOrdersRetryAfterASecondWhenItIsOnlyTheRate() {
+        long retryAfter = 0;
+        for (int i = 0; i < 1000 && retryAfter == 0; i++) {
+            retryAfter = admission.tryAdmit();
+        }
+
+        assertThat(retryAfter).isEqualTo(1);
+    }
+
+    private void sample(long outboxLagMs, long pendingSagas) {
+        when(outboxRepository.findOldestPendingCreatedAt(anyString()))
+                .thenReturn(outboxLagMs == 0 ? null : Instant.now().minusMillis(outboxLagMs));
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), any())).thenReturn(pendingSagas);
+        admission.adjust();
+    }
+
+    private double rate() {
+        return registry.get("saga.admission.rate").gauge().value();
+    }
+}
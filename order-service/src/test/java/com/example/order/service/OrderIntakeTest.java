@@ -0,0 +1,46 @@
+package com.example.order.service;
+
+import com.example.order.domain.OrderEntity;
+import com.example.saga.common.trace.SagaTracer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OrderIntakeTest {
+    private final OrderService orderService = mock(OrderService.class);
+    private final OrderIntake intake = new OrderIntake(orderService, new SagaTracer(0.0, "test", Collections.emptyList()),
+            new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class), 500, 0, 100);
+
+    @AfterEach
+    void stop() {
+        intake.destroy();
+    }
+
+    @Test
+    void writerSurvivesAnErrorAndFailsOnlyThatBatch() throws Exception {
+        OrderEntity saved = new OrderEntity();
+        when(orderService.createAll(anyList(), anyList()))
+                .thenThrow(new StackOverflowError("deep"))
+                .thenReturn(Collections.singletonList(saved));
+        intake.start();
+
+        CompletableFuture<OrderEntity> failed = intake.submit(10.0, null);
+        assertThatThrownBy(() -> failed.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(StackOverflowError.class);
+
+        assertThat(intake.submit(20.0, null).get(5, TimeUnit.SECONDS)).isSameAs(saved);
+    }
+}
@@ -3,11 +3,13 @@ package com.example.payment;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
-@SpringBootApplication
+@SpringBootApplication(scanBasePackages = {"com.example.payment", "com.example.saga.common"})
 @EnableKafka
+@EnableScheduling
 @EntityScan(basePackages = {"com.example.payment.domain", "com.example.saga.common.domain"})
 @EnableJpaRepositories(basePackages = {"com.example.payment.repository", "com.example.saga.common.repo"})
 public class PaymentServiceApplication {
@@ -2,14 +2,17 @@ package com.example.payment.domain;
 
 import javax.persistence.*;
 import java.time.Instant;
+import java.util.UUID;
 
 @Entity
-@Table(name = "payments")
+@Table(name = "payments", indexes = @Index(name = "payments_saga_id_idx", columnList = "sagaId"))
 public class PaymentEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payments_seq")
+    @SequenceGenerator(name = "payments_seq", sequenceName = "payments_seq", allocationSize = 50)
     private Long id;
     private Long orderId;
+    private UUID sagaId;
     private String status;
     private Double amount;
     private Instant createdAt = Instant.now();
@@ -18,6 +21,8 @@ public class PaymentEntity {
     public void setId(Long id) { this.id = id; }
     public Long getOrderId() { return orderId; }
     public void setOrderId(Long orderId) { this.orderId = orderId; }
+    public UUID getSagaId() { return sagaId; }
+    public void setSagaId(UUID sagaId) { this.sagaId = sagaId; }
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
     public Double getAmount() { return amount; }
@@ -2,109 +2,194 @@ package com.example.payment.kafka;
 
 import com.example.payment.domain.PaymentEntity;
 import com.example.payment.repository.PaymentRepository;
-import com.example.saga.common.domain.InboxMessage;
+import com.example.saga.common.InboxDeduplicator;
+import com.example.saga.common.OutboxDispatcher;
+import com.example.saga.common.OutboxPayloads;
 import com.example.saga.common.domain.OutboxMessage;
-import com.example.saga.common.repo.InboxRepository;
+import com.example.saga.common.event.PaymentCompleted;
+import com.example.saga.common.event.PaymentFailed;
+import com.example.saga.common.event.PaymentRefundRequested;
+import com.example.saga.common.event.PaymentRequested;
+import com.example.saga.common.event.SagaEvent;
 import com.example.saga.common.repo.OutboxRepository;
+import com.example.saga.common.retry.PoisonRecordException;
+import com.example.saga.common.retry.RetryTopics;
+import com.example.saga.common.shard.ShardRouter;
+import com.example.saga.common.shard.ShardTemplate;
+import com.example.saga.common.trace.SagaTracer;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
-
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Component
 public class PaymentKafkaListener {
     private final PaymentRepository paymentRepository;
-    private final InboxRepository inboxRepository;
+    private final InboxDeduplicator inboxDeduplicator;
     private final OutboxRepository outboxRepository;
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final OutboxDispatcher outboxDispatcher;
+    private final OutboxPayloads outboxPayloads;
+    private final ShardRouter shardRouter;
+    private final ShardTemplate shardTemplate;
+    private final SagaTracer tracer;
+    private final RetryTopics retryTopics;
+    private final double failureRate;
     private static final Logger logger = LoggerFactory.getLogger(PaymentKafkaListener.class);
 
-    public PaymentKafkaListener(PaymentRepository paymentRepository, InboxRepository inboxRepository, OutboxRepository outboxRepository, KafkaTemplate<String, String> kafkaTemplate) {
+    public PaymentKafkaListener(PaymentRepository paymentRepository, InboxDeduplicator inboxDeduplicator, OutboxRepository outboxRepository, OutboxDispatcher outboxDispatcher,
+                                OutboxPayloads outboxPayloads, ShardRouter shardRouter, ShardTemplate shardTemplate, SagaTracer tracer, RetryTopics retryTopics,
+                                @Value("${saga.payment.failure-rate:0.0}") double failureRate) {
         this.paymentRepository = paymentRepository;
-        this.inboxRepository = inboxRepository;
+        this.inboxDeduplicator = inboxDeduplicator;
         this.outboxRepository = outboxRepository;
-        this.kafkaTemplate = kafkaTemplate;
+        this.outboxDispatcher = outboxDispatcher;
+        this.outboxPayloads = outboxPayloads;
+        this.shardRouter = shardRouter;
+        this.shardTemplate = shardTemplate;
+        this.tracer = tracer;
+        this.retryTopics = retryTopics;
+        this.failureRate = failureRate;
     }
 
     /**
-     * Escuta mensagens no tópico payment_requested, checa se é duplicata através do mecanismo inbox;
-     * Salva pagamento, cria mensagem de outbox, que será publicada pelo poller
+     * Escuta mensagens no tópico payment_requested em lote, descarta duplicatas através do mecanismo inbox
+     * (uma única consulta para o lote inteiro); salva os pagamentos e cria as mensagens de outbox,
+     * que serão publicadas pelo poller, tudo em uma transação por poll (uma por shard com sharding ligado).
+     * Registros que falham vão para os tópicos de retry ({@link RetryTopics}) sem segurar a partição.
      */
-    @KafkaListener(topics = "payment_requested", groupId = "saga-poc-group")
-    @Transactional
-    public void listen(ConsumerRecord<String, String> record) throws Exception {
-        String messageId = record.key();
-        String payload = record.value();
+    @KafkaListener(topics = "payment_requested", groupId = "saga-poc-group", containerFactory = "batchFactory")
+    public void listen(List<ConsumerRecord<String, SagaEvent>> records) {
+        tracer.consume(records, "payment.consume", () -> retryTopics.process(records, batch ->
+                shardTemplate.inTransactionPerShard(batch, r -> shardRouter.shardOf(r.value()), this::processPayments)));
+    }
 
-        logger.info("Received new message, ID: {}, payload: {}", messageId, payload);
+    private void processPayments(List<ConsumerRecord<String, SagaEvent>> records) {
+        logger.info("Received {} new messages", records.size());
 
-        if (inboxRepository.existsById(messageId)) {
-            logger.info("Message with ID: {} already exists", messageId);
-            return;
+        List<ConsumerRecord<String, SagaEvent>> fresh = inboxDeduplicator.filterNew(records, "PaymentRequested");
+        if (fresh.size() < records.size()) {
+            logger.info("{} messages already exist", records.size() - fresh.size());
         }
-        InboxMessage im = new InboxMessage();
-        im.setMessageId(messageId);
-        im.setType("PaymentRequested");
-        inboxRepository.save(im);
-        logger.info("InboxMessage created with ID: {}", im.getMessageId());
-
-        JsonNode node = objectMapper.readTree(payload);
-        Long orderId = node.get("orderId").asLong();
-
-        // simulate a payment process
-        PaymentEntity p = new PaymentEntity();
-        p.setOrderId(orderId);
-        p.setAmount(0.0);
-        p.setStatus("COMPLETED");
-
-        paymentRepository.save(p);
-
-        // create outbox event PaymentCompleted
-        OutboxMessage m = new OutboxMessage();
-        m.setAggregateType("payment");
-        m.setAggregateId(String.valueOf(p.getId()));
-        m.setType("payment_completed");
-        // include sagaId if present
-        String sagaId = node.has("sagaId") ? node.get("sagaId").asText() : null;
-        m.setPayload("{\"sagaId\":\"" + (sagaId != null ? sagaId : "") + "\",\"orderId\":" + orderId + "}");
-        outboxRepository.save(m);
-
-        logger.info("Order {} has been paid with payment ID: {} and payment_completed outbox created", p.getOrderId(), p.getId());
-    }
 
-    @Scheduled(fixedDelay = 5000)
-    @Transactional
-    public void pollOutbox() {
-        List<OutboxMessage> pending = outboxRepository.findByTypeAndPublishedFalseOrderByCreatedAtAsc("payment_completed");
+        List<PaymentRequested> requests = new ArrayList<>(fresh.size());
+        Set<UUID> sagaIds = new HashSet<>();
+        for (ConsumerRecord<String, SagaEvent> record : fresh) {
+            if (!(record.value() instanceof PaymentRequested)) {
+                throw new PoisonRecordException("Unexpected payment_requested payload, messageId=" + InboxDeduplicator.messageId(record));
+            }
+            PaymentRequested event = (PaymentRequested) record.value();
+            requests.add(event);
+            if (event.getSagaId() != null) {
+                sagaIds.add(event.getSagaId());
+            }
+        }
+
+        // the orchestrator re-sends the request when it times out; a saga is charged only once and
+        // a repeated request is answered again with the existing payment
+        Map<UUID, PaymentEntity> bySaga = new HashMap<>();
+        if (!sagaIds.isEmpty()) {
+            paymentRepository.findBySagaIdIn(sagaIds).forEach(p -> bySaga.put(p.getSagaId(), p));
+        }
+        int alreadyPaid = bySaga.size();
+
+        List<PaymentEntity> payments = new ArrayList<>(requests.size());
+        // entities have identity equality, so each payment is answered once per batch
+        Set<PaymentEntity> answers = new LinkedHashSet<>();
+        for (PaymentRequested event : requests) {
+            UUID sagaId = event.getSagaId();
+            PaymentEntity p = sagaId != null ? bySaga.get(sagaId) : null;
+            if (p != null) {
+                answers.add(p);
+                continue;
+            }
+
+            // simulate a payment process; saga.payment.failure-rate declines a share of them
+            p = new PaymentEntity();
+            p.setOrderId(event.getOrderId());
+            p.setSagaId(sagaId);
+            p.setAmount(0.0);
+            p.setStatus(ThreadLocalRandom.current().nextDouble() < failureRate ? "FAILED" : "COMPLETED");
+            payments.add(p);
+            answers.add(p);
+            if (sagaId != null) {
+                bySaga.put(sagaId, p);
+            }
+        }
+        paymentRepository.saveAll(payments);
+        if (alreadyPaid > 0) {
+            logger.info("{} payment requests were retries of sagas already paid", alreadyPaid);
+        }
 
-        if (!pending.isEmpty()) {
-            logger.info("{} pending OutboxMessage of type payment_completed to process", pending.size());
+        // create outbox events PaymentCompleted / PaymentFailed
+        List<OutboxMessage> outbox = new ArrayList<>(answers.size());
+        for (PaymentEntity p : answers) {
+            UUID sagaId = p.getSagaId();
+            SagaEvent answer = "FAILED".equals(p.getStatus())
+                    ? new PaymentFailed(sagaId, p.getOrderId())
+                    : new PaymentCompleted(sagaId, p.getOrderId());
+            OutboxMessage m = new OutboxMessage();
+            m.setAggregateType("payment");
+            m.setAggregateId(String.valueOf(p.getId()));
+            m.setType(answer.eventType().getName());
+            // keyed by saga so that all events of one saga land on the same partition
+            m.setMessageKey(sagaId != null ? sagaId.toString() : null);
+            outboxPayloads.write(m, answer);
+            outbox.add(m);
         }
-        for (OutboxMessage m : pending) {
-            try {
-                String topic = m.getType();
-                String messageId = java.util.UUID.randomUUID().toString();
+        outboxRepository.saveAll(outbox);
 
-                logger.info("Sending message {} of type payment_completed to the orchestrator service", messageId);
-                var result = kafkaTemplate.send(topic, messageId, m.getPayload()).get();
+        logger.info("{} payment requests processed and answered through the outbox", payments.size());
+    }
 
-                m.setPublished(true);
-                outboxRepository.save(m);
+    /**
+     * Estorno pedido pelo orquestrador quando outro passo da saga falhou. Idempotente: um pagamento já
+     * estornado continua estornado.
+     */
+    @KafkaListener(topics = "payment_refund_requested", groupId = "saga-poc-group", containerFactory = "batchFactory")
+    public void onRefund(List<ConsumerRecord<String, SagaEvent>> records) {
+        tracer.consume(records, "payment.consume", () -> retryTopics.process(records, batch ->
+                shardTemplate.inTransactionPerShard(batch, r -> shardRouter.shardOf(r.value()), this::processRefunds)));
+    }
 
-                logger.info("Message {} of type payment_completed published", messageId);
-            } catch (Exception e) {
-                logger.warn("Failed to publish outbox message immediately, will be picked by poller later", e);
+    private void processRefunds(List<ConsumerRecord<String, SagaEvent>> records) {
+        List<ConsumerRecord<String, SagaEvent>> fresh = inboxDeduplicator.filterNew(records, "payment_refund_requested");
+        Set<UUID> sagaIds = new HashSet<>();
+        for (ConsumerRecord<String, SagaEvent> record : fresh) {
+            if (!(record.value() instanceof PaymentRefundRequested)) {
+                throw new PoisonRecordException("Unexpected payment_refund_requested payload, messageId=" + InboxDeduplicator.messageId(record));
             }
+            sagaIds.add(((PaymentRefundRequested) record.value()).getSagaId());
         }
+        if (sagaIds.isEmpty()) {
+            return;
+        }
+        List<PaymentEntity> refunded = new ArrayList<>();
+        for (PaymentEntity p : paymentRepository.findBySagaIdIn(sagaIds)) {
+            if ("COMPLETED".equals(p.getStatus())) {
+                p.setStatus("REFUNDED");
+                refunded.add(p);
+            }
+        }
+        paymentRepository.saveAll(refunded);
+        logger.info("{} payments refunded", refunded.size());
+    }
+
+    @Scheduled(fixedDelayString = "${saga.outbox.poll-interval-ms:5000}")
+    public void pollOutbox() {
+        outboxDispatcher.poll("payment_completed");
+        outboxDispatcher.poll("payment_failed");
     }
 }
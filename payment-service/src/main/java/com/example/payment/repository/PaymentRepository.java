@@ -3,6 +3,11 @@ package com.example.payment.repository;
 import com.example.payment.domain.PaymentEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
 public interface PaymentRepository extends JpaRepository<PaymentEntity, Long> {
+    List<PaymentEntity> findBySagaIdIn(Collection<UUID> sagaIds);
 }
 